@@ -0,0 +1,103 @@
+package se.liu.chessGame;
+
+/**
+ * This class describes one change on the ChessBoard.
+ * Every event has a BoardEventType and carries the squares and pieces that were involved,
+ * so a listener only has to look at what actually changed instead of rescanning the whole board.
+ * Squares that are not used by an event type are set to NO_SQUARE.
+ */
+
+public class BoardEvent
+{
+    public static final int NO_SQUARE = -1;
+
+    private final BoardEventType type;
+    private final int fromY;
+    private final int fromX;
+    private final int toY;
+    private final int toX;
+    private final BoardPiece piece;
+    private final BoardPiece capturedPiece;
+    private final boolean isWhite;
+    private final GameStatus gameStatus;
+
+    private BoardEvent(final BoardEventType type, final int fromY, final int fromX, final int toY, final int toX,
+		       final BoardPiece piece, final BoardPiece capturedPiece, final boolean isWhite, final GameStatus gameStatus)
+    {
+	this.type = type;
+	this.fromY = fromY;
+	this.fromX = fromX;
+	this.toY = toY;
+	this.toX = toX;
+	this.piece = piece;
+	this.capturedPiece = capturedPiece;
+	this.isWhite = isWhite;
+	this.gameStatus = gameStatus;
+    }
+
+    public static BoardEvent pieceSelected(int y, int x, BoardPiece piece, boolean isWhite) {
+	return new BoardEvent(BoardEventType.PIECE_SELECTED, y, x, NO_SQUARE, NO_SQUARE, piece, null, isWhite, null);
+    }
+
+    public static BoardEvent selectionCleared(int y, int x, BoardPiece piece, boolean isWhite) {
+	return new BoardEvent(BoardEventType.SELECTION_CLEARED, y, x, NO_SQUARE, NO_SQUARE, piece, null, isWhite, null);
+    }
+
+    public static BoardEvent moveMade(int fromY, int fromX, int toY, int toX, BoardPiece piece, BoardPiece capturedPiece,
+				      boolean isWhite)
+    {
+	return new BoardEvent(BoardEventType.MOVE_MADE, fromY, fromX, toY, toX, piece, capturedPiece, isWhite, null);
+    }
+
+    public static BoardEvent promotion(int y, int x, BoardPiece piece, boolean isWhite) {
+	return new BoardEvent(BoardEventType.PROMOTION, NO_SQUARE, NO_SQUARE, y, x, piece, null, isWhite, null);
+    }
+
+    public static BoardEvent gameOver(GameStatus gameStatus) {
+	return new BoardEvent(BoardEventType.GAME_OVER, NO_SQUARE, NO_SQUARE, NO_SQUARE, NO_SQUARE, null, null, false, gameStatus);
+    }
+
+    public static BoardEvent boardReset() {
+	return new BoardEvent(BoardEventType.BOARD_RESET, NO_SQUARE, NO_SQUARE, NO_SQUARE, NO_SQUARE, null, null, false, null);
+    }
+
+    public BoardEventType getType() {
+	return type;
+    }
+
+    public int getFromY() {
+	return fromY;
+    }
+
+    public int getFromX() {
+	return fromX;
+    }
+
+    public int getToY() {
+	return toY;
+    }
+
+    public int getToX() {
+	return toX;
+    }
+
+    public BoardPiece getPiece() {
+	return piece;
+    }
+
+    public BoardPiece getCapturedPiece() {
+	return capturedPiece;
+    }
+
+    public boolean isCapture() {
+	return capturedPiece != null;
+    }
+
+    public boolean getIsWhite() {
+	return isWhite;
+    }
+
+    public GameStatus getGameStatus() {
+	return gameStatus;
+    }
+}
@@ -0,0 +1,88 @@
+package se.liu.chessGame;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Delivers BoardEvents from the ChessBoard to any number of BoardListeners.
+ * Events may be posted from any thread. They are collected and handed to the listeners on the Swing event thread
+ * as one list, at most once per frame, so a burst of changes only causes one round of work in every listener.
+ */
+
+public class BoardEventBus
+{
+    private static final int FRAME_MILLIS = 16;
+
+    private final List<BoardListener> listeners = new CopyOnWriteArrayList<>();
+    private final Queue<BoardEvent> pendingEvents = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean deliveryScheduled = new AtomicBoolean(false);
+    private final Timer deliveryTimer;
+    private long lastDeliveryNanos;
+
+    public BoardEventBus() {
+	this.deliveryTimer = new Timer(FRAME_MILLIS, e -> deliver());
+	deliveryTimer.setRepeats(false);
+	this.lastDeliveryNanos = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(FRAME_MILLIS);
+    }
+
+    public void addListener(final BoardListener listener) {
+	listeners.add(listener);
+    }
+
+    public void removeListener(final BoardListener listener) {
+	listeners.remove(listener);
+    }
+
+    public void post(BoardEvent event) {
+	/**
+	 * Queues the event and makes sure a delivery is scheduled on the Swing event thread.
+	 * A bus without listeners, such as the one of a board snapshot, drops the event.
+	 **/
+	if (listeners.isEmpty()) {
+	    return;
+	}
+	pendingEvents.add(event);
+	if (deliveryScheduled.compareAndSet(false, true)) {
+	    SwingUtilities.invokeLater(this::scheduleDelivery);
+	}
+    }
+
+    private void scheduleDelivery() {
+	/**
+	 * Delivers at once if a frame has passed since the last delivery, otherwise waits out the rest of the frame
+	 * so that everything posted meanwhile is delivered together.
+	 **/
+	long sinceLast = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastDeliveryNanos);
+	if (sinceLast >= FRAME_MILLIS) {
+	    deliver();
+	}
+	else {
+	    deliveryTimer.setInitialDelay((int) (FRAME_MILLIS - sinceLast));
+	    deliveryTimer.restart();
+	}
+    }
+
+    private void deliver() {
+	deliveryScheduled.set(false);
+	List<BoardEvent> events = new ArrayList<>();
+	BoardEvent event;
+	while ((event = pendingEvents.poll()) != null) {
+	    events.add(event);
+	}
+	if (events.isEmpty()) {
+	    return;
+	}
+	lastDeliveryNanos = System.nanoTime();
+	List<BoardEvent> delivered = Collections.unmodifiableList(events);
+	for (BoardListener listener : listeners) {
+	    listener.boardChanged(delivered);
+	}
+    }
+}
@@ -0,0 +1,10 @@
+package se.liu.chessGame;
+
+/**
+ * An enumerated type representing the different kinds of changes a ChessBoard can report to its listeners
+ */
+
+public enum BoardEventType
+{
+    PIECE_SELECTED, SELECTION_CLEARED, MOVE_MADE, PROMOTION, GAME_OVER, BOARD_RESET
+}
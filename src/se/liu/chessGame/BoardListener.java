@@ -1,10 +1,13 @@
 package se.liu.chessGame;
 
+import java.util.List;
+
 /**
- * This interface defines how a listener to the board should be defined
+ * This interface defines how a listener to the board should be defined.
+ * The listener is given every event that happened since the last delivery, in the order they happened.
  */
 
 public interface BoardListener
 {
-    public void boardChanged();
+    public void boardChanged(List<BoardEvent> events);
 }
@@ -0,0 +1,141 @@
+package se.liu.chessGame;
+
+import se.liu.chessGame.engine.PieceCode;
+import se.liu.chessGame.engine.Position;
+import se.liu.chessGame.engine.Square;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Paints a board with its pieces, the coordinates around it and whose turn it is on any Graphics2D. The ChessComponent
+ * uses it on screen and the DiagramRenderer on images without any window, so the two always look the same.
+ * Every square is one tile, made once for every piece on every kind of square: light, dark, the square of the selected
+ * piece and a square the selected piece can move to. Painting a board then only copies 64 tiles and draws the text.
+ * The tiles are never changed after the constructor, so one BoardPainter can paint on several threads at once.
+ */
+
+public class BoardPainter
+{
+    public static final int DEFAULT_SQUARE_SIZE = 80;
+
+    private static final Color DESTINATION_COLOR = new Color(152, 251, 152);
+    private static final Color[] BACKGROUNDS = { Color.white, Color.gray, Color.green, DESTINATION_COLOR };
+    private static final int LIGHT = 0;
+    private static final int DARK = 1;
+    private static final int MARKED = 2;
+    private static final int DESTINATION = 3;
+    private static final int OUT_WIDTH = 1;
+    private static final int TEXT_X = 10;
+    private static final int PIECE_MARGIN = 4;
+    private static final int PICTURE_ROWS = 2;
+    private static final int PICTURE_COLUMNS = 6;
+    private static final int[] PICTURE_COLUMN_OF_TYPE = { 0, 5, 3, 2, 4, 1, 0 };
+    private static final String COLUMN_LETTERS = "ABCDEFGH";
+
+    private final int squareSize;
+    private final BufferedImage[][] tiles = new BufferedImage[BACKGROUNDS.length][PieceCode.CODE_COUNT];
+
+    public BoardPainter(final int squareSize) throws IOException {
+	/**
+	 * Reads the piece images and makes the tiles for squares of the given size in pixels.
+	 **/
+	this.squareSize = squareSize;
+	BufferedImage pictures;
+	try (InputStream stream = ClassLoader.getSystemResourceAsStream("images/ChessPiecesImage.png")) {
+	    if (stream == null) {
+		throw new IOException("Resource not found");
+	    }
+	    pictures = ImageIO.read(stream);
+	}
+	if (pictures == null) {
+	    throw new IOException("The piece images are not in a known image format");
+	}
+	int pictureWidth = pictures.getWidth() / PICTURE_COLUMNS;
+	int pictureHeight = pictures.getHeight() / PICTURE_ROWS;
+	int pieceSize = squareSize - 2 * PIECE_MARGIN;
+	for (int background = 0; background < BACKGROUNDS.length; background++) {
+	    for (int code = 0; code < PieceCode.CODE_COUNT; code++) {
+		int type = PieceCode.type(code);
+		if (code != PieceCode.EMPTY && (type > PieceCode.KING || type == PieceCode.EMPTY)) {
+		    continue;
+		}
+		BufferedImage tile = new BufferedImage(squareSize, squareSize, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2d = tile.createGraphics();
+		g2d.setColor(BACKGROUNDS[background]);
+		g2d.fillRect(0, 0, squareSize, squareSize);
+		if (code != PieceCode.EMPTY) {
+		    /**
+		     * The white pieces are in the upper row of the picture and the black ones in the lower. A scaled
+		     * instance of an image in memory is produced at once, so it is completely drawn here.
+		     **/
+		    int row = PieceCode.isWhite(code) ? 0 : 1;
+		    Image picture = pictures.getSubimage(PICTURE_COLUMN_OF_TYPE[type] * pictureWidth, row * pictureHeight,
+							 pictureWidth, pictureHeight)
+			    .getScaledInstance(pieceSize, pieceSize, Image.SCALE_SMOOTH);
+		    g2d.drawImage(picture, PIECE_MARGIN, PIECE_MARGIN, null);
+		}
+		g2d.dispose();
+		tiles[background][code] = tile;
+	    }
+	}
+    }
+
+    public int getSquareSize() {
+	return squareSize;
+    }
+
+    public int getBoardSize() {
+	/**
+	 * Returns the width and height of the board in pixels, with the coordinates around it.
+	 **/
+	return (Square.BOARD_LENGTH + OUT_WIDTH) * squareSize;
+    }
+
+    public Rectangle getSquareBounds(int y, int x) {
+	return new Rectangle((x + OUT_WIDTH) * squareSize, (y + OUT_WIDTH) * squareSize, squareSize, squareSize);
+    }
+
+    public void paint(Graphics2D g2d, Position position) {
+	paint(g2d, position::getPieceAt, position.isWhiteToMove(), 0, 0);
+    }
+
+    public void paint(Graphics2D g2d, IntBinaryOperator pieceAt, boolean whiteToMove, long markedSquares,
+		      long destinationSquares)
+    {
+	/**
+	 * Paints the board with the PieceCode that pieceAt gives for each y and x. The marked squares have the selected
+	 * piece and the destination squares are where it can move. The text is drawn in the font of the Graphics2D.
+	 **/
+	int halfSquare = squareSize / 2;
+	g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+	g2d.setColor(Color.black);
+	g2d.drawString(whiteToMove ? "White's turn" : "Black's turn", TEXT_X, halfSquare);
+	for (int i = 0; i < Square.BOARD_LENGTH; i++) {
+	    int labelPosition = (i + OUT_WIDTH) * squareSize + halfSquare;
+	    g2d.drawString(String.valueOf(COLUMN_LETTERS.charAt(i)), labelPosition, halfSquare);
+	    g2d.drawString(String.valueOf(i + OUT_WIDTH), halfSquare, labelPosition);
+	}
+	for (int y = 0; y < Square.BOARD_LENGTH; y++) {
+	    for (int x = 0; x < Square.BOARD_LENGTH; x++) {
+		long bit = 1L << Square.of(y, x);
+		int background;
+		if ((markedSquares & bit) != 0) {
+		    background = MARKED;
+		}
+		else if ((destinationSquares & bit) != 0) {
+		    background = DESTINATION;
+		}
+		else {
+		    background = (y + x) % 2 == 0 ? DARK : LIGHT;
+		}
+		g2d.drawImage(tiles[background][pieceAt.applyAsInt(y, x)], (x + OUT_WIDTH) * squareSize,
+			      (y + OUT_WIDTH) * squareSize, null);
+	    }
+	}
+    }
+}
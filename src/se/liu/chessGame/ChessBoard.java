@@ -7,6 +7,12 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.gson.annotations.Expose;
+import se.liu.chessGame.engine.Move;
+import se.liu.chessGame.engine.PieceCode;
+import se.liu.chessGame.engine.Position;
+import se.liu.chessGame.engine.PositionHistory;
+import se.liu.chessGame.engine.Square;
+import se.liu.chessGame.engine.Zobrist;
 import se.liu.chessGame.pieces.Bishop;
 import se.liu.chessGame.pieces.ChessPiece;
 import se.liu.chessGame.pieces.King;
@@ -24,15 +30,17 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.NoSuchElementException;
-import java.util.logging.Level;
 
 
 /**
  * This class handles the ChessBoards functionality.
  * The board is represented as a two-dimensional ArrayList of squares.
  * The square has a pointer to a specific chesspiece if there is a piece on that square in the game.
- * The board takes the MouseInputs and handles them through the tick method.
+ * The board takes the MouseInputs and handles them through the tick method, unless the input is turned off while
+ * the computer is to move. The moves of the computer are played with playMove.
+ * After every change the board publishes an immutable Position, which other threads may read instead of the pieces.
+ * The hashes of the positions since the last capture or pawn move are kept to detect repetitions and the fifty-move rule.
+ * A game played on a GameClock is pressed after every move and lost by the player whose time runs out.
  */
 
 public class ChessBoard implements MouseInputListener
@@ -40,6 +48,7 @@ public class ChessBoard implements MouseInputListener
     private ChessPiece[][] board = null;
     private boolean isFirstPress;
     private ChessPiece inputPiece;
+    private boolean inputEnabled = true;
     @Expose
     private boolean playerWhiteTurn;
     private GameStatus gameStatus;
@@ -47,8 +56,12 @@ public class ChessBoard implements MouseInputListener
     private List<ChessPiece> blackSide = null;
     private List<ChessPiece> whiteSide = null;
 
-    private BoardListener boardListener = null;
-    private BoardListener viewerListener = null;
+    private final BoardEventBus eventBus = new BoardEventBus();
+    private final GameAdjudicator adjudicator;
+    private volatile Position position = null;
+    private LegalMoves legalMoves = null;
+    private final PositionHistory history = new PositionHistory();
+    private GameClock clock = null;
 
     public ChessBoard() throws IOException, MalformedURLException {
         initFromFile(true);
@@ -56,11 +69,46 @@ public class ChessBoard implements MouseInputListener
         this.inputPiece = null;
         this.playerWhiteTurn = true;
         this.gameStatus = GameStatus.RUNNING;
+        this.adjudicator = new GameAdjudicator();
+        positionChanged(true);
+    }
+
+    public Position getPosition() {
+        /**
+         * Returns the last published position. Safe to call from any thread.
+         **/
+        return position;
+    }
+
+    public PositionHistory getPositionHistory() {
+        /**
+         * Returns a copy of the history of the game, ending with the last published position.
+         **/
+        return history.copy();
+    }
+
+    private Position createPosition() {
+        int[] squares = new int[Square.COUNT];
+        for (int y = 0; y < board.length; y++) {
+            for (int x = 0; x < board.length; x++) {
+                if (board[y][x] != null) {
+                    squares[Square.of(y, x)] = PieceCode.of(PieceCode.fromBoardPiece(board[y][x].getPieceEnum()), board[y][x].getIsWhite());
+                }
+            }
+        }
+        return new Position(squares, playerWhiteTurn);
     }
 
     public void resetBoard(boolean newGame) throws IOException, MalformedURLException {
         initFromFile(newGame);
-        boardListener.boardChanged();
+        isFirstPress = true;
+        history.clear();
+        if (clock != null) {
+            clock.reset();
+            clock.start(playerWhiteTurn);
+        }
+        eventBus.post(BoardEvent.boardReset());
+        positionChanged(true);
     }
 
     public boolean isPlayerWhiteTurn() {
@@ -73,14 +121,73 @@ public class ChessBoard implements MouseInputListener
 
     public void setGameStatus(final GameStatus gameStatus) {
         this.gameStatus = gameStatus;
+        if (clock != null && gameStatus != GameStatus.RUNNING) {
+            clock.stop();
+        }
+    }
+
+    public GameClock getClock() {
+        return clock;
+    }
+
+    public void setClock(final GameClock clock) {
+        /**
+         * Plays the rest of the game on the clock, which starts for the player to move at once, or without a clock if null.
+         **/
+        if (this.clock != null) {
+            this.clock.stop();
+        }
+        this.clock = clock;
+        if (clock != null && gameStatus == GameStatus.RUNNING) {
+            clock.start(playerWhiteTurn);
+        }
+    }
+
+    public void checkClock() {
+        /**
+         * Ends the game if the player to move has run out of time. The opponent only wins if it has the material
+         * to ever give checkmate, otherwise the game is a draw.
+         **/
+        if (gameStatus != GameStatus.RUNNING || !isOutOfTime()) {
+            return;
+        }
+        setGameStatus(canCheckmate(!playerWhiteTurn) ? GameStatus.LOST_ON_TIME : GameStatus.DRAW);
+        isFirstPress = true;
+        eventBus.post(BoardEvent.gameOver(gameStatus));
+    }
+
+    private boolean isOutOfTime() {
+        return clock != null && clock.isFlagged(playerWhiteTurn);
+    }
+
+    private boolean canCheckmate(boolean isWhite) {
+        /**
+         * A lone king, or a king with a single bishop or knight, can never checkmate.
+         **/
+        int minorPieces = 0;
+        for (ChessPiece piece : getCurrentSide(isWhite)) {
+            switch (piece.getPieceEnum()) {
+                case PAWN:
+                case ROOK:
+                case QUEEN:
+                    return true;
+                case BISHOP:
+                case KNIGHT:
+                    minorPieces++;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return minorPieces >= 2;
     }
 
-    public void setBoardListener(final BoardListener boardListener) {
-        this.boardListener = boardListener;
+    public void setInputEnabled(final boolean inputEnabled) {
+        this.inputEnabled = inputEnabled;
     }
 
-    public void setViewerListener(final BoardListener viewListener) {
-        this.viewerListener = viewListener;
+    public void addBoardListener(final BoardListener listener) {
+        eventBus.addListener(listener);
     }
 
     public int getLength(){
@@ -118,26 +225,6 @@ public class ChessBoard implements MouseInputListener
         }
     }
 
-    public King getKingPiece(boolean isWhite) throws NoSuchElementException {
-        /**
-         * Returns the king of the requested side.
-         **/
-        for (final ChessPiece piece : getCurrentSide(isWhite)) {
-            if (piece.getPieceEnum() == BoardPiece.KING) {
-                return (King) piece;
-            }
-        }
-        /**
-         * If somehow one or both of the kings are gone, we log the problem and  end the game as a DRAW.
-         **/
-        ExceptionLogger.getExceptionLogger().logException(Level.SEVERE, "No king detected",
-                 new NoSuchElementException("There seems to be that at least one the side does not have a King."));
-        gameStatus = GameStatus.DRAW;
-        viewerListener.boardChanged();
-        isFirstPress = true;
-        return null;
-    }
-
     public boolean isOccupied(int y, int x){
         return board[y][x] !=null;
     }
@@ -156,136 +243,104 @@ public class ChessBoard implements MouseInputListener
          * The method moves a piece if the first and the second press is valid and
          * if the move is valid.
          **/
+        checkClock();
+        if(!inputEnabled || isOutOfTime()) {
+            return;
+        }
         if(isFirstPress) {
             inputPiece = board[clickedY][clickedX];
             if(isOccupied(clickedY, clickedX) && inputPiece.getIsWhite() == playerWhiteTurn) {
                 isFirstPress = !isFirstPress;
                 inputPiece.setMarkedPiece(true);
+                eventBus.post(BoardEvent.pieceSelected(clickedY, clickedX, inputPiece.getPieceEnum(), playerWhiteTurn));
             }
         }
         else{
             inputPiece.setMarkedPiece(false);
-            if(!inputPiece.equals(getPieceAt(clickedY, clickedX)) &&
-               inputPiece.isValidMove(clickedY, clickedX, true)){
-                inputPiece.move(clickedY, clickedX);
-                if (isCheckmate(!playerWhiteTurn)) {
-                    gameStatus = GameStatus.WON;
-                }
-                else if(isDraw(!playerWhiteTurn)) {
-                    gameStatus = GameStatus.DRAW;
-                }
-                boardListener.boardChanged();
-                playerWhiteTurn = !playerWhiteTurn;
-                viewerListener.boardChanged();
+            int fromY = inputPiece.getPieceY();
+            int fromX = inputPiece.getPieceX();
+            if(getLegalMoves().isLegal(fromY, fromX, clickedY, clickedX)){
+                movePiece(inputPiece, clickedY, clickedX);
+            }
+            else {
+                eventBus.post(BoardEvent.selectionCleared(fromY, fromX, inputPiece.getPieceEnum(), inputPiece.getIsWhite()));
             }
             isFirstPress = !isFirstPress;
         }
-        boardListener.boardChanged();
     }
 
-    private boolean isCheckmate(boolean isWhite) {
+    public boolean playMove(int move) {
         /**
-         * Checks if the one king is in checkMate position.
+         * Plays a move written as by the engine, such as a move of the computer, if it is legal in the current position.
+         * A pawn that reaches the back row is promoted at once to the piece of the move.
          **/
-        boolean checkmate = false;
-        boolean isCheck = getKingPiece(isWhite).isCheck(isWhite);
-        if (isCheck) {
-            checkmate = true;
-            for (ChessPiece piece : getCurrentSide(isWhite)) {
-                if (hasValidMove(piece)) {
-                    checkmate = false;
-                    }
-                }
-            }
-        return checkmate;
+        checkClock();
+        if(gameStatus != GameStatus.RUNNING) {
+            return false;
+        }
+        int fromY = Square.y(Move.from(move));
+        int fromX = Square.x(Move.from(move));
+        int toY = Square.y(Move.to(move));
+        int toX = Square.x(Move.to(move));
+        if(board[fromY][fromX] == null || !getLegalMoves().isLegal(fromY, fromX, toY, toX)) {
+            return false;
+        }
+        movePiece(board[fromY][fromX], toY, toX);
+        if(Move.promotion(move) != PieceCode.EMPTY) {
+            promotePawn(toY, toX, PieceCode.toBoardPiece(Move.promotion(move)));
+        }
+        return true;
     }
 
-    private boolean isDraw(boolean isWhite) {
-        /**
-         * Checks if the game is in a draw position.
-         **/
-        boolean drawGame = false;
-        if (isDeadPosition()){
-            drawGame = true;
-            return drawGame;
-        }
-        boolean isCheck = getKingPiece(isWhite).isCheck(isWhite);
-        if (!isCheck) {
-            drawGame = true;
-            for (ChessPiece piece : getCurrentSide(isWhite)) {
-                if (hasValidMove(piece)) {
-                    drawGame = false;
-                }
-            }
+    private void movePiece(ChessPiece piece, int toY, int toX) {
+        int fromY = piece.getPieceY();
+        int fromX = piece.getPieceX();
+        ChessPiece capturedPiece = getPieceAt(toY, toX);
+        boolean irreversible = capturedPiece != null || piece.getPieceEnum() == BoardPiece.PAWN;
+        piece.move(toY, toX);
+        playerWhiteTurn = !playerWhiteTurn;
+        if (clock != null) {
+            clock.press();
         }
-        return drawGame;
+        eventBus.post(BoardEvent.moveMade(fromY, fromX, toY, toX, piece.getPieceEnum(),
+                                          capturedPiece == null ? null : capturedPiece.getPieceEnum(),
+                                          piece.getIsWhite()));
+        positionChanged(irreversible);
     }
 
-    private boolean isDeadPosition() {
+    private void positionChanged(boolean irreversible) {
         /**
-         * Checks if the game is in a dead position where neither players can lose nor win the game.
+         * Called after every change of the position. The new Position is published and added to the history, and its
+         * legal moves and game status are computed in the background, the result is only used if no other change has
+         * happened before it arrives. A capture or pawn move is irreversible, the position before it can never return.
          **/
-        List<ChessPiece> allPieces = new ArrayList<>();
-        allPieces.addAll(whiteSide);
-        allPieces.addAll(blackSide);
-        int bishopCount = 0;
-        int knightCount = 0;
-        List<Bishop> bishops = new ArrayList<>();
-        for (ChessPiece piece : allPieces) {
-            BoardPiece pieceEnum = piece.getPieceEnum();
-            if(pieceEnum == BoardPiece.QUEEN ||
-               pieceEnum == BoardPiece.ROOK ||
-               pieceEnum == BoardPiece.PAWN){
-                return false;
+        final Position changedPosition = createPosition();
+        position = changedPosition;
+        history.push(Zobrist.of(changedPosition), irreversible);
+        adjudicator.submit(changedPosition, history.copy(), (computedMoves, result) -> {
+            if (changedPosition != position) {
+                return;
             }
-            if(pieceEnum == BoardPiece.BISHOP){
-                bishopCount += 1;
-                bishops.add((Bishop) piece);
+            if (legalMoves == null || !legalMoves.belongsTo(changedPosition)) {
+                legalMoves = computedMoves;
             }
-            if(pieceEnum == BoardPiece.KNIGHT){
-                knightCount += 1;
+            if (gameStatus == GameStatus.RUNNING && result != GameStatus.RUNNING) {
+                setGameStatus(result);
+                eventBus.post(BoardEvent.gameOver(gameStatus));
             }
-        }
-        int knightAndBishops = knightCount + bishopCount;
-        final int maxBishops = 2;
-        if((knightAndBishops <= 1) || (bishopCount == maxBishops && knightCount == 0 &&
-                                       bishopsDifferentSide(bishops.get(0), bishops.get(1)))) {
-            return true;
-
-        }
-        return false;
+        });
     }
 
-    private boolean bishopsDifferentSide(Bishop bishop1, Bishop bishop2){
+    public LegalMoves getLegalMoves() {
         /**
-         * Checks if the remaining 2 bishops are standing on the same coloured square on the board.
-         * If so, returns true, else false.
-        **/
-        int bishop1Value = bishop1.getPieceY() + bishop1.getPieceX();
-        int bishop2Value = bishop2.getPieceY() + bishop2.getPieceX();
-        if(bishop1Value % 2 == bishop2Value % 2){
-            return true;
-        }
-        return false;
-    }
-
-    private boolean hasValidMove(ChessPiece currentPiece){
-        /**
-         * Checks if a piece has a valid move.
+         * Returns the legal moves of the current position.
+         * They are normally already computed by the adjudicator, only a player clicking faster than the
+         * background worker makes them be computed here.
          **/
-        boolean validMove = false;
-        for (int y2 = 0; y2 < board.length; y2++) {
-            for (int x2 = 0; x2 < board.length; x2++) {
-                if (!currentPiece.equals(getPieceAt(y2,x2)) && currentPiece.isValidMove(y2, x2, true)) {
-                    validMove = true;
-                    break;
-                }
-            }
-            if(validMove){
-                break;
-            }
+        if (legalMoves == null || !legalMoves.belongsTo(position)) {
+            legalMoves = LegalMoves.compute(position);
         }
-        return validMove;
+        return legalMoves;
     }
 
     public void handleInput(Point clicked){
@@ -356,6 +411,20 @@ public class ChessBoard implements MouseInputListener
         addToList(piece);
     }
 
+    public void promotePawn(int y, int x, BoardPiece pieceEnum) {
+        /**
+         * Replaces the pawn that has reached the opponents back row with the chosen piece.
+         **/
+        boolean isWhite = board[y][x].getIsWhite();
+        createPieceAt(isWhite, pieceEnum, y, x);
+        eventBus.post(BoardEvent.promotion(y, x, pieceEnum, isWhite));
+        /**
+         * The promotion completes the pawn move, so the position with the pawn on the back row is replaced.
+         **/
+        history.pop();
+        positionChanged(true);
+    }
+
     public void initFromFile(boolean newGame) throws IOException, MalformedURLException {
         /**
          * Reads in a board from a Json file and creates a new board
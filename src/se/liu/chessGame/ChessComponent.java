@@ -1,170 +1,168 @@
 package se.liu.chessGame;
 
+import se.liu.chessGame.engine.PieceCode;
+import se.liu.chessGame.engine.Square;
 import se.liu.chessGame.pieces.ChessPiece;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
-import java.awt.image.BufferedImage;
 import java.io.IOException;
-import java.util.EnumMap;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.logging.Level;
 
 /**
  * This class handles the chessBoards GUI and how it's represented to the viewer.
  * The ChessComponent contains a board to display on itself.
- * The components main function painComponent loops through the board and paints it visually for the viewer.
+ * The components main function paintComponent hands the board to a BoardPainter, which paints it visually for the viewer.
+ * Below the board the clocks of both players are shown. They are repainted on their own, several times a second,
+ * and a repaint that only covers the clocks does not paint the board.
  */
 
 public class ChessComponent extends JComponent implements BoardListener
 {
+    private static final int CLOCK_HEIGHT = 40;
+
     private ChessBoard board;
-    private int squareSize;
-    private Image[] images;
-    private EnumMap<BoardPiece, Integer> pieceIndexes;
-    private Map<Integer, String> rowLetters;
-    private int outWidth = 1;
+    private BoardPainter painter = null;
+    private long highlightedSquares = 0;
 
 
     public ChessComponent(final ChessBoard chessBoard) {
 	this.board = chessBoard;
-	this.squareSize = 80;
-	this.images = createImagesList();
-	this.pieceIndexes = createTextureMap();
-	this.rowLetters = createRowLetterMap();
+	try {
+	    this.painter = new BoardPainter(BoardPainter.DEFAULT_SQUARE_SIZE);
+	} catch (IOException ioException) { // If we can´t load the textures of the chesspieces we cant really play chess, therefore we exit the game.
+	    ExceptionLogger.getExceptionLogger().logException(Level.SEVERE, "The piece images could not be loaded from the ChessPiecesImage", ioException);
+	    System.exit(1);
+	}
     }
 
     @Override
     protected void paintComponent(Graphics g) {
 	/**
-	 * This method creates how the chessboard visually is showed to the viewer.
-	 * For every position on the board, we first of paint the colour of the square
-	 * and then we place the texture of the piece if one exists on that specific square.
-	 * The method also paints a visual string to show which players turn it is and rows and columns
-	 * numbers.
+	 * Paints the clocks and, unless only the clocks need it, the board with the BoardPainter.
+	 * The square of the selected piece and the squares it can move to get their own colours.
 	 **/
 	super.paintComponent(g);
 	final Graphics2D g2d = (Graphics2D) g;
-	boolean isWhite = false;
-	g2d.setColor(Color.black);
-	String printString;
-	int halfSquare = squareSize / 2;
-	if(board.isPlayerWhiteTurn()){
-	    printString = "White's turn";
-	}
-	else{
-	    printString = "Black's turn";
-	}
 	g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
 	final int stringXCord = 10;
-	g2d.drawString(printString,stringXCord, halfSquare);
-
-	for (int y = 0; y < board.getLength() + outWidth; y++) {
-	    isWhite = !isWhite;
-	    for (int x = 0; x < board.getLength() + outWidth; x++) {
-		if (y < outWidth || x < outWidth) {
-		    g2d.setColor(Color.black);
-		    if(y == 0){
-		        printString = rowLetters.get(x);
-		    }
-		    else{
-			printString = String.valueOf(y);
-		    }
-		    g2d.drawString(printString, x * squareSize + halfSquare, y * squareSize + halfSquare);
-		}
-		else {
-		    ChessPiece pieceAt = board.getPieceAt(y- outWidth, x- outWidth);
-		    if (pieceAt != null && pieceAt.isMarkedPiece()) {
-			g2d.setColor(Color.green);
-		    } else {
-			if (isWhite) {
-			    g2d.setColor(Color.white);
-			} else {
-			    g2d.setColor(Color.gray);
-			}
-		    }
-		    int guiX = x * squareSize;
-		    int guiY = y * squareSize;
-
-		    g2d.fillRect(guiX , guiY , squareSize, squareSize);
-		    isWhite = !isWhite;
-
-		    if (pieceAt != null) {
-			BoardPiece pieceName = pieceAt.getPieceEnum();
-			int pieceIndex = pieceIndexes.get(pieceName);
-			if (!pieceAt.getIsWhite()) {
-			    final int whitePiecesLength = 6;
-			    pieceIndex +=whitePiecesLength;
-			}
-			final int posAdjuster = 4;
-			g2d.drawImage(images[pieceIndex], guiX  + posAdjuster, guiY  + posAdjuster, this);
-		    }
+	paintClocks(g2d, stringXCord);
+	Rectangle clip = g2d.getClipBounds();
+	if (clip != null && clip.y >= getBoardSize()) {
+	    return;
+	}
+	painter.paint(g2d, this::getPieceCodeAt, board.isPlayerWhiteTurn(), getMarkedSquares(), highlightedSquares);
+    }
+
+    private int getPieceCodeAt(int y, int x) {
+	ChessPiece piece = board.getPieceAt(y, x);
+	if (piece == null) {
+	    return PieceCode.EMPTY;
+	}
+	return PieceCode.of(PieceCode.fromBoardPiece(piece.getPieceEnum()), piece.getIsWhite());
+    }
+
+    private long getMarkedSquares() {
+	long markedSquares = 0;
+	for (int y = 0; y < board.getLength(); y++) {
+	    for (int x = 0; x < board.getLength(); x++) {
+		ChessPiece piece = board.getPieceAt(y, x);
+		if (piece != null && piece.isMarkedPiece()) {
+		    markedSquares |= 1L << Square.of(y, x);
 		}
 	    }
 	}
+	return markedSquares;
+    }
+
+    private void paintClocks(Graphics2D g2d, int stringXCord) {
+	/**
+	 * Paints the time left of both players, with the clock of the player to move in red when it runs.
+	 **/
+	GameClock clock = board.getClock();
+	if (clock == null) {
+	    return;
+	}
+	int baseline = getBoardSize() + CLOCK_HEIGHT / 2;
+	int blackXCord = getBoardSize() / 2;
+	for (boolean isWhite : new boolean[] { true, false }) {
+	    boolean ticking = clock.isRunning() && board.isPlayerWhiteTurn() == isWhite;
+	    g2d.setColor(ticking ? Color.red : Color.black);
+	    g2d.drawString((isWhite ? "White " : "Black ") + clock.getDisplayText(isWhite), isWhite ? stringXCord : blackXCord,
+			   baseline);
+	}
+	g2d.setColor(Color.black);
+    }
+
+    public void repaintClocks() {
+	repaint(0, getBoardSize(), getBoardSize(), CLOCK_HEIGHT);
+    }
+
+    private int getBoardSize() {
+	return painter.getBoardSize();
     }
 
     public Dimension getPreferredSize(){
-	int boardLength = (board.getLength()+outWidth) * squareSize;
-	return new Dimension(boardLength, boardLength);
+	int boardLength = getBoardSize();
+	return new Dimension(boardLength, boardLength + CLOCK_HEIGHT);
     }
 
-    private EnumMap<BoardPiece, Integer> createTextureMap() {
-	EnumMap<BoardPiece, Integer> returnTextureMap = new EnumMap<>(BoardPiece.class);
-	returnTextureMap.put(BoardPiece.KING, 0);
-	returnTextureMap.put(BoardPiece.QUEEN, 1);
-	returnTextureMap.put(BoardPiece.BISHOP, 2);
-	returnTextureMap.put(BoardPiece.KNIGHT, 3);
-	returnTextureMap.put(BoardPiece.ROOK, 4);
-	returnTextureMap.put(BoardPiece.PAWN, 5);
-	return returnTextureMap;
+    private void repaintSquare(int y, int x) {
+	repaint(painter.getSquareBounds(y, x));
     }
 
-    private Map<Integer, String> createRowLetterMap(){
-        Map<Integer, String> returnRowLetterMap = new HashMap<>();
-	returnRowLetterMap.put(0, "");
-	returnRowLetterMap.put(1, "A");
-	returnRowLetterMap.put(2, "B");
-	returnRowLetterMap.put(3, "C");
-	returnRowLetterMap.put(4, "D");
-	returnRowLetterMap.put(5, "E");
-	returnRowLetterMap.put(6, "F");
-	returnRowLetterMap.put(7, "G");
-	returnRowLetterMap.put(8, "H");
-	return returnRowLetterMap;
+    private boolean isHighlighted(int y, int x) {
+	return (highlightedSquares & (1L << (y * board.getLength() + x))) != 0;
     }
 
-    private Image[] createImagesList() {
+    private void setHighlightedSquares(long squares) {
 	/**
-	 * Creates a list of the chess pieces texture displayed on the screen.
-	 */
-        final int subImages = 12;
-	Image[] images = new Image[subImages];
-	BufferedImage buffered = null;
-	try {
-	    buffered = ImageIO.read(ClassLoader.getSystemResource("images/ChessPiecesImage.png"));
-	} catch (IOException ioException) { // If we can´t load the textures of the chesspieces we cant really play chess, therefore we exit the game.
-	    ExceptionLogger.getExceptionLogger().logException(Level.SEVERE, "The piece images could not be loaded from the ChessPiecesImage", ioException);
-	    System.exit(1);
-	}
-	final int pictureRows = 2;
-	final int pictureColumns = 6;
-	final int pieceImageAdjustor = -8;
-	int imageWidth = buffered.getWidth() - (buffered.getWidth() % pictureColumns);
-	int imageHeight = buffered.getHeight() - (buffered.getHeight() % pictureRows);
-	int index = 0;
-	for (int y = 0; y < imageHeight; y += imageHeight / pictureRows) {
-	    for (int x = 0; x < imageWidth; x += imageWidth / pictureColumns) {
-		images[index] = buffered.getSubimage(x, y, imageWidth / pictureColumns, imageHeight / pictureRows).getScaledInstance(squareSize + pieceImageAdjustor, squareSize + pieceImageAdjustor, BufferedImage.SCALE_SMOOTH);
-		index++;
-	    }
+	 * Changes which squares are shown as legal destinations and repaints the squares that changed.
+	 **/
+	long changedSquares = highlightedSquares ^ squares;
+	highlightedSquares = squares;
+	while (changedSquares != 0) {
+	    int square = Long.numberOfTrailingZeros(changedSquares);
+	    repaintSquare(square / board.getLength(), square % board.getLength());
+	    changedSquares &= changedSquares - 1;
 	}
-	return images;
     }
 
-    @Override public void boardChanged() {
-	repaint();
+    private void repaintTurnText() {
+	repaint(0, 0, board.getLength() * painter.getSquareSize(), painter.getSquareSize());
+    }
+
+    @Override public void boardChanged(List<BoardEvent> events) {
+	/**
+	 * Only repaints the squares that the events touched.
+	 * A selected piece shows its legal destinations, which the board has already cached for the position.
+	 * Swing merges the dirty regions so the whole batch is painted once.
+	 **/
+	for (BoardEvent event : events) {
+	    switch (event.getType()) {
+		case PIECE_SELECTED:
+		    repaintSquare(event.getFromY(), event.getFromX());
+		    setHighlightedSquares(board.getLegalMoves().getDestinations(event.getFromY(), event.getFromX()));
+		    break;
+		case SELECTION_CLEARED:
+		    repaintSquare(event.getFromY(), event.getFromX());
+		    setHighlightedSquares(0);
+		    break;
+		case MOVE_MADE:
+		    setHighlightedSquares(0);
+		    repaintSquare(event.getFromY(), event.getFromX());
+		    repaintSquare(event.getToY(), event.getToX());
+		    repaintTurnText();
+		    repaintClocks();
+		    break;
+		case PROMOTION:
+		    repaintSquare(event.getToY(), event.getToX());
+		    break;
+		default:
+		    highlightedSquares = 0;
+		    repaint();
+	    }
+	}
     }
 }
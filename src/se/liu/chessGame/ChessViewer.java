@@ -1,10 +1,29 @@
 package se.liu.chessGame;
 
-import se.liu.chessGame.pieces.ChessPiece;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import se.liu.chessGame.batch.BatchAnalyser;
+import se.liu.chessGame.batch.DiagramRenderer;
+import se.liu.chessGame.engine.AnalysisResult;
+import se.liu.chessGame.engine.AnalysisService;
+import se.liu.chessGame.engine.ComputerPlayer;
+import se.liu.chessGame.engine.Move;
+import se.liu.chessGame.engine.Position;
+import se.liu.chessGame.engine.TimeManager;
+import se.liu.chessGame.engine.TranspositionFile;
+import se.liu.chessGame.engine.TranspositionTable;
+import se.liu.chessGame.engine.UciEngine;
+import se.liu.chessGame.match.MatchRunner;
+import se.liu.chessGame.training.EvaluationTuner;
+import se.liu.chessGame.training.SelfPlayGenerator;
 
 import javax.swing.*;
 import java.awt.*;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.logging.Level;
 
@@ -14,16 +33,54 @@ import java.util.logging.Level;
  * It also contains a ChessBoard to handle the chessBoards functionality.
  * The ChessComponent displays the board on the JFrame.
  * The JMenuBar lets the user ask the board to give certain information or change the board in different ways.
+ * When analysis is turned on, the AnalysisService searches the current position in the background and
+ * the best line found so far is shown below the board, and the side panel lists the best few moves with their lines.
+ * When playing against the computer, the ComputerPlayer searches the moves of the other side and ponders the
+ * expected reply while the player thinks.
+ * A game can be played on a GameClock. A timer checks it several times a second and repaints only the clocks,
+ * and the computer then divides its own remaining time over the moves with a TimeManager.
+ * Started with --uci the program opens no window and runs the engine over the Universal Chess Interface instead,
+ * with --match it plays a match between two engines, with --batch it analyses a whole file of positions, with
+ * --selfplay it writes training positions from games of the engine against itself, with --tune it tunes the
+ * evaluation weights on those positions and with --diagrams it draws PNG diagrams of positions, in headless mode.
+ * With --analysis-cache the hash moves of the analysis are kept in a TranspositionFile, so they survive a restart.
  */
 
 public class ChessViewer implements BoardListener
 {
+    private static final long COMPUTER_THINK_MILLIS = 1000;
+    private static final int CLOCK_TICK_MILLIS = 100;
+    private static final long MILLIS_PER_MINUTE = 60000;
+    private static final long MILLIS_PER_SECOND = 1000;
+    private static final int DEFAULT_LINES = 3;
+    private static final int MAX_LINES = 8;
+    private static final int LINES_COLUMNS = 32;
+
     private JFrame chessFrame;
     private ChessBoard board = null;
     private ChessComponent component;
     private JMenuBar menuBar;
+    private AnalysisService analysisService;
+    private JLabel analysisLabel;
+    private JTextArea linesArea;
+    private JSpinner lineCountSpinner;
+    private String[] lineTexts = new String[0];
+    private boolean analysisEnabled = false;
+    private ComputerPlayer computerPlayer;
+    private boolean computerEnabled = false;
+    private boolean computerIsWhite = false;
+    private Position computerPosition = null;
+    private Timer clockTimer;
 
     public ChessViewer() {
+        this(null);
+    }
+
+    public ChessViewer(final TranspositionFile analysisCache) {
+        /**
+         * Creates the viewer, with the analysis using the table of the file if one is given. The file is closed when
+         * the program exits.
+         **/
         this.chessFrame = createFrame("Chess");
         try {
             this.board = new ChessBoard();
@@ -35,24 +92,166 @@ public class ChessViewer implements BoardListener
         MouseInput inputs = new MouseInput();
         inputs.setListener(board);
         component.addMouseListener(inputs);
-        board.setBoardListener(component);
-        board.setViewerListener(this);
+        board.addBoardListener(component);
+        board.addBoardListener(this);
+        this.analysisLabel = new JLabel(" ");
+        this.analysisService = analysisCache != null ? new AnalysisService(analysisCache.getTable()) : new AnalysisService();
+        if (analysisCache != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> closeAnalysisCache(analysisCache)));
+        }
+        analysisService.addListener(result -> SwingUtilities.invokeLater(() -> showAnalysis(result)));
+        this.computerPlayer = new ComputerPlayer();
         initMenuBar();
         chessFrame.setJMenuBar(menuBar);
+        this.clockTimer = new Timer(CLOCK_TICK_MILLIS, e -> {
+            board.checkClock();
+            component.repaintClocks();
+        });
+        clockTimer.start();
     }
 
     public static void main(String[] args) {
-        ChessViewer chess = new ChessViewer();
-        chess.show();
+        Options options = createOptions();
+        CommandLine commandLine = null;
+        try {
+            commandLine = new DefaultParser().parse(options, args);
+        } catch (ParseException parseException) {
+            System.err.println(parseException.getMessage());
+            new HelpFormatter().printHelp("chessGame", options);
+            System.exit(1);
+        }
+        if (commandLine.hasOption("help")) {
+            new HelpFormatter().printHelp("chessGame", options);
+        }
+        else if (commandLine.hasOption("uci")) {
+            try {
+                new UciEngine(System.in, System.out).run();
+            } catch (IOException ioException) {
+                ExceptionLogger.getExceptionLogger().logException(Level.SEVERE, "Could not read the UCI commands", ioException);
+                System.exit(1);
+            }
+        }
+        else if (commandLine.hasOption("match")) {
+            try {
+                MatchRunner.fromCommandLine(commandLine).run();
+            } catch (IOException | NumberFormatException | InterruptedException exception) {
+                ExceptionLogger.getExceptionLogger().logException(Level.SEVERE, "The match could not be played", exception);
+                System.err.println(exception.getMessage());
+                System.exit(1);
+            }
+        }
+        else if (commandLine.hasOption("selfplay")) {
+            try {
+                SelfPlayGenerator.fromCommandLine(commandLine).run();
+            } catch (IOException | NumberFormatException | InterruptedException exception) {
+                ExceptionLogger.getExceptionLogger().logException(Level.SEVERE, "The self-play games could not be played", exception);
+                System.err.println(exception.getMessage());
+                System.exit(1);
+            }
+        }
+        else if (commandLine.hasOption("tune")) {
+            try {
+                EvaluationTuner.fromCommandLine(commandLine).run();
+            } catch (IOException | NumberFormatException | InterruptedException exception) {
+                ExceptionLogger.getExceptionLogger().logException(Level.SEVERE, "The evaluation could not be tuned", exception);
+                System.err.println(exception.getMessage());
+                System.exit(1);
+            }
+        }
+        else if (commandLine.hasOption("diagrams")) {
+            System.setProperty("java.awt.headless", "true");
+            try {
+                DiagramRenderer.fromCommandLine(commandLine).run();
+            } catch (IOException | NumberFormatException | InterruptedException exception) {
+                ExceptionLogger.getExceptionLogger().logException(Level.SEVERE, "The diagrams could not be drawn", exception);
+                System.err.println(exception.getMessage());
+                System.exit(1);
+            }
+        }
+        else if (commandLine.hasOption("batch")) {
+            try {
+                BatchAnalyser.fromCommandLine(commandLine).run();
+            } catch (IOException | NumberFormatException | InterruptedException exception) {
+                ExceptionLogger.getExceptionLogger().logException(Level.SEVERE, "The positions could not be analysed", exception);
+                System.err.println(exception.getMessage());
+                System.exit(1);
+            }
+        }
+        else {
+            ChessViewer chess = new ChessViewer(openAnalysisCache(commandLine));
+            chess.show();
+        }
+    }
+
+    private static TranspositionFile openAnalysisCache(CommandLine commandLine) {
+        /**
+         * Opens the file given with --analysis-cache. Without the option, or if the file can not be opened, the
+         * analysis keeps its table in memory only.
+         **/
+        if (!commandLine.hasOption("analysis-cache")) {
+            return null;
+        }
+        try {
+            return TranspositionFile.open(Paths.get(commandLine.getOptionValue("analysis-cache")),
+                                          TranspositionTable.DEFAULT_SIZE_BITS);
+        } catch (IOException ioException) {
+            ExceptionLogger.getExceptionLogger().logException(Level.WARNING, "The analysis cache could not be opened", ioException);
+            return null;
+        }
+    }
+
+    private void closeAnalysisCache(TranspositionFile analysisCache) {
+        try {
+            analysisService.shutdown();
+            analysisCache.close();
+        } catch (IOException ioException) {
+            ExceptionLogger.getExceptionLogger().logException(Level.WARNING, "The analysis cache could not be closed", ioException);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Options createOptions() {
+        Options options = new Options();
+        options.addOption("h", "help", false, "show these options");
+        options.addOption(null, "uci", false, "run the engine over the Universal Chess Interface on standard input and output");
+        options.addOption(null, "analysis-cache", true, "file that keeps the hash moves of the analysis between sessions");
+        MatchRunner.addOptions(options);
+        BatchAnalyser.addOptions(options);
+        SelfPlayGenerator.addOptions(options);
+        EvaluationTuner.addOptions(options);
+        DiagramRenderer.addOptions(options);
+        return options;
     }
 
     public void show(){
         chessFrame.setLayout(new BorderLayout());
         chessFrame.add(component, BorderLayout.CENTER);
+        chessFrame.add(analysisLabel, BorderLayout.SOUTH);
+        chessFrame.add(createLinesPanel(), BorderLayout.EAST);
         chessFrame.pack();
         chessFrame.setVisible(true);
     }
 
+    private JPanel createLinesPanel() {
+        /**
+         * Creates the side panel that lists the best moves of the analysis, with a spinner to choose how many.
+         **/
+        JPanel panel = new JPanel(new BorderLayout());
+        JPanel header = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        header.add(new JLabel("Candidate moves"));
+        lineCountSpinner = new JSpinner(new SpinnerNumberModel(DEFAULT_LINES, 1, MAX_LINES, 1));
+        lineCountSpinner.addChangeListener(e -> restartAnalysis());
+        header.add(lineCountSpinner);
+        panel.add(header, BorderLayout.NORTH);
+        linesArea = new JTextArea(MAX_LINES, LINES_COLUMNS);
+        linesArea.setEditable(false);
+        linesArea.setLineWrap(true);
+        linesArea.setWrapStyleWord(true);
+        panel.add(new JScrollPane(linesArea), BorderLayout.CENTER);
+        return panel;
+    }
+
     private JFrame createFrame(String frameName){
         return new JFrame(frameName);
     }
@@ -103,6 +302,35 @@ public class ChessViewer implements BoardListener
         menuBar.add(saveGameButton);
         saveGameButton.addActionListener(e -> saveGame());
 
+        final JCheckBoxMenuItem analysisButton = new JCheckBoxMenuItem("Analysis");
+        menuBar.add(analysisButton);
+        analysisButton.addActionListener(e -> {
+            analysisEnabled = analysisButton.isSelected();
+            restartAnalysis();
+        });
+
+        final JCheckBoxMenuItem computerButton = new JCheckBoxMenuItem("Play computer");
+        menuBar.add(computerButton);
+        computerButton.addActionListener(e -> {
+            /**
+             * The player keeps the side that is to move and the computer takes the other one.
+             **/
+            computerEnabled = computerButton.isSelected();
+            computerIsWhite = !board.isPlayerWhiteTurn();
+            computerPlayer.cancel();
+            computerPosition = null;
+            updateComputer();
+        });
+
+        final JMenu clockMenu = new JMenu("Clock");
+        menuBar.add(clockMenu);
+        final ButtonGroup clockGroup = new ButtonGroup();
+        addClockItem(clockMenu, clockGroup, "No clock", null).setSelected(true);
+        addClockItem(clockMenu, clockGroup, "3 min + 2 s", new GameClock(3 * MILLIS_PER_MINUTE, 2 * MILLIS_PER_SECOND, 0));
+        addClockItem(clockMenu, clockGroup, "5 min", new GameClock(5 * MILLIS_PER_MINUTE, 0, 0));
+        addClockItem(clockMenu, clockGroup, "10 min + 5 s", new GameClock(10 * MILLIS_PER_MINUTE, 5 * MILLIS_PER_SECOND, 0));
+        addClockItem(clockMenu, clockGroup, "15 min, 10 s delay", new GameClock(15 * MILLIS_PER_MINUTE, 0, 10 * MILLIS_PER_SECOND));
+
         final JMenuItem loadGameButton = new JMenuItem("Load game");
         menuBar.add(loadGameButton);
         loadGameButton.addActionListener(e -> {
@@ -126,6 +354,23 @@ public class ChessViewer implements BoardListener
         );
     }
 
+    private JRadioButtonMenuItem addClockItem(JMenu clockMenu, ButtonGroup clockGroup, String name, GameClock clock) {
+        /**
+         * Adds a choice of time control. Choosing it starts the clock with full time for the rest of the game.
+         **/
+        final JRadioButtonMenuItem clockItem = new JRadioButtonMenuItem(name);
+        clockGroup.add(clockItem);
+        clockMenu.add(clockItem);
+        clockItem.addActionListener(e -> {
+            if (clock != null) {
+                clock.reset();
+            }
+            board.setClock(clock);
+            component.repaint();
+        });
+        return clockItem;
+    }
+
     private void displayUserMessage(String message){
         /**
          * Displays a message dialog to the player with the given message.
@@ -200,6 +445,9 @@ public class ChessViewer implements BoardListener
             else{
                 viewerMessage = "Player black wins the game";
             }
+            if (board.getGameStatus() == GameStatus.LOST_ON_TIME) {
+                viewerMessage += " on time";
+            }
         }
         int returnValue = JOptionPane.showConfirmDialog(null, viewerMessage + "\n" + "Do you want to play again?",
                                                         "Gameover", JOptionPane.YES_NO_OPTION);
@@ -216,21 +464,128 @@ public class ChessViewer implements BoardListener
         }
     }
 
-    @Override public void boardChanged() {
-        if (board.getGameStatus() != GameStatus.RUNNING) {
-            handleGameOver();
+    private void restartAnalysis() {
+        /**
+         * Stops the analysis of the previous position and, if analysis is turned on, starts analysing the current one.
+         **/
+        analysisService.cancel();
+        linesArea.setText("");
+        if (analysisEnabled && board.getGameStatus() == GameStatus.RUNNING) {
+            analysisLabel.setText("Analysing...");
+            int lineCount = (Integer) lineCountSpinner.getValue();
+            lineTexts = new String[lineCount];
+            analysisService.analyse(board.getPosition(), board.getPositionHistory(), AnalysisService.UNLIMITED_DEPTH, lineCount);
+        }
+        else {
+            analysisLabel.setText(" ");
+        }
+    }
+
+    private void showAnalysis(AnalysisResult result) {
+        /**
+         * Shows the result if it still belongs to the position being analysed.
+         **/
+        if (result.getAnalysisId() != analysisService.getCurrentAnalysisId() || result.getLineNumber() > lineTexts.length) {
+            return;
+        }
+        String score = formatScore(result);
+        if (result.getLineNumber() == 1) {
+            analysisLabel.setText("Depth " + result.getDepth() + "   " + score + "   " + result.getPrincipalVariationText());
         }
-        ChessPiece upgradePiece = null;
-        boolean isWhite = !board.isPlayerWhiteTurn();
-        List<ChessPiece> markedSide = board.getCurrentSide(isWhite);
-        int selectedRow = board.getBackRow(!isWhite);
-        for (ChessPiece piece : markedSide) {
-            if (piece.getPieceY() == selectedRow && piece.getPieceEnum() == BoardPiece.PAWN) {
-                upgradePiece = piece;
+        lineTexts[result.getLineNumber() - 1] = result.getLineNumber() + ". " + score + "  (" + result.getDepth() + ")  " +
+                                                result.getPrincipalVariationText();
+        StringBuilder text = new StringBuilder();
+        for (String lineText : lineTexts) {
+            if (lineText != null) {
+                text.append(lineText).append('\n');
             }
         }
-        if (upgradePiece != null) {
-            board.createPieceAt(upgradePiece.getIsWhite(), getPlayerPieceInput(), upgradePiece.getPieceY(), upgradePiece.getPieceX());
+        linesArea.setText(text.toString());
+    }
+
+    private String formatScore(AnalysisResult result) {
+        /**
+         * Returns the score from the view of white, in pawns or as moves to mate.
+         **/
+        if (result.isMateScore()) {
+            return "#" + (result.isWhiteToMove() ? result.getMateInMoves() : -result.getMateInMoves());
+        }
+        final double centipawns = 100.0;
+        return String.format("%+.2f", result.getWhiteScore() / centipawns);
+    }
+
+    @Override public void boardChanged(List<BoardEvent> events) {
+        /**
+         * Only a pawn that just moved onto the opponents back row can be promoted,
+         * so the moves in the batch are all that need to be looked at.
+         * Any change of the position makes the running analysis outdated.
+         **/
+        boolean positionChanged = false;
+        for (BoardEvent event : events) {
+            if (event.getType() == BoardEventType.MOVE_MADE && event.getPiece() == BoardPiece.PAWN &&
+                event.getToY() == board.getBackRow(!event.getIsWhite()) && isPawnAt(event.getToY(), event.getToX())) {
+                board.promotePawn(event.getToY(), event.getToX(), getPlayerPieceInput());
+            }
+            else if (event.getType() == BoardEventType.GAME_OVER) {
+                analysisService.cancel();
+                computerPlayer.cancel();
+                handleGameOver();
+                return;
+            }
+            else if (event.getType() == BoardEventType.BOARD_RESET) {
+                computerPlayer.cancel();
+            }
+            if (event.getType() == BoardEventType.MOVE_MADE || event.getType() == BoardEventType.PROMOTION ||
+                event.getType() == BoardEventType.BOARD_RESET) {
+                positionChanged = true;
+            }
+        }
+        if (positionChanged) {
+            restartAnalysis();
+            updateComputer();
+        }
+    }
+
+    private boolean isPawnAt(int y, int x) {
+        /**
+         * A pawn moved by the computer is promoted at once, so only a pawn still on the back row waits for the player.
+         **/
+        return board.getPieceAt(y, x) != null && board.getPieceAt(y, x).getPieceEnum() == BoardPiece.PAWN;
+    }
+
+    private void updateComputer() {
+        /**
+         * Lets the computer search its move when it is its turn, once for every position.
+         * The player can not move any pieces meanwhile.
+         **/
+        boolean computerToMove = computerEnabled && board.getGameStatus() == GameStatus.RUNNING &&
+                                 board.isPlayerWhiteTurn() == computerIsWhite;
+        board.setInputEnabled(!computerToMove);
+        if (computerToMove && board.getPosition() != computerPosition) {
+            computerPosition = board.getPosition();
+            computerPlayer.play(computerPosition, board.getPositionHistory(), createTimeManager(),
+                                (position, move) -> SwingUtilities.invokeLater(() -> playComputerMove(position, move)));
+        }
+    }
+
+    private TimeManager createTimeManager() {
+        /**
+         * On a clock the computer divides the time it has left, otherwise it thinks for the same time on every move.
+         **/
+        GameClock clock = board.getClock();
+        if (clock == null) {
+            return TimeManager.fixed(COMPUTER_THINK_MILLIS);
+        }
+        return TimeManager.forClock(clock.getRemainingMillis(computerIsWhite), clock.getIncrementMillis(),
+                                    clock.getDelayMillis(), TimeManager.DEFAULT_MOVES_TO_GO);
+    }
+
+    private void playComputerMove(Position position, int move) {
+        /**
+         * Plays the move of the computer, unless the game has moved on since the search started.
+         **/
+        if (move != Move.NONE && position == board.getPosition() && board.getGameStatus() == GameStatus.RUNNING) {
+            board.playMove(move);
         }
     }
 }
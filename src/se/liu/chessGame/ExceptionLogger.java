@@ -1,35 +1,56 @@
 package se.liu.chessGame;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.logging.FileHandler;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ConsoleHandler;
 import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.logging.LogRecord;
 import java.util.logging.SimpleFormatter;
+import java.util.logging.StreamHandler;
 
 /**
  * This class logs all exceptions that happens while running the program.
  * It follows the singleton design pattern with only on instance of the class.
  * This is due to not requiring a field in every class using the logger.
+ * Logging only puts the record in a RingBuffer, so the thread that logs, often the Swing thread in the middle of a
+ * move, never waits for the disk. A background thread writes the records to logger.txt in batches and flushes the file
+ * once per batch. When the buffer is full the LogOverflowPolicy named by the system property chess.log.overflow
+ * decides what happens, DROP by default. The records still in the buffer are written when the program exits, and
+ * records logged while the program exits, for example by other shutdown hooks, are written at once by the thread that
+ * logs them. The file is therefore never closed, only flushed, and is closed by the operating system at exit.
+ * If the file cannot be opened the records are only shown on the console and the program goes on.
  */
 public class ExceptionLogger
 {
-    private Logger logger = null;
+    private static final int CAPACITY = 1024;
+    private static final int BATCH_SIZE = 64;
+    private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long FULL_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long SHUTDOWN_WAIT_MILLIS = 2000;
     final static private ExceptionLogger EXCEPTION_LOGGER = new ExceptionLogger();
 
+    private final ConsoleHandler consoleHandler = new ConsoleHandler();
+    private final RingBuffer<LogRecord> records = new RingBuffer<>(CAPACITY);
+    private final LogOverflowPolicy overflowPolicy = readOverflowPolicy();
+    private final AtomicLong droppedRecords = new AtomicLong(0);
+    private final Thread writer = new Thread(this::writeRecords, "exception-logger");
+    private volatile boolean closed = false;
+    private volatile StreamHandler fileHandler = null;
+
     private ExceptionLogger() {
-        String stringFile = System.getProperty("user.dir") + File.separator + "logger.txt";
+        writer.setDaemon(true);
         try {
-            FileHandler fileHandler = new FileHandler(stringFile, true);
-            logger = Logger.getLogger(ExceptionLogger.class.getName());
-            logger.addHandler(fileHandler);
-            logger.setLevel(Level.ALL);
-            fileHandler.setFormatter(new SimpleFormatter());
-        } catch (IOException e) {// If the logger can't be initiated, no exceptions can't be logged and every instance of using the logger
-            // will not work.
-            e.printStackTrace();
-            System.exit(1);
+            Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+        } catch (IllegalStateException e) { // The program is already exiting, so every record is written at once.
+            closed = true;
         }
+        writer.start();
     }
 
     public static ExceptionLogger getExceptionLogger() {
@@ -37,6 +58,138 @@ public class ExceptionLogger
     }
 
     public void logException(Level level, String message, Exception e) {
-        logger.log(level, message, e);
+        /**
+         * Hands the record to the writer thread. After the program has started to exit the record is written at once.
+         **/
+        LogRecord record = createRecord(level, message, e);
+        while (!closed) {
+            if (records.offer(record)) {
+                LockSupport.unpark(writer);
+                return;
+            }
+            if (overflowPolicy == LogOverflowPolicy.DROP) {
+                droppedRecords.incrementAndGet();
+                return;
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(this, FULL_WAIT_NANOS);
+        }
+        publish(record);
+        flushFile();
+    }
+
+    private static LogRecord createRecord(Level level, String message, Exception e) {
+        /**
+         * The source of the record is set here, since the writer thread could not find out which method logged it.
+         **/
+        LogRecord record = new LogRecord(level, message);
+        record.setThrown(e);
+        record.setLoggerName(ExceptionLogger.class.getName());
+        record.setSourceClassName(ExceptionLogger.class.getName());
+        record.setSourceMethodName("logException");
+        return record;
+    }
+
+    private static LogOverflowPolicy readOverflowPolicy() {
+        String policy = System.getProperty("chess.log.overflow");
+        if (policy == null) {
+            return LogOverflowPolicy.DROP;
+        }
+        try {
+            return LogOverflowPolicy.valueOf(policy.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) { // The logger can not log its own settings, so it is told on the console.
+            System.err.println("Unknown log overflow policy " + policy + ", records are dropped when the log is full");
+            return LogOverflowPolicy.DROP;
+        }
+    }
+
+    private void writeRecords() {
+        /**
+         * The loop of the writer thread. It opens the file itself, so not even that is done by a thread that logs,
+         * and sleeps whenever the buffer is empty until a record is offered.
+         **/
+        openFile();
+        while (true) {
+            boolean wasClosed = closed;
+            if (writeBatch() == 0) {
+                if (wasClosed) {
+                    return;
+                }
+                LockSupport.parkNanos(this, IDLE_WAIT_NANOS);
+            }
+        }
+    }
+
+    private void openFile() {
+        String stringFile = System.getProperty("user.dir") + File.separator + "logger.txt";
+        try {
+            fileHandler = new StreamHandler(new BufferedOutputStream(new FileOutputStream(stringFile, true)), new SimpleFormatter());
+            fileHandler.setLevel(Level.ALL);
+        } catch (IOException e) { // Without the file the records still reach the console, so the program can go on.
+            System.err.println("The log file " + stringFile + " could not be opened: " + e.getMessage());
+        }
+    }
+
+    private int writeBatch() {
+        /**
+         * Writes up to BATCH_SIZE records, and how many were dropped since the last batch, and flushes the file once.
+         * Returns how many records were written.
+         **/
+        int count = 0;
+        LogRecord record;
+        while (count < BATCH_SIZE && (record = records.poll()) != null) {
+            publish(record);
+            count++;
+        }
+        long dropped = droppedRecords.getAndSet(0);
+        if (dropped > 0) {
+            publish(createRecord(Level.WARNING, dropped + " log records were dropped because the log was full", null));
+            count++;
+        }
+        if (count > 0) {
+            flushFile();
+        }
+        return count;
+    }
+
+    private void publish(LogRecord record) {
+        /**
+         * Writes the record to the file and the console. The handlers are not added to a Logger, since the LogManager
+         * closes those of every Logger when the program exits, maybe before the last records have been written.
+         **/
+        StreamHandler handler = fileHandler;
+        if (handler != null) {
+            handler.publish(record);
+        }
+        consoleHandler.publish(record);
+    }
+
+    private void flushFile() {
+        StreamHandler handler = fileHandler;
+        if (handler != null) {
+            handler.flush();
+        }
+    }
+
+    private void close() {
+        /**
+         * Runs when the program exits. Lets the writer thread write what is left and waits for it, but only for a
+         * while, since a program that exits should not hang on a slow disk. The file stays open for the records that
+         * the other shutdown hooks, which run at the same time, may still log.
+         **/
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(SHUTDOWN_WAIT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!writer.isAlive()) {
+            while (writeBatch() > 0) {
+                /**
+                 * Writes the records that were being offered while the writer thread stopped.
+                 **/
+            }
+        }
     }
 }
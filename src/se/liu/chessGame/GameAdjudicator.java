@@ -0,0 +1,86 @@
+package se.liu.chessGame;
+
+import se.liu.chessGame.engine.Position;
+import se.liu.chessGame.engine.PositionHistory;
+import se.liu.chessGame.engine.SearchBoard;
+import se.liu.chessGame.engine.Square;
+
+import javax.swing.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+
+/**
+ * Computes the legal moves of a position and decides if the game is won or drawn on a background thread,
+ * so the Swing event thread never has to wait for the move scans after a move.
+ * The adjudicator only works on the immutable Position, never on the board the player is clicking on.
+ * Only the latest submitted position is of interest, so an older job that has not started yet is cancelled.
+ */
+
+public class GameAdjudicator
+{
+    private final ExecutorService worker;
+    private Future<?> pendingJob = null;
+
+    public GameAdjudicator() {
+	this.worker = Executors.newSingleThreadExecutor(runnable -> {
+	    Thread thread = new Thread(runnable, "game-adjudicator");
+	    thread.setDaemon(true);
+	    return thread;
+	});
+    }
+
+    public void submit(final Position position, final PositionHistory history,
+		       final BiConsumer<LegalMoves, GameStatus> resultListener) {
+	/**
+	 * Computes the legal moves and the GameStatus of the position on the worker and hands them to the listener
+	 * on the Swing event thread. The history must not be changed after it is submitted.
+	 **/
+	if (pendingJob != null) {
+	    pendingJob.cancel(false);
+	}
+	pendingJob = worker.submit(() -> {
+	    try {
+		SearchBoard board = new SearchBoard(position);
+		LegalMoves legalMoves = LegalMoves.compute(board, position);
+		GameStatus result = adjudicate(board, legalMoves, history);
+		SwingUtilities.invokeLater(() -> resultListener.accept(legalMoves, result));
+	    } catch (RuntimeException e) {
+		ExceptionLogger.getExceptionLogger().logException(Level.SEVERE, "The position could not be adjudicated", e);
+	    }
+	});
+    }
+
+    public static GameStatus adjudicate(Position position, PositionHistory history) {
+	/**
+	 * Decides the GameStatus of a position right away on the calling thread, for games played without a ChessBoard.
+	 **/
+	SearchBoard board = new SearchBoard(position, null);
+	return adjudicate(board, LegalMoves.compute(board, position), history);
+    }
+
+    static GameStatus adjudicate(SearchBoard board, LegalMoves legalMoves, PositionHistory history) {
+	/**
+	 * Checks if the player to move has been checkmated or if the game has ended in a draw.
+	 * Without any legal move the game is won by the other player if the king is checked, otherwise it is a stalemate.
+	 * A checkmate also wins on the move that reaches the fifty-move limit, otherwise a threefold repetition or
+	 * a hundred moves without a capture or pawn move is a draw.
+	 * If somehow one or both of the kings are gone, we log the problem and end the game as a DRAW.
+	 **/
+	if (board.getKingSquare(true) == Square.NONE || board.getKingSquare(false) == Square.NONE) {
+	    ExceptionLogger.getExceptionLogger().logException(Level.SEVERE, "No king detected",
+		new NoSuchElementException("There seems to be that at least one the side does not have a King."));
+	    return GameStatus.DRAW;
+	}
+	if (!legalMoves.hasAnyMove()) {
+	    return board.isInCheck() ? GameStatus.WON : GameStatus.DRAW;
+	}
+	if (history.isThreefoldRepetition() || history.isFiftyMoveRule() || board.isInsufficientMaterial()) {
+	    return GameStatus.DRAW;
+	}
+	return GameStatus.RUNNING;
+    }
+}
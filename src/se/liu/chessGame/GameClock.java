@@ -0,0 +1,121 @@
+package se.liu.chessGame;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The clocks of both players. Only the clock of the player to move runs, and it is measured with System.nanoTime,
+ * so changes of the system time do not affect it.
+ * With an increment the player gets the increment back after every move. With a delay the clock only starts counting
+ * down once the delay of the move has passed, and time used within the delay is never taken from the player.
+ * The clock is read by the painting, the board and the computer player, so every method is synchronized.
+ */
+
+public class GameClock
+{
+    private static final int WHITE = 0;
+    private static final int BLACK = 1;
+    private static final long TENTHS_SHOWN_BELOW_MILLIS = 20000;
+
+    private final long initialNanos;
+    private final long incrementNanos;
+    private final long delayNanos;
+    private final long[] remainingNanos = new long[2];
+    private boolean running = false;
+    private boolean whiteRunning = true;
+    private long turnStartNanos = 0;
+
+    public GameClock(final long initialMillis, final long incrementMillis, final long delayMillis) {
+        this.initialNanos = TimeUnit.MILLISECONDS.toNanos(initialMillis);
+        this.incrementNanos = TimeUnit.MILLISECONDS.toNanos(incrementMillis);
+        this.delayNanos = TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        reset();
+    }
+
+    public synchronized void reset() {
+        /**
+         * Stops the clock and gives both players the initial time again.
+         **/
+        running = false;
+        remainingNanos[WHITE] = initialNanos;
+        remainingNanos[BLACK] = initialNanos;
+    }
+
+    public synchronized void start(boolean whiteToMove) {
+        /**
+         * Starts the clock of the player to move, after stopping the one that ran before.
+         **/
+        stop();
+        running = true;
+        whiteRunning = whiteToMove;
+        turnStartNanos = System.nanoTime();
+    }
+
+    public synchronized void stop() {
+        if (running) {
+            remainingNanos[side(whiteRunning)] = remainingNanos(whiteRunning);
+            running = false;
+        }
+    }
+
+    public synchronized void press() {
+        /**
+         * Ends the turn of the player whose clock runs, adds the increment and starts the clock of the opponent.
+         **/
+        if (!running) {
+            return;
+        }
+        boolean whiteMoved = whiteRunning;
+        stop();
+        remainingNanos[side(whiteMoved)] += incrementNanos;
+        start(!whiteMoved);
+    }
+
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    public synchronized long getRemainingMillis(boolean isWhite) {
+        return TimeUnit.NANOSECONDS.toMillis(remainingNanos(isWhite));
+    }
+
+    public synchronized boolean isFlagged(boolean isWhite) {
+        return remainingNanos(isWhite) <= 0;
+    }
+
+    public long getIncrementMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(incrementNanos);
+    }
+
+    public long getDelayMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(delayNanos);
+    }
+
+    public synchronized String getDisplayText(boolean isWhite) {
+        /**
+         * Returns the remaining time as minutes and seconds, with tenths of seconds when little time is left.
+         **/
+        long millis = Math.max(0, getRemainingMillis(isWhite));
+        long minutes = TimeUnit.MILLISECONDS.toMinutes(millis);
+        long seconds = TimeUnit.MILLISECONDS.toSeconds(millis) % TimeUnit.MINUTES.toSeconds(1);
+        if (millis < TENTHS_SHOWN_BELOW_MILLIS) {
+            final long millisPerTenth = 100;
+            return String.format("%d:%02d.%d", minutes, seconds, millis % 1000 / millisPerTenth);
+        }
+        return String.format("%d:%02d", minutes, seconds);
+    }
+
+    private long remainingNanos(boolean isWhite) {
+        /**
+         * Returns the time left of the player, less the time since the turn started beyond the delay if the clock runs.
+         **/
+        long remaining = remainingNanos[side(isWhite)];
+        if (running && whiteRunning == isWhite) {
+            remaining -= Math.max(0, System.nanoTime() - turnStartNanos - delayNanos);
+        }
+        return remaining;
+    }
+
+    private static int side(boolean isWhite) {
+        return isWhite ? WHITE : BLACK;
+    }
+}
@@ -1,10 +1,11 @@
 package se.liu.chessGame;
 
 /**
- * An enumerated type representing the different types of gamestatus during the cycle of a game
+ * An enumerated type representing the different types of gamestatus during the cycle of a game.
+ * WON means that the player to move is checkmated and LOST_ON_TIME that the player to move ran out of time.
  */
 
 public enum GameStatus
 {
-    RUNNING, WON, DRAW
+    RUNNING, WON, DRAW, LOST_ON_TIME
 }
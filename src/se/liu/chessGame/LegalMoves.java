@@ -0,0 +1,79 @@
+package se.liu.chessGame;
+
+import se.liu.chessGame.engine.Move;
+import se.liu.chessGame.engine.PieceCode;
+import se.liu.chessGame.engine.Position;
+import se.liu.chessGame.engine.SearchBoard;
+import se.liu.chessGame.engine.Square;
+
+/**
+ * This class holds every legal move of the player to move in one position.
+ * For every square the legal destinations are stored as a 64 bit mask, one bit per square of the board,
+ * so looking up or testing a move never has to ask the pieces again.
+ * A promotion is stored once for its squares, the piece is chosen by the player after the move.
+ * A table belongs to the Position it was computed for and is not changed after it has been filled.
+ */
+
+public class LegalMoves
+{
+    private final Position position;
+    private final int boardLength;
+    private final long[] destinations;
+    private int moveCount = 0;
+
+    public LegalMoves(final Position position, final int boardLength) {
+	this.position = position;
+	this.boardLength = boardLength;
+	this.destinations = new long[boardLength * boardLength];
+    }
+
+    public static LegalMoves compute(Position position) {
+	/**
+	 * Generates the legal moves of the position with the engine's move generator.
+	 **/
+	return compute(new SearchBoard(position), position);
+    }
+
+    static LegalMoves compute(SearchBoard board, Position position) {
+	LegalMoves legalMoves = new LegalMoves(position, Square.BOARD_LENGTH);
+	int[] moves = new int[SearchBoard.MAX_MOVES];
+	int count = board.generateLegalMoves(moves);
+	for (int i = 0; i < count; i++) {
+	    int from = Move.from(moves[i]);
+	    int to = Move.to(moves[i]);
+	    if (Move.promotion(moves[i]) == PieceCode.EMPTY || Move.promotion(moves[i]) == PieceCode.QUEEN) {
+		legalMoves.addMove(Square.y(from), Square.x(from), Square.y(to), Square.x(to));
+	    }
+	}
+	return legalMoves;
+    }
+
+    void addMove(int fromY, int fromX, int toY, int toX) {
+	destinations[fromY * boardLength + fromX] |= squareBit(toY, toX);
+	moveCount++;
+    }
+
+    public boolean belongsTo(Position otherPosition) {
+	return position == otherPosition;
+    }
+
+    public long getDestinations(int y, int x) {
+	return destinations[y * boardLength + x];
+    }
+
+    public long squareBit(int y, int x) {
+	return 1L << (y * boardLength + x);
+    }
+
+    public boolean isLegal(int fromY, int fromX, int toY, int toX) {
+	return (getDestinations(fromY, fromX) & squareBit(toY, toX)) != 0;
+    }
+
+    public boolean hasAnyMove() {
+	return moveCount > 0;
+    }
+
+    public int getMoveCount() {
+	return moveCount;
+    }
+}
@@ -0,0 +1,11 @@
+package se.liu.chessGame;
+
+/**
+ * What the ExceptionLogger does with a record when its queue is full: DROP counts it and goes on, and the writer later
+ * logs how many records were dropped, while BLOCK makes the logging thread wait until the writer has made room.
+ */
+
+public enum LogOverflowPolicy
+{
+    DROP, BLOCK
+}
@@ -0,0 +1,60 @@
+package se.liu.chessGame;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded queue that any number of threads can offer items to without taking a lock, and that a single thread polls.
+ * A producer claims the slot at the tail by moving the tail with compareAndSet while the buffer is not full, and then
+ * fills it. The consumer empties a slot before it moves the head past it, so a producer never claims a slot that still
+ * holds an item. A slot that is claimed but not yet filled looks empty to poll until its producer has filled it.
+ * The capacity is rounded up to a power of two.
+ */
+
+public class RingBuffer<T>
+{
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(0);
+    private final AtomicLong tail = new AtomicLong(0);
+
+    public RingBuffer(final int capacity) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    public boolean offer(T item) {
+        /**
+         * Adds the item and returns true, or returns false at once if the buffer is full.
+         **/
+        while (true) {
+            long claimed = tail.get();
+            if (claimed - head.get() >= slots.length()) {
+                return false;
+            }
+            if (tail.compareAndSet(claimed, claimed + 1)) {
+                slots.set((int) claimed & mask, item);
+                return true;
+            }
+        }
+    }
+
+    public T poll() {
+        /**
+         * Takes the oldest item, or returns null if there is none. Must only be called by one thread at a time.
+         **/
+        long next = head.get();
+        int slot = (int) next & mask;
+        T item = slots.get(slot);
+        if (item == null) {
+            return null;
+        }
+        slots.set(slot, null);
+        head.set(next + 1);
+        return item;
+    }
+}
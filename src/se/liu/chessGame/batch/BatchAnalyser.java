@@ -0,0 +1,276 @@
+package se.liu.chessGame.batch;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import se.liu.chessGame.ExceptionLogger;
+import se.liu.chessGame.engine.AnalysisResult;
+import se.liu.chessGame.engine.AnalysisService;
+import se.liu.chessGame.engine.Move;
+import se.liu.chessGame.engine.Position;
+import se.liu.chessGame.engine.SearchBoard;
+import se.liu.chessGame.engine.Searcher;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Analyses every position of a FEN or EPD file to a fixed depth or node count and writes one EPD record per position,
+ * with the best move, the score, the depth and the nodes, in the same order as the input.
+ * The input is read one line at a time, so files of millions of positions never have to fit in memory. A pool of
+ * workers, each with its own SearchBoard and Searcher that are reused for every position, takes the lines from a
+ * bounded queue, and a ReorderBuffer gives the results back to the writer in input order. The searcher forgets
+ * everything between positions, so the output does not depend on which worker analysed which position.
+ * If the output file already exists the run resumes after the last complete record in it, so an interrupted
+ * nightly run can simply be started again. If the output cannot be written the run stops with an IOException instead
+ * of waiting for a writer that has given up.
+ */
+
+public class BatchAnalyser
+{
+    private static final int DEFAULT_DEPTH = 8;
+    private static final int QUEUE_PER_WORKER = 64;
+    private static final int REORDER_PER_WORKER = 256;
+    private static final long REPORT_INTERVAL_MILLIS = 10000;
+    private static final long QUEUE_WAIT_MILLIS = 100;
+    private static final int EPD_POSITION_FIELDS = 4;
+    private static final int FEN_FIELDS = 6;
+
+    private final Path inputFile;
+    private final Path outputFile;
+    private final int depth;
+    private final long nodeLimit;
+    private final int workerCount;
+
+    private static final class Job
+    {
+	private final long sequence;
+	private final String line;
+
+	private Job(final long sequence, final String line) {
+	    this.sequence = sequence;
+	    this.line = line;
+	}
+    }
+
+    public BatchAnalyser(final Path inputFile, final Path outputFile, final int depth, final long nodeLimit,
+			 final int workerCount)
+    {
+	this.inputFile = inputFile;
+	this.outputFile = outputFile;
+	this.depth = depth;
+	this.nodeLimit = nodeLimit;
+	this.workerCount = workerCount;
+    }
+
+    public static void addOptions(Options options) {
+	options.addOption(null, "batch", true, "analyse every position of a FEN or EPD file");
+	options.addOption(null, "output", true, "EPD file to write the analysis to, resumed if it exists, or directory of the diagrams");
+	options.addOption(null, "depth", true, "depth to search every position to, " + DEFAULT_DEPTH + " by default");
+	options.addOption(null, "nodes", true, "stop searching a position after about this many nodes");
+	options.addOption(null, "threads", true, "number of positions analysed or drawn at the same time, the number of cores by default");
+    }
+
+    public static BatchAnalyser fromCommandLine(CommandLine commandLine) {
+	/**
+	 * Creates the analyser from the options added by addOptions. Throws NumberFormatException for a badly written number.
+	 **/
+	Path inputFile = Paths.get(commandLine.getOptionValue("batch"));
+	Path outputFile = Paths.get(commandLine.getOptionValue("output", inputFile + ".analysed.epd"));
+	int depth = Integer.parseInt(commandLine.getOptionValue("depth", String.valueOf(DEFAULT_DEPTH)));
+	long nodeLimit = Long.parseLong(commandLine.getOptionValue("nodes", String.valueOf(Long.MAX_VALUE)));
+	int workerCount = Integer.parseInt(commandLine.getOptionValue("threads",
+								      String.valueOf(Runtime.getRuntime().availableProcessors())));
+	return new BatchAnalyser(inputFile, outputFile, Math.min(depth, AnalysisService.UNLIMITED_DEPTH), nodeLimit,
+				 Math.max(1, workerCount));
+    }
+
+    public void run() throws IOException, InterruptedException {
+	long done = prepareOutput();
+	if (done > 0) {
+	    System.err.println("Resuming after " + done + " positions");
+	}
+	BlockingQueue<Job> jobs = new ArrayBlockingQueue<>(QUEUE_PER_WORKER * workerCount);
+	ReorderBuffer<String> results = new ReorderBuffer<>(REORDER_PER_WORKER * workerCount, done);
+	ExecutorService threads = Executors.newFixedThreadPool(workerCount + 1);
+	try (BufferedWriter output = Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+							     StandardOpenOption.APPEND)) {
+	    Future<Long> writer = threads.submit(() -> writeResults(results, output, done));
+	    for (int worker = 0; worker < workerCount; worker++) {
+		threads.submit(() -> analyseJobs(jobs, results));
+	    }
+	    try {
+		long total = done;
+		try (BufferedReader input = Files.newBufferedReader(inputFile, StandardCharsets.UTF_8)) {
+		    String line;
+		    long lineNumber = 0;
+		    while ((line = input.readLine()) != null) {
+			if (line.isBlank() || line.startsWith("#")) {
+			    continue;
+			}
+			if (lineNumber++ >= done) {
+			    putJob(jobs, new Job(total++, line.trim()), writer);
+			}
+		    }
+		}
+		results.close(total);
+		for (int worker = 0; worker < workerCount; worker++) {
+		    putJob(jobs, new Job(-1, null), writer);
+		}
+		writer.get();
+	    } catch (ExecutionException e) {
+		results.abort();
+		throw new IOException("The analysis could not be written", e.getCause());
+	    } finally {
+		/**
+		 * Stops the workers and the writer whether the run finished or failed, before the output is closed.
+		 **/
+		threads.shutdownNow();
+	    }
+	}
+    }
+
+    private static void putJob(BlockingQueue<Job> jobs, Job job, Future<Long> writer)
+	    throws InterruptedException, ExecutionException
+    {
+	/**
+	 * Waits for room in the queue, but gives up with the exception of the writer if it has stopped, since the
+	 * workers then soon stop taking jobs and the queue would never get room again.
+	 **/
+	while (!jobs.offer(job, QUEUE_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+	    if (writer.isDone()) {
+		writer.get();
+	    }
+	}
+    }
+
+    private long prepareOutput() throws IOException {
+	/**
+	 * Returns how many complete records the output file already holds, after cutting off a record that was
+	 * only partly written when the last run was interrupted.
+	 **/
+	if (!Files.exists(outputFile)) {
+	    return 0;
+	}
+	long records = 0;
+	long lastNewline = -1;
+	long position = 0;
+	byte[] buffer = new byte[1 << 16];
+	try (InputStream stream = Files.newInputStream(outputFile)) {
+	    int read;
+	    while ((read = stream.read(buffer)) > 0) {
+		for (int i = 0; i < read; i++) {
+		    if (buffer[i] == '\n') {
+			records++;
+			lastNewline = position + i;
+		    }
+		}
+		position += read;
+	    }
+	}
+	try (RandomAccessFile file = new RandomAccessFile(outputFile.toFile(), "rw")) {
+	    file.setLength(lastNewline + 1);
+	}
+	return records;
+    }
+
+    private void analyseJobs(BlockingQueue<Job> jobs, ReorderBuffer<String> results) {
+	SearchBoard board = new SearchBoard(Position.startPosition());
+	Searcher searcher = new Searcher(board, 0);
+	searcher.setNodeLimit(nodeLimit);
+	try {
+	    Job job;
+	    while ((job = jobs.take()).line != null) {
+		results.put(job.sequence, analyse(board, searcher, job.line));
+	    }
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	} catch (CancellationException e) { // The writer has failed, so the results are not needed any more.
+	}
+    }
+
+    private String analyse(SearchBoard board, Searcher searcher, String line) {
+	/**
+	 * Returns the EPD record of the line: the position, the analysis and any operations the input line already had.
+	 * A line that is not a position gets a comment instead of an analysis, so the output still has one record per line.
+	 **/
+	String[] fields = line.split("\\s+");
+	int positionFields = Math.min(fields.length, EPD_POSITION_FIELDS);
+	boolean isFen = fields.length >= FEN_FIELDS && fields[FEN_FIELDS - 1].matches("\\d+");
+	String operations = String.join(" ", Arrays.copyOfRange(fields, isFen ? FEN_FIELDS : positionFields, fields.length));
+	StringBuilder record = new StringBuilder(String.join(" ", Arrays.copyOfRange(fields, 0, positionFields)));
+	try {
+	    board.setPosition(Position.fromFen(line));
+	    searcher.clear();
+	    AnalysisResult result = searcher.search(depth, r -> {});
+	    int bestMove = result != null ? result.getBestMove() : Move.NONE;
+	    record.append(" bm ").append(bestMove == Move.NONE ? "0000" : Move.toUci(bestMove)).append(';');
+	    if (result != null) {
+		record.append(" ce ").append(result.getScore()).append(';');
+		if (result.isMateScore()) {
+		    record.append(" dm ").append(result.getMateInMoves()).append(';');
+		}
+		record.append(" acd ").append(result.getDepth()).append(';');
+	    }
+	    record.append(" acn ").append(searcher.getNodes()).append(';');
+	} catch (IllegalArgumentException e) {
+	    record.append(" c0 \"").append(e.getMessage().replace('"', '\'')).append("\";");
+	} catch (RuntimeException e) {
+	    ExceptionLogger.getExceptionLogger().logException(Level.SEVERE, "Could not analyse " + line, e);
+	    record.append(" c0 \"analysis failed\";");
+	}
+	if (!operations.isEmpty()) {
+	    record.append(' ').append(operations);
+	}
+	return record.toString();
+    }
+
+    private long writeResults(ReorderBuffer<String> results, Writer output, long done) throws IOException, InterruptedException {
+	/**
+	 * Writes the records in input order and reports the speed every few seconds. Every record is flushed as soon as
+	 * it is written, so an interrupted run loses at most the records that were still being analysed.
+	 **/
+	long startTime = System.currentTimeMillis();
+	long lastReport = startTime;
+	long written = 0;
+	String record;
+	try {
+	    while ((record = results.take()) != null) {
+		output.write(record);
+		output.write('\n');
+		output.flush();
+		written++;
+		long now = System.currentTimeMillis();
+		if (now - lastReport >= REPORT_INTERVAL_MILLIS) {
+		    lastReport = now;
+		    System.err.printf("%d positions, %.1f positions/s%n", done + written, written * 1000.0 / (now - startTime));
+		}
+	    }
+	} catch (IOException | RuntimeException e) { // Wakes the workers that wait for room in the buffer.
+	    results.abort();
+	    throw e;
+	}
+	long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+	System.out.printf("analysed %d positions in %.1f s, %.1f positions/s%n", written, elapsed / 1000.0,
+			  written * 1000.0 / elapsed);
+	return written;
+    }
+}
@@ -0,0 +1,182 @@
+package se.liu.chessGame.batch;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import se.liu.chessGame.BoardPainter;
+import se.liu.chessGame.ExceptionLogger;
+import se.liu.chessGame.engine.Position;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Draws a diagram of every position of a FEN or EPD file with a BoardPainter and writes it as a PNG file, without any
+ * window, so it also runs with java.awt.headless=true on a machine without a display.
+ * The file is read one line at a time and the lines are handed to a pool of workers over a bounded queue. Every worker
+ * paints into an image and encodes it with a PngEncoder of its own, both reused for every diagram, so the workers only
+ * share the tiles of the painter, which are never changed. The n-th position of the file becomes diagram-n.png in the
+ * output directory. A line that is not a position is logged and gets no diagram.
+ */
+
+public class DiagramRenderer
+{
+    private static final String FILE_FORMAT = "diagram-%06d.png";
+    private static final int QUEUE_PER_WORKER = 64;
+    private static final long REPORT_INTERVAL_MILLIS = 10000;
+    private static final long QUEUE_WAIT_MILLIS = 100;
+
+    private final Path inputFile;
+    private final Path outputDirectory;
+    private final int squareSize;
+    private final int workerCount;
+    private final AtomicLong diagramCount = new AtomicLong(0);
+
+    private static final class Job
+    {
+	private final long number;
+	private final String line;
+
+	private Job(final long number, final String line) {
+	    this.number = number;
+	    this.line = line;
+	}
+    }
+
+    public DiagramRenderer(final Path inputFile, final Path outputDirectory, final int squareSize, final int workerCount) {
+	this.inputFile = inputFile;
+	this.outputDirectory = outputDirectory;
+	this.squareSize = squareSize;
+	this.workerCount = workerCount;
+    }
+
+    public static void addOptions(Options options) {
+	options.addOption(null, "diagrams", true, "draw a PNG diagram of every position of a FEN or EPD file");
+	options.addOption(null, "square-size", true, "size of a square of the diagrams in pixels, " +
+						     BoardPainter.DEFAULT_SQUARE_SIZE + " by default");
+    }
+
+    public static DiagramRenderer fromCommandLine(CommandLine commandLine) {
+	/**
+	 * Creates the renderer from its own options and the output and threads options of the batch analysis.
+	 * Throws NumberFormatException for a badly written number.
+	 **/
+	Path inputFile = Paths.get(commandLine.getOptionValue("diagrams"));
+	Path outputDirectory = Paths.get(commandLine.getOptionValue("output", inputFile + ".diagrams"));
+	int squareSize = Integer.parseInt(commandLine.getOptionValue("square-size", String.valueOf(BoardPainter.DEFAULT_SQUARE_SIZE)));
+	int workerCount = Integer.parseInt(commandLine.getOptionValue("threads",
+								      String.valueOf(Runtime.getRuntime().availableProcessors())));
+	return new DiagramRenderer(inputFile, outputDirectory, Math.max(1, squareSize), Math.max(1, workerCount));
+    }
+
+    public void run() throws IOException, InterruptedException {
+	/**
+	 * Draws all diagrams, printing the speed every few seconds, and prints the totals at the end.
+	 **/
+	BoardPainter painter = new BoardPainter(squareSize);
+	Files.createDirectories(outputDirectory);
+	BlockingQueue<Job> jobs = new ArrayBlockingQueue<>(QUEUE_PER_WORKER * workerCount);
+	ExecutorService workers = Executors.newFixedThreadPool(workerCount);
+	List<Future<Void>> results = new ArrayList<>();
+	long startTime = System.currentTimeMillis();
+	try {
+	    for (int worker = 0; worker < workerCount; worker++) {
+		results.add(workers.submit(() -> renderJobs(painter, jobs)));
+	    }
+	    try (BufferedReader input = Files.newBufferedReader(inputFile, StandardCharsets.UTF_8)) {
+		String line;
+		long number = 0;
+		long lastReport = startTime;
+		while ((line = input.readLine()) != null) {
+		    if (line.isBlank() || line.startsWith("#")) {
+			continue;
+		    }
+		    putJob(jobs, new Job(++number, line.trim()), results);
+		    long now = System.currentTimeMillis();
+		    if (now - lastReport >= REPORT_INTERVAL_MILLIS) {
+			lastReport = now;
+			System.err.printf("%d diagrams, %.1f diagrams/s%n", diagramCount.get(),
+					  diagramCount.get() * 1000.0 / (now - startTime));
+		    }
+		}
+	    }
+	    for (int worker = 0; worker < workerCount; worker++) {
+		putJob(jobs, new Job(-1, null), results);
+	    }
+	    for (Future<Void> result : results) {
+		result.get();
+	    }
+	} catch (ExecutionException e) {
+	    throw new IOException("The diagrams could not be written", e.getCause());
+	} finally {
+	    workers.shutdownNow();
+	    workers.awaitTermination(1, TimeUnit.SECONDS);
+	}
+	long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+	System.out.printf("drew %d diagrams in %.1f s, %.1f diagrams/s%n", diagramCount.get(), elapsed / 1000.0,
+			  diagramCount.get() * 1000.0 / elapsed);
+    }
+
+    private static void putJob(BlockingQueue<Job> jobs, Job job, List<Future<Void>> results)
+	    throws InterruptedException, ExecutionException
+    {
+	/**
+	 * Waits for room in the queue, but gives up with the exception of a worker that has stopped, since a full queue
+	 * would otherwise never get room again once all workers have failed.
+	 **/
+	while (!jobs.offer(job, QUEUE_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+	    for (Future<Void> result : results) {
+		if (result.isDone()) {
+		    result.get();
+		}
+	    }
+	}
+    }
+
+    private Void renderJobs(BoardPainter painter, BlockingQueue<Job> jobs) throws IOException, InterruptedException {
+	int size = painter.getBoardSize();
+	BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+	Graphics2D g2d = image.createGraphics();
+	try (PngEncoder encoder = new PngEncoder()) {
+	    Job job;
+	    while ((job = jobs.take()).line != null) {
+		Position position;
+		try {
+		    position = Position.fromFen(job.line);
+		} catch (IllegalArgumentException e) {
+		    ExceptionLogger.getExceptionLogger().logException(Level.WARNING, "No diagram for " + job.line, e);
+		    continue;
+		}
+		g2d.setColor(Color.white);
+		g2d.fillRect(0, 0, size, size);
+		painter.paint(g2d, position);
+		Path file = outputDirectory.resolve(String.format(FILE_FORMAT, job.number));
+		try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(file))) {
+		    encoder.write(image, output);
+		}
+		diagramCount.incrementAndGet();
+	    }
+	} finally {
+	    g2d.dispose();
+	}
+	return null;
+    }
+}
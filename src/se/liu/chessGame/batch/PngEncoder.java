@@ -0,0 +1,107 @@
+package se.liu.chessGame.batch;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes images of type TYPE_INT_RGB as 8-bit truecolour PNG files, made for writing many diagrams quickly.
+ * The PNG writer of ImageIO tries every filter on every row to find the smallest file, which takes most of the time
+ * of a diagram. This encoder uses no filter and the fastest compression, which makes the files somewhat larger
+ * but several times faster to write. The image data is compressed straight into IDAT chunks of a fixed size.
+ * An encoder keeps its buffers and its Deflater between images, so every thread should have one of its own,
+ * and close must be called when it is no longer used.
+ */
+
+public class PngEncoder implements AutoCloseable
+{
+    private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    private static final byte[] HEADER_TYPE = "IHDR".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DATA_TYPE = "IDAT".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] END_TYPE = "IEND".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEADER_SIZE = 13;
+    private static final int BIT_DEPTH = 8;
+    private static final int TRUECOLOUR = 2;
+    private static final int FILTER_NONE = 0;
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final int BYTES_PER_PIXEL = 3;
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final CRC32 crc = new CRC32();
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    private final byte[] word = new byte[Integer.BYTES];
+    private byte[] rows = new byte[0];
+    private int[] line = new int[0];
+
+    public void write(BufferedImage image, OutputStream output) throws IOException {
+	/**
+	 * Writes the image as a complete PNG file to the stream, which is not closed.
+	 * Throws IllegalArgumentException for an image that is not of type TYPE_INT_RGB.
+	 **/
+	if (image.getType() != BufferedImage.TYPE_INT_RGB) {
+	    throw new IllegalArgumentException("Only TYPE_INT_RGB images can be encoded");
+	}
+	int width = image.getWidth();
+	int height = image.getHeight();
+	int rowLength = 1 + BYTES_PER_PIXEL * width;
+	if (rows.length < rowLength * height) {
+	    rows = new byte[rowLength * height];
+	}
+	if (line.length < width) {
+	    line = new int[width];
+	}
+	int offset = 0;
+	for (int y = 0; y < height; y++) {
+	    image.getRaster().getDataElements(0, y, width, 1, line);
+	    rows[offset++] = FILTER_NONE;
+	    for (int x = 0; x < width; x++) {
+		int rgb = line[x];
+		rows[offset++] = (byte) (rgb >> 16);
+		rows[offset++] = (byte) (rgb >> 8);
+		rows[offset++] = (byte) rgb;
+	    }
+	}
+	output.write(SIGNATURE);
+	byte[] header = new byte[HEADER_SIZE];
+	putInt(header, 0, width);
+	putInt(header, Integer.BYTES, height);
+	header[2 * Integer.BYTES] = BIT_DEPTH;
+	header[2 * Integer.BYTES + 1] = TRUECOLOUR;
+	writeChunk(output, HEADER_TYPE, header, HEADER_SIZE);
+	deflater.reset();
+	deflater.setInput(rows, 0, offset);
+	deflater.finish();
+	while (!deflater.finished()) {
+	    int length = deflater.deflate(chunk);
+	    if (length > 0) {
+		writeChunk(output, DATA_TYPE, chunk, length);
+	    }
+	}
+	writeChunk(output, END_TYPE, chunk, 0);
+    }
+
+    private void writeChunk(OutputStream output, byte[] type, byte[] data, int length) throws IOException {
+	putInt(word, 0, length);
+	output.write(word);
+	output.write(type);
+	output.write(data, 0, length);
+	crc.reset();
+	crc.update(type);
+	crc.update(data, 0, length);
+	putInt(word, 0, (int) crc.getValue());
+	output.write(word);
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+	for (int i = 0; i < Integer.BYTES; i++) {
+	    bytes[offset + i] = (byte) (value >>> (Integer.SIZE - Byte.SIZE * (i + 1)));
+	}
+    }
+
+    @Override public void close() {
+	deflater.end();
+    }
+}
@@ -0,0 +1,75 @@
+package se.liu.chessGame.batch;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Puts results that are finished in any order back into the order of their sequence numbers.
+ * Workers put the result of item n, and a single reader takes them out as 0, 1, 2 and so on.
+ * The buffer only has room for a fixed window of items after the next one to be taken, and a worker that is too
+ * far ahead waits, so a slow item can never make the buffer grow without limit.
+ * If the reader fails it aborts the buffer, and every put or take from then on throws CancellationException instead
+ * of waiting for a reader that will never come back.
+ */
+
+public class ReorderBuffer<T>
+{
+    private final Object[] slots;
+    private long next;
+    private long end = Long.MAX_VALUE;
+    private boolean aborted = false;
+
+    public ReorderBuffer(final int capacity, final long first) {
+	this.slots = new Object[capacity];
+	this.next = first;
+    }
+
+    public synchronized void put(long sequence, T item) throws InterruptedException {
+	while (sequence >= next + slots.length && !aborted) {
+	    wait();
+	}
+	checkAborted();
+	slots[(int) (sequence % slots.length)] = item;
+	notifyAll();
+    }
+
+    public synchronized T take() throws InterruptedException {
+	/**
+	 * Returns the next item in order, waiting until it has been put, or null once every item up to end is taken.
+	 **/
+	int slot = (int) (next % slots.length);
+	while (slots[slot] == null && next < end && !aborted) {
+	    wait();
+	}
+	checkAborted();
+	if (next >= end) {
+	    return null;
+	}
+	@SuppressWarnings("unchecked") T item = (T) slots[slot];
+	slots[slot] = null;
+	next++;
+	notifyAll();
+	return item;
+    }
+
+    public synchronized void close(long end) {
+	/**
+	 * Tells the buffer that no item with a sequence number of end or more will be put.
+	 **/
+	this.end = end;
+	notifyAll();
+    }
+
+    public synchronized void abort() {
+	/**
+	 * Wakes every thread waiting in put or take and makes them, and every later call, throw CancellationException.
+	 **/
+	aborted = true;
+	notifyAll();
+    }
+
+    private void checkAborted() {
+	if (aborted) {
+	    throw new CancellationException("The reorder buffer was aborted");
+	}
+    }
+}
@@ -0,0 +1,11 @@
+package se.liu.chessGame.engine;
+
+/**
+ * This interface defines how a listener to the AnalysisService should be defined.
+ * The listener is called on the analysis thread every time the search completes a new depth.
+ */
+
+public interface AnalysisListener
+{
+    public void analysisUpdated(AnalysisResult result);
+}
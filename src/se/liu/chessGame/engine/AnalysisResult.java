@@ -0,0 +1,107 @@
+package se.liu.chessGame.engine;
+
+/**
+ * The result of one completed search depth.
+ * The score is given in centipawns from the view of the player to move, a mate is given as MATE_SCORE minus the number
+ * of plies until the mate. The principal variation is the line the search expects both players to play.
+ * A search for several lines gives one result per line and depth, numbered from 1 for the best line.
+ */
+
+public class AnalysisResult
+{
+    private final long analysisId;
+    private final boolean whiteToMove;
+    private final int depth;
+    private final int score;
+    private final int[] principalVariation;
+    private final long nodes;
+    private final long elapsedMillis;
+    private final int lineNumber;
+
+    public AnalysisResult(final long analysisId, final boolean whiteToMove, final int depth, final int score,
+			  final int[] principalVariation, final long nodes, final long elapsedMillis)
+    {
+	this(analysisId, whiteToMove, depth, score, principalVariation, nodes, elapsedMillis, 1);
+    }
+
+    public AnalysisResult(final long analysisId, final boolean whiteToMove, final int depth, final int score,
+			  final int[] principalVariation, final long nodes, final long elapsedMillis, final int lineNumber)
+    {
+	this.analysisId = analysisId;
+	this.whiteToMove = whiteToMove;
+	this.depth = depth;
+	this.score = score;
+	this.principalVariation = principalVariation.clone();
+	this.nodes = nodes;
+	this.elapsedMillis = elapsedMillis;
+	this.lineNumber = lineNumber;
+    }
+
+    public long getAnalysisId() {
+	return analysisId;
+    }
+
+    public boolean isWhiteToMove() {
+	return whiteToMove;
+    }
+
+    public int getDepth() {
+	return depth;
+    }
+
+    public int getScore() {
+	return score;
+    }
+
+    public int getWhiteScore() {
+	return whiteToMove ? score : -score;
+    }
+
+    public boolean isMateScore() {
+	return Math.abs(score) >= Searcher.MATE_SCORE - Searcher.MAX_PLY;
+    }
+
+    public int getMateInMoves() {
+	/**
+	 * Returns in how many moves the player to move mates, negative if the player to move gets mated.
+	 **/
+	int plies = Searcher.MATE_SCORE - Math.abs(score);
+	int moves = (plies + 1) / 2;
+	return score > 0 ? moves : -moves;
+    }
+
+    public int[] getPrincipalVariation() {
+	return principalVariation.clone();
+    }
+
+    public int getBestMove() {
+	return principalVariation.length > 0 ? principalVariation[0] : Move.NONE;
+    }
+
+    public int getLineNumber() {
+	return lineNumber;
+    }
+
+    public long getNodes() {
+	return nodes;
+    }
+
+    public long getElapsedMillis() {
+	return elapsedMillis;
+    }
+
+    public long getNodesPerSecond() {
+	return elapsedMillis > 0 ? nodes * 1000 / elapsedMillis : nodes * 1000;
+    }
+
+    public String getPrincipalVariationText() {
+	StringBuilder text = new StringBuilder();
+	for (int move : principalVariation) {
+	    if (text.length() > 0) {
+		text.append(' ');
+	    }
+	    text.append(Move.toUci(move));
+	}
+	return text.toString();
+    }
+}
@@ -0,0 +1,123 @@
+package se.liu.chessGame.engine;
+
+import se.liu.chessGame.ExceptionLogger;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Analyses positions on a background thread and streams every completed depth to its listeners.
+ * Each analysis works on its own SearchBoard built from an immutable Position. It can look for several candidate
+ * moves at once, in which case every depth is delivered as one result per line. Starting a new analysis or calling cancel stops the running one
+ * at once, and its results are never delivered after that.
+ * All analyses share one TranspositionTable, so going back to a position analysed before, in this session or in an
+ * earlier one when the table comes from a TranspositionFile, starts with the hash moves found then.
+ */
+
+public class AnalysisService
+{
+    public static final int UNLIMITED_DEPTH = Searcher.MAX_PLY - 1;
+
+    private static final long SHUTDOWN_WAIT_MILLIS = 1000;
+
+    private final ExecutorService executor;
+    private final TranspositionTable transpositionTable;
+    private final List<AnalysisListener> listeners = new CopyOnWriteArrayList<>();
+    private Searcher currentSearcher = null;
+    private Future<?> currentAnalysis = null;
+    private long analysisCount = 0;
+
+    public AnalysisService() {
+	this(new TranspositionTable(TranspositionTable.DEFAULT_SIZE_BITS));
+    }
+
+    public AnalysisService(final TranspositionTable transpositionTable) {
+	this.transpositionTable = transpositionTable;
+	this.executor = Executors.newSingleThreadExecutor(runnable -> {
+	    Thread thread = new Thread(runnable, "analysis");
+	    thread.setDaemon(true);
+	    return thread;
+	});
+    }
+
+    public void addListener(final AnalysisListener listener) {
+	listeners.add(listener);
+    }
+
+    public void removeListener(final AnalysisListener listener) {
+	listeners.remove(listener);
+    }
+
+    public long analyse(final Position position, final int maxDepth) {
+	return analyse(position, null, maxDepth);
+    }
+
+    public long analyse(final Position position, final PositionHistory history, final int maxDepth) {
+	return analyse(position, history, maxDepth, 1);
+    }
+
+    public synchronized long analyse(final Position position, final PositionHistory history, final int maxDepth,
+				     final int lineCount)
+    {
+	/**
+	 * Cancels the running analysis and starts analysing the position for the best lineCount moves.
+	 * Returns the id that the results will carry.
+	 * If the history of the game is given, the search also treats repetitions of earlier positions as draws.
+	 **/
+	cancel();
+	analysisCount++;
+	SearchBoard searchBoard = new SearchBoard(position);
+	if (history != null) {
+	    searchBoard.setGameHistory(history);
+	}
+	final Searcher searcher = new Searcher(searchBoard, analysisCount, transpositionTable);
+	searcher.setLineCount(lineCount);
+	currentSearcher = searcher;
+	currentAnalysis = executor.submit(() -> {
+	    try {
+		searcher.search(maxDepth, result -> publish(searcher, result));
+	    } catch (RuntimeException e) {
+		ExceptionLogger.getExceptionLogger().logException(Level.SEVERE, "The analysis failed", e);
+	    }
+	});
+	return analysisCount;
+    }
+
+    public synchronized void cancel() {
+	if (currentSearcher != null) {
+	    currentSearcher.stop();
+	    currentAnalysis.cancel(true);
+	    currentSearcher = null;
+	    currentAnalysis = null;
+	}
+    }
+
+    public void shutdown() throws InterruptedException {
+	/**
+	 * Stops the running analysis and waits a moment for it to end, after which the table is no longer written to.
+	 **/
+	cancel();
+	executor.shutdown();
+	executor.awaitTermination(SHUTDOWN_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized long getCurrentAnalysisId() {
+	return currentSearcher != null ? analysisCount : 0;
+    }
+
+    private void publish(Searcher searcher, AnalysisResult result) {
+	synchronized (this) {
+	    if (searcher != currentSearcher) {
+		return;
+	    }
+	}
+	for (AnalysisListener listener : listeners) {
+	    listener.analysisUpdated(result);
+	}
+    }
+}
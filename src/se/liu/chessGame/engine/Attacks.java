@@ -0,0 +1,226 @@
+package se.liu.chessGame.engine;
+
+/**
+ * Precomputed attack tables for all pieces, as 64 bit masks with one bit per square numbered like Square.
+ * Rooks, bishops and queens use magic bitboards: the blockers on the lines of a square are multiplied by a magic
+ * number that maps every blocker pattern to its own slot in a table of ready made attack masks.
+ * The magic numbers were found once by trying random numbers and are listed here, since searching for them every time
+ * the class was loaded took almost two seconds.
+ * The BETWEEN table holds the squares strictly between two squares on a common line, so checking whether a path is
+ * blocked is a single mask test against the occupied squares.
+ */
+
+public final class Attacks
+{
+    private static final int[][] KNIGHT_STEPS = { { -2, -1 }, { -2, 1 }, { -1, -2 }, { -1, 2 }, { 1, -2 }, { 1, 2 }, { 2, -1 }, { 2, 1 } };
+    private static final int[][] KING_STEPS = { { -1, -1 }, { -1, 0 }, { -1, 1 }, { 0, -1 }, { 0, 1 }, { 1, -1 }, { 1, 0 }, { 1, 1 } };
+    private static final int[][] ROOK_DIRECTIONS = { { -1, 0 }, { 1, 0 }, { 0, -1 }, { 0, 1 } };
+    private static final int[][] BISHOP_DIRECTIONS = { { -1, -1 }, { -1, 1 }, { 1, -1 }, { 1, 1 } };
+    private static final long[] ROOK_MAGICS = {
+	    0x0280018040006210L, 0x8140002000401003L, 0x8900150020000840L, 0x0480100208008004L,
+	    0x0200081021048200L, 0x4080040001800200L, 0x2580020020800100L, 0x0100098442002900L,
+	    0x0000800040008020L, 0x00A1804000200082L, 0x0001001020010048L, 0x00A2000A00204010L,
+	    0x00310008017D0010L, 0x80C0800200040180L, 0x8400808001000200L, 0x0001000100008042L,
+	    0x0140088000209040L, 0x18064C4000201000L, 0x2010808020001000L, 0x0080230009019000L,
+	    0x0049010010040800L, 0x20A0080140100420L, 0x0101808002000100L, 0x0044020000904904L,
+	    0x0080400080008020L, 0x0810004140022000L, 0x01CA008200201240L, 0x0410082100100102L,
+	    0x4000040080800800L, 0x0442000200040810L, 0x0100900400080281L, 0x0000802880104500L,
+	    0x1200204012800084L, 0x2010002000C04002L, 0x4120008020801002L, 0x4088210089001000L,
+	    0x0200040080800800L, 0x0990040080800200L, 0x0209000401000200L, 0x1001110042000884L,
+	    0x0480008040028020L, 0x9140003008006001L, 0x8000200010008080L, 0x0070000804004040L,
+	    0x1C20080100050010L, 0x0302000400808002L, 0x4001000200010004L, 0x1810308041020004L,
+	    0x0500308000410100L, 0x0300420020810200L, 0x0000100020008680L, 0x200042A200089200L,
+	    0x1000100500080100L, 0x0024808400820080L, 0x2100100208010400L, 0x0000010040840200L,
+	    0x0021052280011041L, 0x2006081045002082L, 0x3584400A00201082L, 0x0000210198043001L,
+	    0x0109008410422801L, 0x0231000802040003L, 0x000018100640A104L, 0x0000004084010022L
+    };
+    private static final long[] BISHOP_MAGICS = {
+	    0x4640026401020012L, 0x0C041010E2008058L, 0x0010440080291004L, 0xC0480A0220892200L,
+	    0x2014042288900000L, 0x0062111078100012L, 0x0400480410080220L, 0x0000140092082040L,
+	    0x00C8040810040088L, 0x00A029B004004040L, 0x01088808044C8490L, 0x04C818060042000AL,
+	    0x0000040D20A00000L, 0x1000011002110001L, 0x1848004104A06000L, 0x4210010308901411L,
+	    0x0204802008100118L, 0x0021011208013100L, 0x4888060418001010L, 0x1008000082024004L,
+	    0x0C02008412020000L, 0x4C00400808021040L, 0x100200C406494400L, 0x0008800442080100L,
+	    0x12080881A2925009L, 0x800842006014A102L, 0x089020841C080080L, 0x6010082104040010L,
+	    0x0421001001004008L, 0x1408060000E20110L, 0x0200808012021000L, 0x4541710012430800L,
+	    0xC104100800420200L, 0x00182C8401020801L, 0x0001802480100400L, 0x0040C00808048200L,
+	    0xC600820200940108L, 0x4910020204802080L, 0x841D480880920200L, 0x0101004200048E12L,
+	    0x0000C4202008082AL, 0x0808510809082000L, 0x00A0505090001800L, 0x8900004208000080L,
+	    0x000244100C004084L, 0x3002008901010601L, 0x0002040410840C04L, 0x0002020C01048033L,
+	    0x012080B009200C04L, 0x1000208424200501L, 0x0028011088040510L, 0x0A4C821042020201L,
+	    0x0040408921010000L, 0xC880202002009000L, 0x0288105002004002L, 0x0004080224023108L,
+	    0x0002088200900404L, 0x0201070402298400L, 0x0000504024020800L, 0x0092000108840440L,
+	    0x2800210910020210L, 0x0024004002040440L, 0x2000891001080100L, 0x0004200092020040L
+    };
+
+    private static final long[] KNIGHT = new long[Square.COUNT];
+    private static final long[] KING = new long[Square.COUNT];
+    private static final long[][] PAWN = new long[2][Square.COUNT];
+    private static final long[][] BETWEEN = new long[Square.COUNT][Square.COUNT];
+    private static final long[][] LINE = new long[Square.COUNT][Square.COUNT];
+
+    private static final long[] ROOK_MASKS = new long[Square.COUNT];
+    private static final int[] ROOK_SHIFTS = new int[Square.COUNT];
+    private static final long[][] ROOK_TABLE = new long[Square.COUNT][];
+    private static final long[] BISHOP_MASKS = new long[Square.COUNT];
+    private static final int[] BISHOP_SHIFTS = new int[Square.COUNT];
+    private static final long[][] BISHOP_TABLE = new long[Square.COUNT][];
+
+    static {
+	for (int square = 0; square < Square.COUNT; square++) {
+	    KNIGHT[square] = stepAttacks(square, KNIGHT_STEPS);
+	    KING[square] = stepAttacks(square, KING_STEPS);
+	    PAWN[0][square] = stepAttacks(square, new int[][] { { -1, -1 }, { -1, 1 } });
+	    PAWN[1][square] = stepAttacks(square, new int[][] { { 1, -1 }, { 1, 1 } });
+	    initMagic(square, ROOK_DIRECTIONS, ROOK_MASKS, ROOK_MAGICS[square], ROOK_SHIFTS, ROOK_TABLE);
+	    initMagic(square, BISHOP_DIRECTIONS, BISHOP_MASKS, BISHOP_MAGICS[square], BISHOP_SHIFTS, BISHOP_TABLE);
+	}
+	for (int from = 0; from < Square.COUNT; from++) {
+	    initLines(from, ROOK_DIRECTIONS);
+	    initLines(from, BISHOP_DIRECTIONS);
+	}
+    }
+
+    private Attacks() {}
+
+    public static long bit(int square) {
+	return 1L << square;
+    }
+
+    public static long knight(int square) {
+	return KNIGHT[square];
+    }
+
+    public static long king(int square) {
+	return KING[square];
+    }
+
+    public static long pawn(int square, boolean isWhite) {
+	/**
+	 * Returns the squares a pawn of the given colour on the square attacks.
+	 **/
+	return PAWN[isWhite ? 0 : 1][square];
+    }
+
+    public static long rook(int square, long occupied) {
+	int index = (int) (((occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square]);
+	return ROOK_TABLE[square][index];
+    }
+
+    public static long bishop(int square, long occupied) {
+	int index = (int) (((occupied & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square]);
+	return BISHOP_TABLE[square][index];
+    }
+
+    public static long queen(int square, long occupied) {
+	return rook(square, occupied) | bishop(square, occupied);
+    }
+
+    public static long between(int from, int to) {
+	/**
+	 * Returns the squares strictly between the two squares if they share a rank, file or diagonal, otherwise no squares.
+	 **/
+	return BETWEEN[from][to];
+    }
+
+    public static long line(int from, int to) {
+	/**
+	 * Returns the whole line through both squares, edge to edge, or no squares if they are not on a common line.
+	 **/
+	return LINE[from][to];
+    }
+
+    private static long stepAttacks(int square, int[][] steps) {
+	long attacks = 0;
+	for (int[] step : steps) {
+	    int y = Square.y(square) + step[0];
+	    int x = Square.x(square) + step[1];
+	    if (Square.isOnBoard(y, x)) {
+		attacks |= bit(Square.of(y, x));
+	    }
+	}
+	return attacks;
+    }
+
+    private static long slidingAttacks(int square, long occupied, int[][] directions) {
+	/**
+	 * Walks every direction square by square until the edge or the first blocker. Only used to fill the tables.
+	 **/
+	long attacks = 0;
+	for (int[] direction : directions) {
+	    int y = Square.y(square) + direction[0];
+	    int x = Square.x(square) + direction[1];
+	    while (Square.isOnBoard(y, x)) {
+		attacks |= bit(Square.of(y, x));
+		if ((occupied & bit(Square.of(y, x))) != 0) {
+		    break;
+		}
+		y += direction[0];
+		x += direction[1];
+	    }
+	}
+	return attacks;
+    }
+
+    private static long relevantBlockers(int square, int[][] directions) {
+	/**
+	 * Returns the squares whose occupation can change the attacks of a slider on the square.
+	 * The last square of every ray never matters, since nothing lies behind it.
+	 **/
+	long mask = 0;
+	for (int[] direction : directions) {
+	    int y = Square.y(square) + direction[0];
+	    int x = Square.x(square) + direction[1];
+	    while (Square.isOnBoard(y + direction[0], x + direction[1])) {
+		mask |= bit(Square.of(y, x));
+		y += direction[0];
+		x += direction[1];
+	    }
+	}
+	return mask;
+    }
+
+    private static void initMagic(int square, int[][] directions, long[] masks, long magic, int[] shifts, long[][] tables) {
+	/**
+	 * Enumerates every blocker pattern of the square and stores its attack mask in the slot the magic number gives it.
+	 * Two patterns with different attacks may never share a slot, which would mean the magic number is wrong.
+	 **/
+	long mask = relevantBlockers(square, directions);
+	int bits = Long.bitCount(mask);
+	int size = 1 << bits;
+	long[] table = new long[size];
+	boolean[] used = new boolean[size];
+	masks[square] = mask;
+	shifts[square] = Long.SIZE - bits;
+	long subset = 0;
+	for (int i = 0; i < size; i++) {
+	    int index = (int) ((subset * magic) >>> shifts[square]);
+	    long attacks = slidingAttacks(square, subset, directions);
+	    if (used[index] && table[index] != attacks) {
+		throw new IllegalStateException("The magic number of square " + Square.name(square) + " maps two blocker patterns to one slot");
+	    }
+	    used[index] = true;
+	    table[index] = attacks;
+	    subset = (subset - mask) & mask;
+	}
+	tables[square] = table;
+    }
+
+    private static void initLines(int from, int[][] directions) {
+	for (int[] direction : directions) {
+	    long ray = slidingAttacks(from, 0, new int[][] { direction });
+	    long opposite = slidingAttacks(from, 0, new int[][] { { -direction[0], -direction[1] } });
+	    long between = 0;
+	    int y = Square.y(from) + direction[0];
+	    int x = Square.x(from) + direction[1];
+	    while (Square.isOnBoard(y, x)) {
+		int to = Square.of(y, x);
+		BETWEEN[from][to] = between;
+		LINE[from][to] = ray | opposite | bit(from);
+		between |= bit(to);
+		y += direction[0];
+		x += direction[1];
+	    }
+	}
+    }
+}
@@ -0,0 +1,596 @@
+package se.liu.chessGame.engine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the speed of the engine parts on fixed sets of positions and checks that faster variants give the same
+ * answers as the simple ones. The repository has no test suite, so these checks are run from here.
+ * Run it with the names of the sections to run as arguments, or without arguments to run all of them.
+ */
+
+public final class Benchmark
+{
+    private static final long POSITION_SEED = 78L;
+    private static final int SAMPLE_POSITIONS = 2000;
+    private static final int SAMPLE_PLIES = 60;
+    private static final double NANOS_PER_SECOND = 1.0e9;
+    private static final int TACTICAL_DEPTH = 4;
+    private static final int ORDERING_DEPTH = 4;
+    private static final long PONDER_THINK_MILLIS = 100;
+    private static final long PERSON_THINK_MILLIS = 200;
+    private static final int PERSON_DEPTH = 3;
+    private static final int PONDER_GAMES = 4;
+    private static final int PONDER_MOVES = 6;
+    private static final int MULTI_PV_DEPTH = 5;
+    private static final int[] MULTI_PV_LINES = { 1, 3, 5 };
+    private static final long CLOCK_MILLIS = 1000;
+    private static final long CLOCK_INCREMENT_MILLIS = 10;
+    private static final int CLOCK_GAMES = 4;
+    private static final int CLOCK_PLIES = 80;
+    private static final long MATE_NODES = 500000;
+    private static final int MATE_ALPHA_BETA_DEPTH = 6;
+    private static final int CACHE_DEPTH = 7;
+    private static final int EVALUATION_DEPTH = 6;
+    private static final int[] PAWN_TABLE_BITS = { 8, 11, 14 };
+    private static final int[] EVALUATION_CACHE_BITS = { 10, 13, 16, 19 };
+    private static final Pattern MATE_OPERATION = Pattern.compile("\\bdm (\\d+);");
+    private static final String[] TACTICAL_POSITIONS = {
+	    "2rr3k/pp3pp1/1nnqbN1p/3pN3/2pP4/2P3Q1/PPB4P/R4RK1 w - - 0 1",
+	    "5rk1/1ppb3p/p1pb4/6q1/3P1p1r/2P1R2P/PP1BQ1P1/5RKN w - - 0 1",
+	    "r1bq2rk/pp3pbp/2p1p1pQ/7P/3P4/2PB1N2/PP3PPR/2KR4 w - - 0 1",
+	    "r1b1kb1r/3q1ppp/pBp1pn2/8/Np3P2/5B2/PPP3PP/R2QK2R w - - 0 1",
+	    "4k1r1/2p3r1/1pR1p3/3pP2p/3P2qP/P4N2/1PQ4P/5R1K b - - 0 1",
+	    "5k2/6pp/p1qN4/1p1p4/3P4/2PKP2Q/PP3r2/3R4 b - - 0 1",
+	    "r1bqk2r/ppp1nppp/4p3/n5N1/2BPp3/P1P5/2P2PPP/R1BQK2R w - - 0 1",
+	    "3r1rk1/1p3ppp/p1q1p3/2n5/2B5/1P2P3/PBQ2PPP/3R1RK1 w - - 0 1"
+    };
+
+    private Benchmark() {}
+
+    public static void main(String[] args) {
+	List<String> sections = Arrays.asList(args);
+	boolean allCorrect = true;
+	if (sections.isEmpty() || sections.contains("perft")) {
+	    allCorrect &= Perft.verify();
+	}
+	if (sections.isEmpty() || sections.contains("network")) {
+	    allCorrect &= benchmarkNetwork();
+	}
+	if (sections.isEmpty() || sections.contains("quiescence")) {
+	    benchmarkQuiescence();
+	}
+	if (sections.isEmpty() || sections.contains("ordering")) {
+	    allCorrect &= benchmarkOrdering();
+	}
+	if (sections.isEmpty() || sections.contains("pondering")) {
+	    benchmarkPondering();
+	}
+	if (sections.isEmpty() || sections.contains("multipv")) {
+	    allCorrect &= benchmarkMultiPv();
+	}
+	if (sections.isEmpty() || sections.contains("clock")) {
+	    allCorrect &= benchmarkClock();
+	}
+	if (sections.isEmpty() || sections.contains("mate")) {
+	    allCorrect &= benchmarkMateSolver();
+	}
+	if (sections.isEmpty() || sections.contains("cache")) {
+	    allCorrect &= benchmarkTranspositionFile();
+	}
+	if (sections.isEmpty() || sections.contains("evaluation")) {
+	    allCorrect &= benchmarkEvaluationCaches();
+	}
+	System.exit(allCorrect ? 0 : 1);
+    }
+
+    static List<Position> samplePositions(int count) {
+	/**
+	 * Plays random games from the start position and returns positions from them, the same ones on every run.
+	 **/
+	Random random = new Random(POSITION_SEED);
+	List<Position> positions = new ArrayList<>();
+	int[] moves = new int[SearchBoard.MAX_MOVES];
+	while (positions.size() < count) {
+	    Position position = Position.startPosition();
+	    for (int ply = 0; ply < SAMPLE_PLIES && positions.size() < count; ply++) {
+		int moveCount = new SearchBoard(position, null).generateLegalMoves(moves);
+		if (moveCount == 0) {
+		    break;
+		}
+		position = position.play(moves[random.nextInt(moveCount)]);
+		positions.add(position);
+	    }
+	}
+	return positions;
+    }
+
+    private static boolean benchmarkNetwork() {
+	/**
+	 * Checks that the vectorisable output layer gives exactly the scalar result and compares the evaluation speed
+	 * of the network paths and the handcrafted evaluation.
+	 **/
+	final int hiddenSize = 256;
+	final int rounds = 200;
+	NeuralNetwork network = NeuralNetwork.random(POSITION_SEED, hiddenSize);
+	List<SearchBoard> boards = new ArrayList<>();
+	for (Position position : samplePositions(SAMPLE_POSITIONS)) {
+	    boards.add(new SearchBoard(position, network));
+	}
+	boolean identical = true;
+	for (SearchBoard board : boards) {
+	    int[] white = board.getAccumulator(true);
+	    int[] black = board.getAccumulator(false);
+	    identical &= network.outputSumScalar(white, black) == network.outputSumBlocked(white, black);
+	    identical &= network.outputSumScalar(black, white) == network.outputSumBlocked(black, white);
+	}
+	System.out.println("network scalar and vectorised output " + (identical ? "identical" : "DIFFER"));
+
+	long checksum = 0;
+	for (int round = 0; round < rounds; round++) {
+	    for (SearchBoard board : boards) {
+		checksum += network.evaluateScalar(board.getAccumulator(true), board.getAccumulator(false));
+		checksum -= network.evaluate(board.getAccumulator(true), board.getAccumulator(false));
+	    }
+	}
+	long startTime = System.nanoTime();
+	for (int round = 0; round < rounds; round++) {
+	    for (SearchBoard board : boards) {
+		checksum += network.evaluateScalar(board.getAccumulator(true), board.getAccumulator(false));
+	    }
+	}
+	report("network scalar", (long) rounds * boards.size(), System.nanoTime() - startTime);
+	startTime = System.nanoTime();
+	for (int round = 0; round < rounds; round++) {
+	    for (SearchBoard board : boards) {
+		checksum -= network.evaluate(board.getAccumulator(true), board.getAccumulator(false));
+	    }
+	}
+	report("network vectorised", (long) rounds * boards.size(), System.nanoTime() - startTime);
+	List<SearchBoard> handcrafted = new ArrayList<>();
+	for (SearchBoard board : boards) {
+	    handcrafted.add(new SearchBoard(board.toPosition(), null));
+	}
+	startTime = System.nanoTime();
+	for (int round = 0; round < rounds; round++) {
+	    for (SearchBoard board : handcrafted) {
+		checksum += board.evaluate();
+	    }
+	}
+	report("handcrafted incremental", (long) rounds * boards.size(), System.nanoTime() - startTime);
+	System.out.println("checksum " + checksum);
+	return identical;
+    }
+
+    private static void benchmarkQuiescence() {
+	/**
+	 * Searches a set of tactical positions to a fixed depth with and without dropping the captures that lose
+	 * material, and prints how many nodes and how much time each needs.
+	 * A short search first loads the attack tables, so that is not part of the timing.
+	 **/
+	new Searcher(new SearchBoard(Position.fromFen(TACTICAL_POSITIONS[0]), null), 0).search(1, r -> {});
+	for (boolean exchangePruning : new boolean[] { false, true }) {
+	    long nodes = 0;
+	    long startTime = System.nanoTime();
+	    StringBuilder bestMoves = new StringBuilder();
+	    for (String fen : TACTICAL_POSITIONS) {
+		Searcher searcher = new Searcher(new SearchBoard(Position.fromFen(fen), null), 0);
+		searcher.setExchangePruning(exchangePruning);
+		AnalysisResult result = searcher.search(TACTICAL_DEPTH, r -> {});
+		nodes += searcher.getNodes();
+		bestMoves.append(' ').append(Move.toUci(result.getBestMove()));
+	    }
+	    report(exchangePruning ? "quiescence with SEE pruning" : "quiescence without pruning", nodes,
+		   System.nanoTime() - startTime);
+	    System.out.println("  best moves" + bestMoves);
+	}
+    }
+
+    private static boolean benchmarkOrdering() {
+	/**
+	 * Checks that the MovePicker hands out every legal move exactly once, also when it is given moves from other
+	 * positions as hash move and killers, and compares the nodes and the time to reach a fixed depth with and
+	 * without move ordering.
+	 **/
+	List<Position> positions = samplePositions(SAMPLE_POSITIONS);
+	int[] legal = new int[SearchBoard.MAX_MOVES];
+	int[] picked = new int[SearchBoard.MAX_MOVES];
+	int mismatches = 0;
+	Random random = new Random(POSITION_SEED);
+	for (Position position : positions) {
+	    SearchBoard board = new SearchBoard(position, null);
+	    int legalCount = board.generateLegalMoves(legal);
+	    int otherCount = new SearchBoard(positions.get(random.nextInt(positions.size())), null).generateLegalMoves(picked);
+	    int hashMove = otherCount > 0 ? picked[random.nextInt(otherCount)] : Move.NONE;
+	    int killer = legalCount > 0 ? legal[random.nextInt(legalCount)] : Move.NONE;
+	    MovePicker picker = new MovePicker(board, new int[2][MovePicker.HISTORY_SIZE]);
+	    picker.reset(hashMove, killer, otherCount > 0 ? picked[0] : Move.NONE);
+	    int pickedCount = 0;
+	    for (int move = picker.next(); move != Move.NONE; move = picker.next()) {
+		picked[pickedCount++] = move;
+	    }
+	    Arrays.sort(legal, 0, legalCount);
+	    Arrays.sort(picked, 0, pickedCount);
+	    if (!Arrays.equals(legal, 0, legalCount, picked, 0, pickedCount)) {
+		mismatches++;
+	    }
+	}
+	System.out.println("move picker: " + mismatches + " of " + positions.size() + " positions differ from the legal moves");
+
+	for (boolean moveOrdering : new boolean[] { false, true }) {
+	    long nodes = 0;
+	    long startTime = System.nanoTime();
+	    for (String fen : TACTICAL_POSITIONS) {
+		Searcher searcher = new Searcher(new SearchBoard(Position.fromFen(fen), null), 0);
+		searcher.setMoveOrdering(moveOrdering);
+		searcher.search(ORDERING_DEPTH, r -> {});
+		nodes += searcher.getNodes();
+	    }
+	    report(moveOrdering ? "search with move ordering" : "search without ordering", nodes, System.nanoTime() - startTime);
+	}
+	return mismatches == 0;
+    }
+
+    private static void benchmarkPondering() {
+	/**
+	 * Plays short games of the ComputerPlayer against a simulated person, who finds a move with a shallow search and
+	 * then waits as if thinking, and compares how long the computer needs to answer with and without pondering.
+	 **/
+	for (boolean pondering : new boolean[] { false, true }) {
+	    ComputerPlayer computer = new ComputerPlayer();
+	    computer.setPondering(pondering);
+	    BlockingQueue<Integer> answers = new ArrayBlockingQueue<>(1);
+	    long answerNanos = 0;
+	    int answerCount = 0;
+	    try {
+		for (int game = 0; game < PONDER_GAMES; game++) {
+		    Position position = Position.fromFen(TACTICAL_POSITIONS[game]);
+		    PositionHistory history = new PositionHistory();
+		    history.push(Zobrist.of(position), true);
+		    for (int moveNumber = 0; moveNumber < PONDER_MOVES; moveNumber++) {
+			long startTime = System.nanoTime();
+			computer.play(position, history.copy(), TimeManager.fixed(PONDER_THINK_MILLIS),
+				  (searched, move) -> answers.add(move));
+			int answer = answers.take();
+			answerNanos += System.nanoTime() - startTime;
+			answerCount++;
+			if (answer == Move.NONE) {
+			    break;
+			}
+			position = playMove(position, history, answer);
+			SearchBoard personBoard = new SearchBoard(position);
+			personBoard.setGameHistory(history);
+			AnalysisResult reply = new Searcher(personBoard, 0).search(PERSON_DEPTH, r -> {});
+			if (reply == null || reply.getBestMove() == Move.NONE) {
+			    break;
+			}
+			Thread.sleep(PERSON_THINK_MILLIS);
+			position = playMove(position, history, reply.getBestMove());
+		    }
+		}
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		return;
+	    } finally {
+		computer.cancel();
+	    }
+	    System.out.printf("%-28s %12d answers, %6d ms on average, %d ponder hits, %d misses%n",
+			      pondering ? "computer with pondering" : "computer without pondering", answerCount,
+			      answerNanos / Math.max(1, answerCount) / 1000000, computer.getPonderHits(), computer.getPonderMisses());
+	}
+    }
+
+    private static boolean benchmarkMultiPv() {
+	/**
+	 * Searches the tactical positions to a fixed depth for one and for several lines and prints the nodes and time
+	 * each needs. Checks that the best line has the score of the single line search and that every further line
+	 * scores no better than the one before it.
+	 **/
+	int[] singleScores = new int[TACTICAL_POSITIONS.length];
+	int mismatches = 0;
+	for (int lines : MULTI_PV_LINES) {
+	    long nodes = 0;
+	    long startTime = System.nanoTime();
+	    for (int i = 0; i < TACTICAL_POSITIONS.length; i++) {
+		Searcher searcher = new Searcher(new SearchBoard(Position.fromFen(TACTICAL_POSITIONS[i]), null), 0);
+		searcher.setLineCount(lines);
+		int[] lineScores = new int[lines];
+		AnalysisResult result = searcher.search(MULTI_PV_DEPTH, r -> {
+		    if (r.getDepth() == MULTI_PV_DEPTH) {
+			lineScores[r.getLineNumber() - 1] = r.getScore();
+		    }
+		});
+		nodes += searcher.getNodes();
+		if (lines == 1) {
+		    singleScores[i] = result.getScore();
+		}
+		boolean ordered = true;
+		for (int line = 1; line < lines; line++) {
+		    ordered &= lineScores[line] <= lineScores[line - 1];
+		}
+		if (result.getScore() != singleScores[i] || !ordered) {
+		    mismatches++;
+		}
+	    }
+	    report("search with " + lines + (lines == 1 ? " line" : " lines"), nodes, System.nanoTime() - startTime);
+	}
+	System.out.println("multi-pv: " + mismatches + " searches differ from the single line or are out of order");
+	return mismatches == 0;
+    }
+
+    private static boolean benchmarkClock() {
+	/**
+	 * Plays games of the engine against itself on a short clock with an increment, measuring the real time of every
+	 * move, and checks that no side ever runs out of time. Prints how much of the clock the moves used.
+	 **/
+	int flags = 0;
+	int moveCount = 0;
+	long usedMillis = 0;
+	long lowestRemaining = CLOCK_MILLIS;
+	SearchBoard board = new SearchBoard(Position.startPosition());
+	Searcher searcher = new Searcher(board, 0);
+	for (int game = 0; game < CLOCK_GAMES; game++) {
+	    Position position = Position.fromFen(TACTICAL_POSITIONS[game]);
+	    PositionHistory history = new PositionHistory();
+	    history.push(Zobrist.of(position), true);
+	    long[] remaining = { CLOCK_MILLIS, CLOCK_MILLIS };
+	    for (int ply = 0; ply < CLOCK_PLIES; ply++) {
+		int side = position.isWhiteToMove() ? 0 : 1;
+		long startTime = System.nanoTime();
+		board.setPosition(position);
+		board.setGameHistory(history);
+		searcher.setTimeManager(TimeManager.forClock(remaining[side], CLOCK_INCREMENT_MILLIS, 0,
+							     TimeManager.DEFAULT_MOVES_TO_GO));
+		AnalysisResult result = searcher.search(AnalysisService.UNLIMITED_DEPTH, r -> {});
+		long used = (System.nanoTime() - startTime) / 1000000;
+		remaining[side] -= used;
+		usedMillis += used;
+		moveCount++;
+		if (remaining[side] <= 0) {
+		    flags++;
+		    break;
+		}
+		lowestRemaining = Math.min(lowestRemaining, remaining[side]);
+		remaining[side] += CLOCK_INCREMENT_MILLIS;
+		if (result == null || result.getBestMove() == Move.NONE) {
+		    break;
+		}
+		position = playMove(position, history, result.getBestMove());
+	    }
+	}
+	System.out.printf("%-28s %12d moves, %6d ms on average, lowest clock %d ms, %d lost on time%n", "clock " + CLOCK_MILLIS +
+			  " ms + " + CLOCK_INCREMENT_MILLIS + " ms", moveCount, usedMillis / Math.max(1, moveCount), lowestRemaining, flags);
+	return flags == 0;
+    }
+
+    private static boolean benchmarkMateSolver() {
+	/**
+	 * Solves the mate suite with the mate solver and searches it with alpha-beta to a fixed depth, and prints for
+	 * every position the mate each finds and the nodes and time it took. Checks that the solver proves a mate in
+	 * every position that is no longer than the known one, and that the line it gives ends in mate.
+	 **/
+	List<String> suite;
+	try {
+	    suite = readMateSuite();
+	} catch (IOException e) {
+	    System.out.println("mate suite could not be read: " + e.getMessage());
+	    return false;
+	}
+	MateSolver solver = new MateSolver(MateSolver.DEFAULT_TABLE_SIZE_BITS);
+	solver.setNodeLimit(MATE_NODES);
+	int failures = 0;
+	long solverNanos = 0;
+	long searchNanos = 0;
+	int searchMates = 0;
+	for (String line : suite) {
+	    Matcher matcher = MATE_OPERATION.matcher(line);
+	    if (!matcher.find()) {
+		continue;
+	    }
+	    int knownMate = Integer.parseInt(matcher.group(1));
+	    Position position = Position.fromFen(line);
+	    solver.clear();
+	    long startTime = System.nanoTime();
+	    MateSolution solution = solver.solve(position, knownMate);
+	    long nanos = System.nanoTime() - startTime;
+	    solverNanos += nanos;
+	    boolean correct = solution.getStatus() == MateSolution.Status.MATE && solution.getMateInMoves() <= knownMate &&
+			      endsInMate(position, solution.getLine());
+	    if (!correct) {
+		failures++;
+	    }
+	    Searcher searcher = new Searcher(new SearchBoard(position, null), 0);
+	    startTime = System.nanoTime();
+	    AnalysisResult result = searcher.search(Math.min(MATE_ALPHA_BETA_DEPTH, 2 * knownMate - 1), r -> {});
+	    searchNanos += System.nanoTime() - startTime;
+	    boolean searchMate = result != null && result.isMateScore() && result.getScore() > 0;
+	    if (searchMate) {
+		searchMates++;
+	    }
+	    System.out.printf("dm %-3d solver %-8s %9d nodes %6d ms   alpha-beta %-8s %9d nodes%s%n", knownMate,
+			      correct ? "mate " + solution.getMateInMoves() + (solution.isShortest() ? "" : "?") : "FAILED",
+			      solution.getNodes(), nanos / 1000000, searchMate ? "mate " + result.getMateInMoves() : "no mate",
+			      searcher.getNodes(), correct ? "" : "   " + line);
+	}
+	System.out.printf("mate solver %d of %d proven in %d ms, alpha-beta to depth %d %d in %d ms%n", suite.size() - failures,
+			  suite.size(), solverNanos / 1000000, MATE_ALPHA_BETA_DEPTH, searchMates, searchNanos / 1000000);
+	return failures == 0;
+    }
+
+    private static List<String> readMateSuite() throws IOException {
+	InputStream stream = ClassLoader.getSystemResourceAsStream("gameData/mates.epd");
+	if (stream == null) {
+	    throw new IOException("Resource not found");
+	}
+	List<String> suite = new ArrayList<>();
+	try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+	    String line;
+	    while ((line = reader.readLine()) != null) {
+		if (!line.isBlank() && !line.startsWith("#")) {
+		    suite.add(line.trim());
+		}
+	    }
+	}
+	return suite;
+    }
+
+    private static boolean endsInMate(Position position, int[] line) {
+	/**
+	 * Plays the line, checking that every move is legal, and tells if the side to move is mated at the end.
+	 **/
+	SearchBoard board = new SearchBoard(position, null);
+	int[] moves = new int[SearchBoard.MAX_MOVES];
+	for (int move : line) {
+	    int count = board.generateLegalMoves(moves);
+	    boolean legal = false;
+	    for (int i = 0; i < count; i++) {
+		legal |= moves[i] == move;
+	    }
+	    if (!legal) {
+		return false;
+	    }
+	    board.makeMove(move);
+	}
+	return board.generateLegalMoves(moves) == 0 && board.isInCheck();
+    }
+
+    private static boolean benchmarkTranspositionFile() {
+	/**
+	 * Searches the tactical positions to a fixed depth with a table in a new TranspositionFile, closes it, and
+	 * searches them again after opening the file as a new session would, then compares the nodes and time of both.
+	 * Checks that the file is restored when it was closed properly, read by a second opener while it is open, and
+	 * started over once a byte of it is changed.
+	 **/
+	Path path;
+	try {
+	    path = Files.createTempFile("transpositions", ".tt");
+	} catch (IOException e) {
+	    System.out.println("transposition file could not be created: " + e.getMessage());
+	    return false;
+	}
+	boolean correct = true;
+	try {
+	    try (TranspositionFile file = TranspositionFile.open(path, TranspositionTable.DEFAULT_SIZE_BITS)) {
+		correct &= !file.isRestored();
+		searchToDepth("cold table", file.getTable());
+	    }
+	    try (TranspositionFile file = TranspositionFile.open(path, TranspositionTable.DEFAULT_SIZE_BITS)) {
+		correct &= file.isRestored();
+		searchToDepth("table from file", file.getTable());
+		try (TranspositionFile shared = TranspositionFile.open(path, TranspositionTable.DEFAULT_SIZE_BITS)) {
+		    correct &= shared.isShared() && shared.isRestored();
+		    searchToDepth("table shared read-only", shared.getTable());
+		}
+	    }
+	    try (RandomAccessFile raw = new RandomAccessFile(path.toFile(), "rw")) {
+		raw.seek(raw.length() / 2);
+		int value = raw.read();
+		raw.seek(raw.length() / 2);
+		raw.write(value ^ 1);
+	    }
+	    try (TranspositionFile file = TranspositionFile.open(path, TranspositionTable.DEFAULT_SIZE_BITS)) {
+		correct &= !file.isRestored();
+	    }
+	    Files.delete(path);
+	} catch (IOException e) {
+	    System.out.println("transposition file failed: " + e.getMessage());
+	    return false;
+	}
+	System.out.println("transposition file restored, shared and discarded " + (correct ? "as expected" : "WRONGLY"));
+	return correct;
+    }
+
+    private static void searchToDepth(String name, TranspositionTable table) {
+	long nodes = 0;
+	long startTime = System.nanoTime();
+	for (String fen : TACTICAL_POSITIONS) {
+	    Searcher searcher = new Searcher(new SearchBoard(Position.fromFen(fen), null), 0, table);
+	    searcher.search(CACHE_DEPTH, r -> {});
+	    nodes += searcher.getNodes();
+	}
+	report(name + " depth " + CACHE_DEPTH, nodes, System.nanoTime() - startTime);
+    }
+
+    private static boolean benchmarkEvaluationCaches() {
+	/**
+	 * Checks that the board evaluates every sample position the same with and without the pawn hash table and the
+	 * evaluation cache, then searches the tactical positions without them and with tables of several sizes, and
+	 * prints the time and the hit rate of each table. The searches must visit the same number of nodes.
+	 **/
+	int differences = 0;
+	PawnHashTable samplePawns = new PawnHashTable(PawnHashTable.DEFAULT_SIZE_BITS);
+	EvaluationCache sampleEvaluations = new EvaluationCache(EvaluationCache.DEFAULT_SIZE_BITS);
+	for (Position position : samplePositions(SAMPLE_POSITIONS)) {
+	    SearchBoard board = new SearchBoard(position, null);
+	    int uncached = board.evaluate();
+	    board.setEvaluationCaches(samplePawns, sampleEvaluations);
+	    if (board.evaluate() != uncached || board.evaluate() != uncached) {
+		differences++;
+	    }
+	}
+	System.out.println("evaluation caches: " + differences + " of " + SAMPLE_POSITIONS + " positions evaluate differently");
+	searchWithCaches(null, new PawnHashTable(PawnHashTable.DEFAULT_SIZE_BITS), null);
+	long uncachedNodes = searchWithCaches("search without caches", null, null);
+	boolean sameNodes = true;
+	for (int bits : PAWN_TABLE_BITS) {
+	    PawnHashTable pawnTable = new PawnHashTable(bits);
+	    sameNodes &= searchWithCaches("pawn table " + bits + " bits", pawnTable, null) == uncachedNodes;
+	    System.out.printf("  pawn table hit rate %.1f %%%n", 100 * pawnTable.getHitRate());
+	}
+	for (int bits : EVALUATION_CACHE_BITS) {
+	    PawnHashTable pawnTable = new PawnHashTable(PawnHashTable.DEFAULT_SIZE_BITS);
+	    EvaluationCache evaluationCache = new EvaluationCache(bits);
+	    sameNodes &= searchWithCaches("evaluation cache " + bits + " bits", pawnTable, evaluationCache) == uncachedNodes;
+	    System.out.printf("  evaluation cache hit rate %.1f %%, pawn table %.1f %%%n", 100 * evaluationCache.getHitRate(),
+			      100 * pawnTable.getHitRate());
+	}
+	System.out.println("searches with caches " + (sameNodes ? "visit the same nodes" : "DIFFER"));
+	return differences == 0 && sameNodes;
+    }
+
+    private static long searchWithCaches(String name, PawnHashTable pawnTable, EvaluationCache evaluationCache) {
+	/**
+	 * Searches the tactical positions with the given tables and returns the nodes. Without a name nothing is
+	 * printed, which is used to warm the code up first.
+	 **/
+	long nodes = 0;
+	long startTime = System.nanoTime();
+	for (String fen : TACTICAL_POSITIONS) {
+	    SearchBoard board = new SearchBoard(Position.fromFen(fen), null);
+	    Searcher searcher = new Searcher(board, 0);
+	    board.setEvaluationCaches(pawnTable, evaluationCache);
+	    searcher.search(EVALUATION_DEPTH, r -> {});
+	    nodes += searcher.getNodes();
+	}
+	if (name != null) {
+	    report(name, nodes, System.nanoTime() - startTime);
+	}
+	return nodes;
+    }
+
+    private static Position playMove(Position position, PositionHistory history, int move) {
+	boolean irreversible = position.getPieceAt(Move.to(move)) != PieceCode.EMPTY ||
+			       PieceCode.type(position.getPieceAt(Move.from(move))) == PieceCode.PAWN;
+	Position next = position.play(move);
+	history.push(Zobrist.of(next), irreversible);
+	return next;
+    }
+
+    static void report(String name, long count, long nanos) {
+	System.out.printf("%-28s %12d in %6d ms, %,.0f per second%n", name, count, nanos / 1000000, count * NANOS_PER_SECOND / nanos);
+    }
+}
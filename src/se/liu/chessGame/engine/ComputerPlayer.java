@@ -0,0 +1,160 @@
+package se.liu.chessGame.engine;
+
+import se.liu.chessGame.ExceptionLogger;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+
+/**
+ * Plays the moves of the computer in a game against a person. Every move is searched on a background thread,
+ * for as long as the TimeManager of the move allows, and handed to a MoveListener.
+ * While the person thinks, the computer ponders: it searches the position after the reply it expects, the second move
+ * of its principal variation. If the person plays that move, the running search goes on and only gets its time
+ * manager, counted from when the pondering started, so the answer often comes at once. If the person plays anything else,
+ * the pondering is stopped at once. All searches share one Searcher, so the hash moves, killer moves and history
+ * scores found while pondering help the next search either way.
+ */
+
+public class ComputerPlayer
+{
+    private final ExecutorService executor;
+    private final SearchBoard board = new SearchBoard(Position.startPosition());
+    private final Searcher searcher = new Searcher(board, 0);
+    private boolean pondering = true;
+    private SearchTask currentTask = null;
+    private int ponderHits = 0;
+    private int ponderMisses = 0;
+
+    private final class SearchTask implements Runnable
+    {
+	private final Position position;
+	private final PositionHistory history;
+	private MoveListener listener;
+	private AnalysisResult result = null;
+	private boolean finished = false;
+
+	private SearchTask(final Position position, final PositionHistory history, final MoveListener listener) {
+	    this.position = position;
+	    this.history = history;
+	    this.listener = listener;
+	}
+
+	@Override public void run() {
+	    synchronized (ComputerPlayer.this) {
+		if (currentTask != this) {
+		    return;
+		}
+		searcher.clearStop();
+	    }
+	    AnalysisResult found = null;
+	    try {
+		board.setPosition(position);
+		board.setGameHistory(history);
+		found = searcher.search(AnalysisService.UNLIMITED_DEPTH, r -> {});
+	    } catch (RuntimeException e) {
+		ExceptionLogger.getExceptionLogger().logException(Level.SEVERE, "The computer could not search its move", e);
+	    }
+	    searchFinished(this, found);
+	}
+    }
+
+    public ComputerPlayer() {
+	this.executor = Executors.newSingleThreadExecutor(runnable -> {
+	    Thread thread = new Thread(runnable, "computer-player");
+	    thread.setDaemon(true);
+	    return thread;
+	});
+    }
+
+    public synchronized void setPondering(final boolean pondering) {
+	this.pondering = pondering;
+	if (!pondering && currentTask != null && currentTask.listener == null) {
+	    cancel();
+	}
+    }
+
+    public synchronized int getPonderHits() {
+	return ponderHits;
+    }
+
+    public synchronized int getPonderMisses() {
+	return ponderMisses;
+    }
+
+    public synchronized void play(final Position position, final PositionHistory history, final TimeManager timeManager,
+				  final MoveListener listener)
+    {
+	/**
+	 * Starts searching the move of the computer in the position, which must be the last position of the history.
+	 * The listener gets the move, or Move.NONE if the position has no legal moves. If the position is the one
+	 * being pondered, that search is kept and the listener gets its result instead.
+	 **/
+	final SearchTask ponderTask = currentTask;
+	if (ponderTask != null && ponderTask.listener == null) {
+	    if (ponderTask.position.equals(position)) {
+		ponderHits++;
+		ponderTask.listener = listener;
+		searcher.setTimeManager(timeManager);
+		if (ponderTask.finished) {
+		    executor.submit(() -> searchFinished(ponderTask, ponderTask.result));
+		}
+		return;
+	    }
+	    ponderMisses++;
+	}
+	cancel();
+	searcher.setTimeManager(timeManager);
+	currentTask = new SearchTask(position, history, listener);
+	executor.submit(currentTask);
+    }
+
+    public synchronized void cancel() {
+	/**
+	 * Stops the running search or pondering. Its move is never delivered after that.
+	 **/
+	if (currentTask != null) {
+	    searcher.stop();
+	    currentTask = null;
+	}
+    }
+
+    private void searchFinished(SearchTask task, AnalysisResult result) {
+	/**
+	 * Delivers the move if the task is still current and someone waits for it. A ponder search that ends by itself,
+	 * because it found a mate, keeps its result until the expected move is played.
+	 **/
+	MoveListener listener;
+	synchronized (this) {
+	    task.result = result;
+	    task.finished = true;
+	    if (task != currentTask || task.listener == null) {
+		return;
+	    }
+	    listener = task.listener;
+	    currentTask = null;
+	    if (pondering && result != null && result.getPrincipalVariation().length >= 2) {
+		startPondering(task, result.getPrincipalVariation());
+	    }
+	}
+	listener.moveFound(task.position, result != null ? result.getBestMove() : Move.NONE);
+    }
+
+    private void startPondering(SearchTask task, int[] principalVariation) {
+	/**
+	 * Searches the position after the move of the computer and the expected reply, without a time limit.
+	 **/
+	PositionHistory history = task.history.copy();
+	Position position = task.position;
+	for (int ply = 0; ply < 2; ply++) {
+	    int move = principalVariation[ply];
+	    boolean irreversible = position.getPieceAt(Move.to(move)) != PieceCode.EMPTY ||
+				   PieceCode.type(position.getPieceAt(Move.from(move))) == PieceCode.PAWN;
+	    position = position.play(move);
+	    history.push(Zobrist.of(position), irreversible);
+	}
+	searcher.setTimeLimit(Long.MAX_VALUE);
+	currentTask = new SearchTask(position, history, null);
+	executor.submit(currentTask);
+    }
+}
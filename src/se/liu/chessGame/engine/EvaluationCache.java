@@ -0,0 +1,66 @@
+package se.liu.chessGame.engine;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the static evaluation of positions, keyed by the Zobrist hash of the position, so a position that the
+ * search evaluates again, through a transposition or in the next depth, does not have to be evaluated from its parts.
+ * The score is kept seen from white, and the hash already tells which side is to move.
+ * The cache has a fixed number of slots and a new entry simply replaces whatever was stored in its slot.
+ * It counts its probes and hits, so its size can be chosen from the hit rate.
+ */
+
+public class EvaluationCache
+{
+    public static final int DEFAULT_SIZE_BITS = 13;
+    public static final int NONE = Integer.MIN_VALUE;
+
+    private final long[] keys;
+    private final int[] scores;
+    private final int mask;
+    private long probes = 0;
+    private long hits = 0;
+
+    public EvaluationCache(final int sizeBits) {
+	this.keys = new long[1 << sizeBits];
+	this.scores = new int[1 << sizeBits];
+	this.mask = (1 << sizeBits) - 1;
+	Arrays.fill(scores, NONE);
+    }
+
+    public int probe(long key) {
+	/**
+	 * Returns the score stored for the position, or NONE if the slot holds another position or nothing.
+	 **/
+	int slot = (int) key & mask;
+	probes++;
+	if (keys[slot] == key && scores[slot] != NONE) {
+	    hits++;
+	    return scores[slot];
+	}
+	return NONE;
+    }
+
+    public void store(long key, int score) {
+	int slot = (int) key & mask;
+	keys[slot] = key;
+	scores[slot] = score;
+    }
+
+    public long getProbes() {
+	return probes;
+    }
+
+    public long getHits() {
+	return hits;
+    }
+
+    public double getHitRate() {
+	return probes > 0 ? (double) hits / probes : 0;
+    }
+
+    public void resetCounters() {
+	probes = 0;
+	hits = 0;
+    }
+}
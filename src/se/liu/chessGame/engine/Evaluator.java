@@ -0,0 +1,379 @@
+package se.liu.chessGame.engine;
+
+import se.liu.chessGame.ExceptionLogger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.logging.Level;
+
+/**
+ * Static evaluation of a position with material values and piece-square tables for the middlegame and the endgame.
+ * The two scores are blended by the game phase, which goes from MAX_PHASE with all pieces on the board down to
+ * zero when only kings and pawns are left.
+ * Every piece on a square contributes a fixed amount to both scores, so a SearchBoard can keep the sums up to date in
+ * makeMove and unmakeMove and evaluating a position only costs the final blend.
+ * The tables are given for white with square 0 being a8, a black piece uses the square mirrored vertically.
+ * The pawn structure adds penalties for doubled and isolated pawns and a bonus for passed pawns that grows as they
+ * advance. It only depends on where the pawns stand, so a PawnHashTable can keep it for positions with the same pawns.
+ * The material values and piece-square tables can be replaced by a weights file, as written by the EvaluationTuner,
+ * named by the system property chess.weights. It is read once when the class is loaded.
+ */
+
+public final class Evaluator
+{
+    public static final int MAX_PHASE = 24;
+    public static final int TABLE_WEIGHTS = PieceCode.KING * Square.COUNT;
+    public static final int MIDDLEGAME_TABLE_OFFSET = 0;
+    public static final int ENDGAME_TABLE_OFFSET = TABLE_WEIGHTS;
+    public static final int MIDDLEGAME_VALUE_OFFSET = 2 * TABLE_WEIGHTS;
+    public static final int ENDGAME_VALUE_OFFSET = MIDDLEGAME_VALUE_OFFSET + PieceCode.KING;
+    public static final int WEIGHT_COUNT = ENDGAME_VALUE_OFFSET + PieceCode.KING;
+
+    private static final int[] PHASE_WEIGHTS = { 0, 0, 1, 1, 2, 4, 0 };
+    private static final int[] MIDDLEGAME_VALUES = { 0, 82, 337, 365, 477, 1025, 0 };
+    private static final int[] ENDGAME_VALUES = { 0, 94, 281, 297, 512, 936, 0 };
+    private static final int MIRROR = 56;
+    private static final int DOUBLED_MIDDLEGAME = -11;
+    private static final int DOUBLED_ENDGAME = -24;
+    private static final int ISOLATED_MIDDLEGAME = -9;
+    private static final int ISOLATED_ENDGAME = -13;
+    private static final int[] PASSED_MIDDLEGAME = { 0, 2, 6, 12, 24, 45, 75, 0 };
+    private static final int[] PASSED_ENDGAME = { 0, 8, 14, 28, 50, 85, 130, 0 };
+    private static final long FILE_A = 0x0101010101010101L;
+    private static final int SCORE_BITS = 32;
+    private static final int WEIGHTS_MAGIC = 0x31575443;
+
+    private static final int[][] MIDDLEGAME_TABLES = {
+	    {},
+	    {
+		    0, 0, 0, 0, 0, 0, 0, 0,
+		    98, 134, 61, 95, 68, 126, 34, -11,
+		    -6, 7, 26, 31, 65, 56, 25, -20,
+		    -14, 13, 6, 21, 23, 12, 17, -23,
+		    -27, -2, -5, 12, 17, 6, 10, -25,
+		    -26, -4, -4, -10, 3, 3, 33, -12,
+		    -35, -1, -20, -23, -15, 24, 38, -22,
+		    0, 0, 0, 0, 0, 0, 0, 0 },
+	    {
+		    -167, -89, -34, -49, 61, -97, -15, -107,
+		    -73, -41, 72, 36, 23, 62, 7, -17,
+		    -47, 60, 37, 65, 84, 129, 73, 44,
+		    -9, 17, 19, 53, 37, 69, 18, 22,
+		    -13, 4, 16, 13, 28, 19, 21, -8,
+		    -23, -9, 12, 10, 19, 17, 25, -16,
+		    -29, -53, -12, -3, -1, 18, -14, -19,
+		    -105, -21, -58, -33, -17, -28, -19, -23 },
+	    {
+		    -29, 4, -82, -37, -25, -42, 7, -8,
+		    -26, 16, -18, -13, 30, 59, 18, -47,
+		    -16, 37, 43, 40, 35, 50, 37, -2,
+		    -4, 5, 19, 50, 37, 37, 7, -2,
+		    -6, 13, 13, 26, 34, 12, 10, 4,
+		    0, 15, 15, 15, 14, 27, 18, 10,
+		    4, 15, 16, 0, 7, 21, 33, 1,
+		    -33, -3, -14, -21, -13, -12, -39, -21 },
+	    {
+		    32, 42, 32, 51, 63, 9, 31, 43,
+		    27, 32, 58, 62, 80, 67, 26, 44,
+		    -5, 19, 26, 36, 17, 45, 61, 16,
+		    -24, -11, 7, 26, 24, 35, -8, -20,
+		    -36, -26, -12, -1, 9, -7, 6, -23,
+		    -45, -25, -16, -17, 3, 0, -5, -33,
+		    -44, -16, -20, -9, -1, 11, -6, -71,
+		    -19, -13, 1, 17, 16, 7, -37, -26 },
+	    {
+		    -28, 0, 29, 12, 59, 44, 43, 45,
+		    -24, -39, -5, 1, -16, 57, 28, 54,
+		    -13, -17, 7, 8, 29, 56, 47, 57,
+		    -27, -27, -16, -16, -1, 17, -2, 1,
+		    -9, -26, -9, -10, -2, -4, 3, -3,
+		    -14, 2, -11, -2, -5, 2, 14, 5,
+		    -35, -8, 11, 2, 8, 15, -3, 1,
+		    -1, -18, -9, 10, -15, -25, -31, -50 },
+	    {
+		    -65, 23, 16, -15, -56, -34, 2, 13,
+		    29, -1, -20, -7, -8, -4, -38, -29,
+		    -9, 24, 2, -16, -20, 6, 22, -22,
+		    -17, -20, -12, -27, -30, -25, -14, -36,
+		    -49, -1, -27, -39, -46, -44, -33, -51,
+		    -14, -14, -22, -46, -44, -30, -15, -27,
+		    1, 7, -8, -64, -43, -16, 9, 8,
+		    -15, 36, 12, -54, 8, -28, 24, 14 }
+    };
+
+    private static final int[][] ENDGAME_TABLES = {
+	    {},
+	    {
+		    0, 0, 0, 0, 0, 0, 0, 0,
+		    178, 173, 158, 134, 147, 132, 165, 187,
+		    94, 100, 85, 67, 56, 53, 82, 84,
+		    32, 24, 13, 5, -2, 4, 17, 17,
+		    13, 9, -3, -7, -7, -8, 3, -1,
+		    4, 7, -6, 1, 0, -5, -1, -8,
+		    13, 8, 8, 10, 13, 0, 2, -7,
+		    0, 0, 0, 0, 0, 0, 0, 0 },
+	    {
+		    -58, -38, -13, -28, -31, -27, -63, -99,
+		    -25, -8, -25, -2, -9, -25, -24, -52,
+		    -24, -20, 10, 9, -1, -9, -19, -41,
+		    -17, 3, 22, 22, 22, 11, 8, -18,
+		    -18, -6, 16, 25, 16, 17, 4, -18,
+		    -23, -3, -1, 15, 10, -3, -20, -22,
+		    -42, -20, -10, -5, -2, -20, -23, -44,
+		    -29, -51, -23, -15, -22, -18, -50, -64 },
+	    {
+		    -14, -21, -11, -8, -7, -9, -17, -24,
+		    -8, -4, 7, -12, -3, -13, -4, -14,
+		    2, -8, 0, -1, -2, 6, 0, 4,
+		    -3, 9, 12, 9, 14, 10, 3, 2,
+		    -6, 3, 13, 19, 7, 10, -3, -9,
+		    -12, -3, 8, 10, 13, 3, -7, -15,
+		    -14, -18, -7, -1, 4, -9, -15, -27,
+		    -23, -9, -23, -5, -9, -16, -5, -17 },
+	    {
+		    13, 10, 18, 15, 12, 12, 8, 5,
+		    11, 13, 13, 11, -3, 3, 8, 3,
+		    7, 7, 7, 5, 4, -3, -5, -3,
+		    4, 3, 13, 1, 2, 1, -1, 2,
+		    3, 5, 8, 4, -5, -6, -8, -11,
+		    -4, 0, -5, -1, -7, -12, -8, -16,
+		    -6, -6, 0, 2, -9, -9, -11, -3,
+		    -9, 2, 3, -1, -5, -13, 4, -20 },
+	    {
+		    -9, 22, 22, 27, 27, 19, 10, 20,
+		    -17, 20, 32, 41, 58, 25, 30, 0,
+		    -20, 6, 9, 49, 47, 35, 19, 9,
+		    3, 22, 24, 45, 57, 40, 57, 36,
+		    -18, 28, 19, 47, 31, 34, 39, 23,
+		    -16, -27, 15, 6, 9, 17, 10, 5,
+		    -22, -23, -30, -16, -16, -23, -36, -32,
+		    -33, -28, -22, -43, -5, -32, -20, -41 },
+	    {
+		    -74, -35, -18, -18, -11, 15, 4, -17,
+		    -12, 17, 14, 17, 17, 38, 23, 11,
+		    10, 17, 23, 15, 20, 45, 44, 13,
+		    -8, 22, 24, 27, 26, 33, 26, 3,
+		    -18, -4, 21, 24, 27, 23, 9, -11,
+		    -19, -3, 11, 21, 23, 16, 7, -9,
+		    -27, -11, 4, 13, 14, 4, -5, -17,
+		    -53, -34, -21, -11, -28, -14, -24, -43 }
+    };
+
+    private static final int[][] MIDDLEGAME_SCORES = new int[PieceCode.CODE_COUNT][Square.COUNT];
+    private static final int[][] ENDGAME_SCORES = new int[PieceCode.CODE_COUNT][Square.COUNT];
+    private static final long[][] PASSED_MASKS = new long[2][Square.COUNT];
+
+    static {
+	int[] weights = readWeightsProperty();
+	if (weights != null) {
+	    applyWeights(weights);
+	}
+	for (int type = PieceCode.PAWN; type <= PieceCode.KING; type++) {
+	    for (int square = 0; square < Square.COUNT; square++) {
+		int white = PieceCode.of(type, true);
+		int black = PieceCode.of(type, false);
+		MIDDLEGAME_SCORES[white][square] = MIDDLEGAME_VALUES[type] + MIDDLEGAME_TABLES[type][square];
+		ENDGAME_SCORES[white][square] = ENDGAME_VALUES[type] + ENDGAME_TABLES[type][square];
+		MIDDLEGAME_SCORES[black][square ^ MIRROR] = -MIDDLEGAME_SCORES[white][square];
+		ENDGAME_SCORES[black][square ^ MIRROR] = -ENDGAME_SCORES[white][square];
+	    }
+	}
+	for (int square = 0; square < Square.COUNT; square++) {
+	    for (int ahead = 0; ahead < Square.COUNT; ahead++) {
+		if (Math.abs(Square.x(ahead) - Square.x(square)) <= 1) {
+		    if (Square.y(ahead) < Square.y(square)) {
+			PASSED_MASKS[0][square] |= 1L << ahead;
+		    }
+		    if (Square.y(ahead) > Square.y(square)) {
+			PASSED_MASKS[1][square] |= 1L << ahead;
+		    }
+		}
+	    }
+	}
+    }
+
+    private Evaluator() {}
+
+    public static int middlegame(int code, int square) {
+	/**
+	 * Returns what the piece on the square adds to the middlegame score, positive for white.
+	 **/
+	return MIDDLEGAME_SCORES[code][square];
+    }
+
+    public static int endgame(int code, int square) {
+	return ENDGAME_SCORES[code][square];
+    }
+
+    public static int phase(int code) {
+	return PHASE_WEIGHTS[PieceCode.type(code)];
+    }
+
+    public static int blend(int middlegameScore, int endgameScore, int phase) {
+	/**
+	 * Mixes the two scores by the phase. Promotions can push the phase above MAX_PHASE, it is then counted as MAX_PHASE.
+	 **/
+	int middlegamePhase = Math.min(phase, MAX_PHASE);
+	return (middlegameScore * middlegamePhase + endgameScore * (MAX_PHASE - middlegamePhase)) / MAX_PHASE;
+    }
+
+    public static long pawnStructure(long whitePawns, long blackPawns) {
+	/**
+	 * Returns the middlegame and endgame scores of the pawn structure, positive for white, packed into one long.
+	 **/
+	long white = sidePawnStructure(whitePawns, blackPawns, true);
+	long black = sidePawnStructure(blackPawns, whitePawns, false);
+	return packScores(middlegamePart(white) - middlegamePart(black), endgamePart(white) - endgamePart(black));
+    }
+
+    private static long sidePawnStructure(long pawns, long enemyPawns, boolean isWhite) {
+	int middlegameScore = 0;
+	int endgameScore = 0;
+	for (int x = 0; x < Square.BOARD_LENGTH; x++) {
+	    long file = FILE_A << x;
+	    int count = Long.bitCount(pawns & file);
+	    if (count > 1) {
+		middlegameScore += DOUBLED_MIDDLEGAME * (count - 1);
+		endgameScore += DOUBLED_ENDGAME * (count - 1);
+	    }
+	    long adjacentFiles = (x > 0 ? file >>> 1 : 0) | (x < Square.BOARD_LENGTH - 1 ? file << 1 : 0);
+	    if (count > 0 && (pawns & adjacentFiles) == 0) {
+		middlegameScore += ISOLATED_MIDDLEGAME * count;
+		endgameScore += ISOLATED_ENDGAME * count;
+	    }
+	}
+	long remaining = pawns;
+	while (remaining != 0) {
+	    int square = Long.numberOfTrailingZeros(remaining);
+	    remaining &= remaining - 1;
+	    if ((enemyPawns & PASSED_MASKS[isWhite ? 0 : 1][square]) == 0) {
+		int advanced = isWhite ? Square.BOARD_LENGTH - 1 - Square.y(square) : Square.y(square);
+		middlegameScore += PASSED_MIDDLEGAME[advanced];
+		endgameScore += PASSED_ENDGAME[advanced];
+	    }
+	}
+	return packScores(middlegameScore, endgameScore);
+    }
+
+    public static long packScores(int middlegameScore, int endgameScore) {
+	return (long) middlegameScore << SCORE_BITS | (endgameScore & 0xFFFFFFFFL);
+    }
+
+    public static int middlegamePart(long scores) {
+	return (int) (scores >> SCORE_BITS);
+    }
+
+    public static int endgamePart(long scores) {
+	return (int) scores;
+    }
+
+    public static int tableWeight(int type, int square) {
+	/**
+	 * Returns the index of the piece-square weight of the piece type on the square, seen from white, counted from the
+	 * start of the middlegame or endgame tables.
+	 **/
+	return (type - PieceCode.PAWN) * Square.COUNT + square;
+    }
+
+    public static int valueWeight(int type) {
+	return type - PieceCode.PAWN;
+    }
+
+    public static int[] getWeights() {
+	/**
+	 * Returns the material values and piece-square tables in use as WEIGHT_COUNT weights: the middlegame tables,
+	 * the endgame tables, the middlegame values and the endgame values, each in PieceCode type order.
+	 **/
+	int[] weights = new int[WEIGHT_COUNT];
+	for (int type = PieceCode.PAWN; type <= PieceCode.KING; type++) {
+	    System.arraycopy(MIDDLEGAME_TABLES[type], 0, weights, MIDDLEGAME_TABLE_OFFSET + tableWeight(type, 0), Square.COUNT);
+	    System.arraycopy(ENDGAME_TABLES[type], 0, weights, ENDGAME_TABLE_OFFSET + tableWeight(type, 0), Square.COUNT);
+	    weights[MIDDLEGAME_VALUE_OFFSET + valueWeight(type)] = MIDDLEGAME_VALUES[type];
+	    weights[ENDGAME_VALUE_OFFSET + valueWeight(type)] = ENDGAME_VALUES[type];
+	}
+	return weights;
+    }
+
+    public static long fingerprint() {
+	/**
+	 * Returns a hash of everything the scores depend on: the weights in use and the pawn structure terms.
+	 * It changes whenever other weights are loaded or a term is changed, so stored scores can be recognised as stale.
+	 **/
+	int[] pawnTerms = { DOUBLED_MIDDLEGAME, DOUBLED_ENDGAME, ISOLATED_MIDDLEGAME, ISOLATED_ENDGAME,
+			    Arrays.hashCode(PASSED_MIDDLEGAME), Arrays.hashCode(PASSED_ENDGAME) };
+	return ((long) Arrays.hashCode(getWeights()) << Integer.SIZE) ^ Arrays.hashCode(pawnTerms);
+    }
+
+    private static void applyWeights(int[] weights) {
+	for (int type = PieceCode.PAWN; type <= PieceCode.KING; type++) {
+	    System.arraycopy(weights, MIDDLEGAME_TABLE_OFFSET + tableWeight(type, 0), MIDDLEGAME_TABLES[type], 0, Square.COUNT);
+	    System.arraycopy(weights, ENDGAME_TABLE_OFFSET + tableWeight(type, 0), ENDGAME_TABLES[type], 0, Square.COUNT);
+	    MIDDLEGAME_VALUES[type] = weights[MIDDLEGAME_VALUE_OFFSET + valueWeight(type)];
+	    ENDGAME_VALUES[type] = weights[ENDGAME_VALUE_OFFSET + valueWeight(type)];
+	}
+    }
+
+    private static int[] readWeightsProperty() {
+	String fileName = System.getProperty("chess.weights");
+	if (fileName == null) {
+	    return null;
+	}
+	try {
+	    return loadWeights(Paths.get(fileName));
+	} catch (IOException e) { // The built-in weights still work, so we only log it.
+	    ExceptionLogger.getExceptionLogger().logException(Level.WARNING, "The weights " + fileName + " could not be loaded", e);
+	    return null;
+	}
+    }
+
+    public static int[] loadWeights(Path file) throws IOException {
+	/**
+	 * Reads a little endian weights file: the magic number, the number of weights and every weight as a short.
+	 **/
+	ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+	if (buffer.remaining() < 2 * Integer.BYTES || buffer.getInt() != WEIGHTS_MAGIC) {
+	    throw new IOException("Not a weights file: " + file);
+	}
+	if (buffer.getInt() != WEIGHT_COUNT || buffer.remaining() != WEIGHT_COUNT * Short.BYTES) {
+	    throw new IOException("The weights file has the wrong size: " + file);
+	}
+	int[] weights = new int[WEIGHT_COUNT];
+	for (int i = 0; i < WEIGHT_COUNT; i++) {
+	    weights[i] = buffer.getShort();
+	}
+	return weights;
+    }
+
+    public static void saveWeights(Path file, int[] weights) throws IOException {
+	ByteBuffer buffer = ByteBuffer.allocate(2 * Integer.BYTES + WEIGHT_COUNT * Short.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+	buffer.putInt(WEIGHTS_MAGIC).putInt(WEIGHT_COUNT);
+	for (int i = 0; i < WEIGHT_COUNT; i++) {
+	    buffer.putShort((short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, weights[i])));
+	}
+	Files.write(file, buffer.array());
+    }
+
+    public static int evaluateFromScratch(SearchBoard board) {
+	/**
+	 * Evaluates the board by looking at every square, seen from white.
+	 * Gives the same result as the sums kept by the SearchBoard and is used to check them.
+	 **/
+	int middlegameScore = 0;
+	int endgameScore = 0;
+	int phase = 0;
+	for (int square = 0; square < Square.COUNT; square++) {
+	    int code = board.getPieceAt(square);
+	    if (code != PieceCode.EMPTY) {
+		middlegameScore += middlegame(code, square);
+		endgameScore += endgame(code, square);
+		phase += phase(code);
+	    }
+	}
+	return blend(middlegameScore, endgameScore, phase);
+    }
+}
@@ -0,0 +1,61 @@
+package se.liu.chessGame.engine;
+
+/**
+ * The answer of the MateSolver for one position: a proven mate with its line, a proof that there is no mate within
+ * the number of moves searched, or no answer because the node limit was reached first.
+ * A mate found before the node limit ran out may not be the shortest one, which isShortest tells. The line is the
+ * mate as read from the proof, with the defender choosing the reply that the proof needs the most moves against.
+ */
+
+public class MateSolution
+{
+    private final Status status;
+    private final int[] line;
+    private final int matePlies;
+    private final boolean shortest;
+    private final long nodes;
+
+    public enum Status
+    {
+	MATE, NO_MATE, UNKNOWN
+    }
+
+    public MateSolution(final Status status, final int[] line, final int matePlies, final boolean shortest, final long nodes) {
+	this.status = status;
+	this.line = line.clone();
+	this.matePlies = matePlies;
+	this.shortest = shortest;
+	this.nodes = nodes;
+    }
+
+    public Status getStatus() {
+	return status;
+    }
+
+    public int[] getLine() {
+	return line.clone();
+    }
+
+    public int getMateInMoves() {
+	return (matePlies + 1) / 2;
+    }
+
+    public boolean isShortest() {
+	return shortest;
+    }
+
+    public long getNodes() {
+	return nodes;
+    }
+
+    public String getLineText() {
+	StringBuilder text = new StringBuilder();
+	for (int move : line) {
+	    if (text.length() > 0) {
+		text.append(' ');
+	    }
+	    text.append(Move.toUci(move));
+	}
+	return text.toString();
+    }
+}
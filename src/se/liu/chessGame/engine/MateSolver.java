@@ -0,0 +1,280 @@
+package se.liu.chessGame.engine;
+
+import java.util.Arrays;
+
+/**
+ * Proves or disproves forced mates with depth-first proof-number search (df-pn).
+ * The player to move is the attacker. At its nodes one mating move is enough, at the nodes of the defender every reply
+ * has to lead to mate. The proof number of a node is the least number of leaves that still have to be proven to prove
+ * it, the disproof number the least number to disprove it. The search always goes down towards the most proving leaf,
+ * and only as long as the numbers stay below thresholds passed down from the parent, so it needs no tree in memory:
+ * the numbers of the nodes it leaves are kept in a bounded hash table of its own. That lets it follow a narrow forced
+ * line much deeper than alpha-beta, which has to look at every move to the same depth.
+ * A new node of the defender starts with its number of replies as proof number, so checks that leave few replies are
+ * tried first, and quiet moves of the attacker count several times more than checks.
+ * The search is limited to a number of plies, which also ends every cycle, and repetitions are not detected, so the
+ * value of a node only depends on the position and the plies left. Once a mate is proven the limit is lowered below
+ * it until no shorter mate can be proven, and the line is read from the table with the defender resisting longest.
+ */
+
+public class MateSolver
+{
+    public static final int DEFAULT_TABLE_SIZE_BITS = 20;
+
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+    private static final int QUIET_MOVE_FACTOR = 4;
+    private static final int MAX_PLIES = 255;
+    private static final long BLACK_ATTACKER_KEY = 0x5DEECE66DL;
+
+    private final long[] keys;
+    private final int[] proofNumbers;
+    private final int[] disproofNumbers;
+    private final short[] pliesLeft;
+    private final short[] mateLengths;
+    private final int mask;
+    private final SearchBoard board = new SearchBoard(Position.startPosition(), null);
+    private final int[][] moveLists = new int[MAX_PLIES + 1][SearchBoard.MAX_MOVES];
+    private final long[][] childKeys = new long[MAX_PLIES + 1][SearchBoard.MAX_MOVES];
+    private long attackerKey = 0;
+    private boolean attackerWhite = true;
+    private long nodes = 0;
+    private long nodeLimit = Long.MAX_VALUE;
+
+    public MateSolver(final int tableSizeBits) {
+	this.keys = new long[1 << tableSizeBits];
+	this.proofNumbers = new int[1 << tableSizeBits];
+	this.disproofNumbers = new int[1 << tableSizeBits];
+	this.pliesLeft = new short[1 << tableSizeBits];
+	this.mateLengths = new short[1 << tableSizeBits];
+	this.mask = (1 << tableSizeBits) - 1;
+    }
+
+    public void setNodeLimit(final long nodeLimit) {
+	this.nodeLimit = nodeLimit;
+    }
+
+    public void clear() {
+	Arrays.fill(keys, 0);
+    }
+
+    public MateSolution solve(Position position, int maxMoves) {
+	/**
+	 * Looks for the shortest forced mate of the player to move in at most maxMoves moves.
+	 **/
+	board.setPosition(position);
+	attackerWhite = position.isWhiteToMove();
+	attackerKey = attackerWhite ? 0 : BLACK_ATTACKER_KEY;
+	nodes = 0;
+	int[] bestLine = null;
+	int bestPlies = 0;
+	boolean limitReached = false;
+	int plies = Math.min(2 * maxMoves - 1, MAX_PLIES);
+	while (plies >= 1) {
+	    search(INFINITY, INFINITY, plies, 0);
+	    int slot = probe(board.getHash() ^ attackerKey, plies);
+	    if (slot < 0 || proofNumbers[slot] != 0 && disproofNumbers[slot] != 0) {
+		limitReached = true;
+		break;
+	    }
+	    if (proofNumbers[slot] != 0) {
+		break;
+	    }
+	    int matePlies = mateLengths[slot];
+	    int[] line = extractLine(matePlies);
+	    if (line == null) {
+		limitReached = true;
+		break;
+	    }
+	    bestLine = line;
+	    bestPlies = matePlies;
+	    plies = matePlies - 2;
+	}
+	if (bestLine != null) {
+	    return new MateSolution(MateSolution.Status.MATE, bestLine, bestPlies, !limitReached, nodes);
+	}
+	return new MateSolution(limitReached ? MateSolution.Status.UNKNOWN : MateSolution.Status.NO_MATE, new int[0], 0, true,
+				nodes);
+    }
+
+    public long getNodes() {
+	return nodes;
+    }
+
+    private void search(int proofThreshold, int disproofThreshold, int plies, int ply) {
+	/**
+	 * Searches the position on the board until its proof or disproof number reaches its threshold, and stores the
+	 * numbers in the table. A node of the attacker is proven when one child is, a node of the defender when all are.
+	 **/
+	nodes++;
+	long key = board.getHash() ^ attackerKey;
+	boolean attackerToMove = board.isWhiteToMove() == attackerWhite;
+	int[] moves = moveLists[ply];
+	int count = board.generateLegalMoves(moves);
+	if (count == 0 || plies == 0) {
+	    initialise(key, plies, moves);
+	    return;
+	}
+	long[] children = childKeys[ply];
+	for (int i = 0; i < count; i++) {
+	    board.makeMove(moves[i]);
+	    children[i] = board.getHash() ^ attackerKey;
+	    if (probe(children[i], plies - 1) < 0) {
+		initialise(children[i], plies - 1, moveLists[ply + 1]);
+	    }
+	    board.unmakeMove(moves[i]);
+	}
+	while (true) {
+	    long proofSum = 0;
+	    long disproofSum = 0;
+	    int bestChild = 0;
+	    int best = INFINITY + 1;
+	    int secondBest = INFINITY + 1;
+	    int bestOther = 0;
+	    int mateLength = attackerToMove ? Integer.MAX_VALUE : 0;
+	    for (int i = 0; i < count; i++) {
+		int slot = probe(children[i], plies - 1);
+		int childProof = slot < 0 ? 1 : proofNumbers[slot];
+		int childDisproof = slot < 0 ? 1 : disproofNumbers[slot];
+		if (childProof == 0) {
+		    mateLength = attackerToMove ? Math.min(mateLength, mateLengths[slot] + 1) :
+				 Math.max(mateLength, mateLengths[slot] + 1);
+		}
+		proofSum += childProof;
+		disproofSum += childDisproof;
+		int value = attackerToMove ? childProof : childDisproof;
+		if (value < best) {
+		    secondBest = best;
+		    best = value;
+		    bestChild = i;
+		    bestOther = attackerToMove ? childDisproof : childProof;
+		}
+		else if (value < secondBest) {
+		    secondBest = value;
+		}
+	    }
+	    int proof = attackerToMove ? best : (int) Math.min(proofSum, INFINITY);
+	    int disproof = attackerToMove ? (int) Math.min(disproofSum, INFINITY) : best;
+	    if (proof >= proofThreshold || disproof >= disproofThreshold || proof == 0 || disproof == 0 || nodes >= nodeLimit) {
+		store(key, proof, disproof, plies, proof == 0 ? mateLength : 0);
+		return;
+	    }
+	    int childProofThreshold;
+	    int childDisproofThreshold;
+	    if (attackerToMove) {
+		childProofThreshold = Math.min(proofThreshold, secondBest + 1);
+		childDisproofThreshold = (int) Math.min((long) disproofThreshold - disproof + bestOther, INFINITY);
+	    }
+	    else {
+		childProofThreshold = (int) Math.min((long) proofThreshold - proof + bestOther, INFINITY);
+		childDisproofThreshold = Math.min(disproofThreshold, secondBest + 1);
+	    }
+	    board.makeMove(moves[bestChild]);
+	    search(childProofThreshold, childDisproofThreshold, plies - 1, ply + 1);
+	    board.unmakeMove(moves[bestChild]);
+	}
+    }
+
+    private void initialise(long key, int plies, int[] moves) {
+	/**
+	 * Gives a node that is not in the table its first numbers. A node without legal moves, or without plies left,
+	 * is proven if the defender is mated and disproven otherwise.
+	 **/
+	int count = board.generateLegalMoves(moves);
+	boolean attackerToMove = board.isWhiteToMove() == attackerWhite;
+	if (count == 0 && !attackerToMove && board.isInCheck()) {
+	    store(key, 0, INFINITY, plies, 0);
+	}
+	else if (count == 0 || plies == 0) {
+	    store(key, INFINITY, 0, plies, 0);
+	}
+	else if (attackerToMove) {
+	    store(key, 1, count, plies, 0);
+	}
+	else {
+	    store(key, board.isInCheck() ? count : count * QUIET_MOVE_FACTOR, 1, plies, 0);
+	}
+    }
+
+    private int[] extractLine(int plies) {
+	/**
+	 * Reads the mating line from the table, starting from the position on the board. The attacker plays the move
+	 * with the shortest proven mate and the defender the reply with the longest. A position on the way that has been
+	 * overwritten in the table is proven again. Returns null if that fails because of the node limit.
+	 **/
+	int[] line = new int[plies];
+	int length = 0;
+	int[] moves = moveLists[0];
+	while (length < plies) {
+	    int move = provenMove(plies - length, moves);
+	    if (move == Move.NONE) {
+		search(INFINITY, INFINITY, plies - length, length);
+		move = provenMove(plies - length, moves);
+	    }
+	    if (move == Move.NONE) {
+		break;
+	    }
+	    board.makeMove(move);
+	    line[length++] = move;
+	    if (board.generateLegalMoves(moves) == 0) {
+		break;
+	    }
+	}
+	boolean mated = board.generateLegalMoves(moves) == 0 && board.isInCheck() && length % 2 == 1;
+	for (int i = length - 1; i >= 0; i--) {
+	    board.unmakeMove(line[i]);
+	}
+	return mated ? Arrays.copyOf(line, length) : null;
+    }
+
+    private int provenMove(int plies, int[] moves) {
+	/**
+	 * Returns the move whose child is proven with the shortest mate for the attacker or the longest for the
+	 * defender, or Move.NONE if no child of the attacker, or not every child of the defender, is proven in the table.
+	 **/
+	boolean attackerToMove = board.isWhiteToMove() == attackerWhite;
+	int count = board.generateLegalMoves(moves);
+	int bestMove = Move.NONE;
+	int bestLength = attackerToMove ? Integer.MAX_VALUE : -1;
+	for (int i = 0; i < count; i++) {
+	    board.makeMove(moves[i]);
+	    int slot = probe(board.getHash() ^ attackerKey, plies - 1);
+	    board.unmakeMove(moves[i]);
+	    boolean proven = slot >= 0 && proofNumbers[slot] == 0;
+	    if (!proven && !attackerToMove) {
+		return Move.NONE;
+	    }
+	    if (proven && (attackerToMove ? mateLengths[slot] < bestLength : mateLengths[slot] > bestLength)) {
+		bestLength = mateLengths[slot];
+		bestMove = moves[i];
+	    }
+	}
+	return bestMove;
+    }
+
+    private int probe(long key, int plies) {
+	/**
+	 * Returns the slot of the position if its numbers hold with the given plies left, otherwise -1.
+	 * A mate proven in fewer plies holds for more plies, a disproof with more plies left holds for fewer.
+	 **/
+	int slot = (int) key & mask;
+	if (keys[slot] != key) {
+	    return -1;
+	}
+	if (proofNumbers[slot] == 0) {
+	    return mateLengths[slot] <= plies ? slot : -1;
+	}
+	if (disproofNumbers[slot] == 0) {
+	    return pliesLeft[slot] >= plies ? slot : -1;
+	}
+	return pliesLeft[slot] == plies ? slot : -1;
+    }
+
+    private void store(long key, int proof, int disproof, int plies, int mateLength) {
+	int slot = (int) key & mask;
+	keys[slot] = key;
+	proofNumbers[slot] = proof;
+	disproofNumbers[slot] = disproof;
+	pliesLeft[slot] = (short) plies;
+	mateLengths[slot] = (short) mateLength;
+    }
+}
@@ -0,0 +1,49 @@
+package se.liu.chessGame.engine;
+
+/**
+ * The engine packs a move into one int so move lists can be plain int arrays.
+ * The lowest six bits hold the start square, the next six the destination square
+ * and the three bits above them the type of piece a pawn is promoted to, or EMPTY.
+ */
+
+public final class Move
+{
+    public static final int NONE = 0;
+
+    private static final int SQUARE_BITS = 6;
+    private static final int SQUARE_MASK = 63;
+    private static final int PROMOTION_SHIFT = 12;
+
+    private Move() {}
+
+    public static int of(int from, int to) {
+	return from | (to << SQUARE_BITS);
+    }
+
+    public static int of(int from, int to, int promotion) {
+	return from | (to << SQUARE_BITS) | (promotion << PROMOTION_SHIFT);
+    }
+
+    public static int from(int move) {
+	return move & SQUARE_MASK;
+    }
+
+    public static int to(int move) {
+	return (move >>> SQUARE_BITS) & SQUARE_MASK;
+    }
+
+    public static int promotion(int move) {
+	return (move >>> PROMOTION_SHIFT) & PieceCode.TYPE_MASK;
+    }
+
+    public static String toUci(int move) {
+	/**
+	 * Returns the move in long algebraic notation, for example "e2e4" or "e7e8q".
+	 **/
+	String text = Square.name(from(move)) + Square.name(to(move));
+	if (promotion(move) != PieceCode.EMPTY) {
+	    text += PieceCode.toLetter(PieceCode.of(promotion(move), false));
+	}
+	return text;
+    }
+}
@@ -0,0 +1,11 @@
+package se.liu.chessGame.engine;
+
+/**
+ * This interface defines how a listener to the ComputerPlayer should be defined.
+ * The listener is called on the thread of the computer player with the position it searched and the move it chose.
+ */
+
+public interface MoveListener
+{
+    public void moveFound(Position position, int move);
+}
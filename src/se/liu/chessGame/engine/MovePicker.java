@@ -0,0 +1,161 @@
+package se.liu.chessGame.engine;
+
+/**
+ * Hands out the legal moves of one node of the search, the ones most likely to cause a cutoff first:
+ * the move from the transposition table, the captures and promotions that do not lose material with the most valuable
+ * victim and the least valuable attacker first, the two killer moves of the ply, the quiet moves by their history
+ * score and last the captures that lose material.
+ * Each group of moves is only generated when the moves before it are used up, so a cutoff on the first moves
+ * saves generating the rest. The searcher keeps one picker per ply and resets it at every node.
+ */
+
+public class MovePicker
+{
+    public static final int HISTORY_SIZE = Square.COUNT * Square.COUNT;
+
+    private static final int[] VICTIM_VALUES = { 0, 1, 3, 3, 5, 9, 0 };
+    private static final int VICTIM_FACTOR = 16;
+    private static final int PROMOTION_BONUS = 100;
+
+    private final SearchBoard board;
+    private final int[][] history;
+    private final int[] moves = new int[SearchBoard.MAX_MOVES];
+    private final int[] scores = new int[SearchBoard.MAX_MOVES];
+    private final int[] badCaptures = new int[SearchBoard.MAX_MOVES];
+    private Stage stage = Stage.DONE;
+    private int hashMove = Move.NONE;
+    private final int[] killers = new int[2];
+    private int count = 0;
+    private int index = 0;
+    private int badCaptureCount = 0;
+
+    private enum Stage
+    {
+	HASH_MOVE, GENERATE_CAPTURES, GOOD_CAPTURES, KILLERS, GENERATE_QUIETS, QUIETS, BAD_CAPTURES, DONE
+    }
+
+    public MovePicker(final SearchBoard board, final int[][] history) {
+	this.board = board;
+	this.history = history;
+    }
+
+    public void reset(int hashMove, int firstKiller, int secondKiller) {
+	this.hashMove = board.isLegalMove(hashMove) ? hashMove : Move.NONE;
+	killers[0] = firstKiller;
+	killers[1] = secondKiller != firstKiller ? secondKiller : Move.NONE;
+	stage = Stage.HASH_MOVE;
+	count = 0;
+	index = 0;
+	badCaptureCount = 0;
+    }
+
+    public int next() {
+	/**
+	 * Returns the next move to search, or Move.NONE when every legal move has been handed out.
+	 **/
+	while (true) {
+	    switch (stage) {
+		case HASH_MOVE:
+		    stage = Stage.GENERATE_CAPTURES;
+		    if (hashMove != Move.NONE) {
+			return hashMove;
+		    }
+		    break;
+		case GENERATE_CAPTURES:
+		    count = board.generateTacticalMoves(moves);
+		    index = 0;
+		    for (int i = 0; i < count; i++) {
+			scores[i] = captureScore(moves[i]);
+		    }
+		    stage = Stage.GOOD_CAPTURES;
+		    break;
+		case GOOD_CAPTURES:
+		    while (index < count) {
+			int move = pickBest();
+			if (move == hashMove) {
+			    continue;
+			}
+			if (Move.promotion(move) == PieceCode.EMPTY && board.staticExchange(move) < 0) {
+			    badCaptures[badCaptureCount++] = move;
+			    continue;
+			}
+			return move;
+		    }
+		    stage = Stage.KILLERS;
+		    index = 0;
+		    break;
+		case KILLERS:
+		    while (index < killers.length) {
+			int killer = killers[index++];
+			if (killer != hashMove && !board.isTactical(killer) && board.isLegalMove(killer)) {
+			    return killer;
+			}
+		    }
+		    stage = Stage.GENERATE_QUIETS;
+		    break;
+		case GENERATE_QUIETS:
+		    count = board.generateQuietMoves(moves);
+		    index = 0;
+		    int[] sideHistory = history[board.isWhiteToMove() ? 0 : 1];
+		    for (int i = 0; i < count; i++) {
+			scores[i] = sideHistory[historyIndex(moves[i])];
+		    }
+		    stage = Stage.QUIETS;
+		    break;
+		case QUIETS:
+		    while (index < count) {
+			int move = pickBest();
+			if (move != hashMove && move != killers[0] && move != killers[1]) {
+			    return move;
+			}
+		    }
+		    stage = Stage.BAD_CAPTURES;
+		    index = 0;
+		    break;
+		case BAD_CAPTURES:
+		    if (index < badCaptureCount) {
+			return badCaptures[index++];
+		    }
+		    stage = Stage.DONE;
+		    break;
+		default:
+		    return Move.NONE;
+	    }
+	}
+    }
+
+    public static int historyIndex(int move) {
+	return Move.from(move) * Square.COUNT + Move.to(move);
+    }
+
+    private int captureScore(int move) {
+	/**
+	 * Orders the captures by the value of the captured piece and then by the cheapest piece capturing it.
+	 **/
+	int score = VICTIM_VALUES[PieceCode.type(board.getPieceAt(Move.to(move)))] * VICTIM_FACTOR -
+		    PieceCode.type(board.getPieceAt(Move.from(move)));
+	if (Move.promotion(move) != PieceCode.EMPTY) {
+	    score += PROMOTION_BONUS + Move.promotion(move);
+	}
+	return score;
+    }
+
+    private int pickBest() {
+	/**
+	 * Swaps the highest scored move that is left to the current index and returns it.
+	 * Only the moves that are actually used are sorted this way.
+	 **/
+	int best = index;
+	for (int i = index + 1; i < count; i++) {
+	    if (scores[i] > scores[best]) {
+		best = i;
+	    }
+	}
+	int move = moves[best];
+	moves[best] = moves[index];
+	scores[best] = scores[index];
+	moves[index] = move;
+	index++;
+	return move;
+    }
+}
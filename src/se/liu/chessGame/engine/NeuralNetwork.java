@@ -0,0 +1,260 @@
+package se.liu.chessGame.engine;
+
+import se.liu.chessGame.ExceptionLogger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.logging.Level;
+
+/**
+ * An efficiently updatable neural network evaluation.
+ * The input is one feature per piece kind and square, seen from each side, feeding a hidden layer whose sums are kept
+ * in one accumulator per side. Moving a piece only adds and subtracts the weight columns of the features that changed,
+ * so the accumulators never have to be recomputed from the whole board.
+ * The output layer clips both accumulators and takes a weighted sum, the player to move first.
+ * The weights are read from a little endian binary file: the magic number, the hidden layer size, the feature weights,
+ * the hidden biases, the output weights and the output bias.
+ * The file named by the system property chess.network is used by every SearchBoard, without it the handcrafted
+ * Evaluator is used.
+ */
+
+public class NeuralNetwork
+{
+    public static final int FEATURE_COUNT = 2 * 6 * Square.COUNT;
+
+    private static final int MAGIC = 0x314E4E43;
+    private static final int ACTIVATION_LIMIT = 255;
+    private static final int OUTPUT_QUANTISATION = 64;
+    private static final int OUTPUT_SCALE = 400;
+    private static final int LANES = 8;
+    private static final int MIRROR = 56;
+    private static final int PIECE_KINDS = 6;
+
+    private static NeuralNetwork defaultNetwork = null;
+    private static boolean defaultLoaded = false;
+
+    private final int hiddenSize;
+    private final short[] featureWeights;
+    private final short[] hiddenBiases;
+    private final short[] outputWeights;
+    private final int outputBias;
+
+    private NeuralNetwork(final int hiddenSize, final short[] featureWeights, final short[] hiddenBiases,
+			  final short[] outputWeights, final int outputBias)
+    {
+	this.hiddenSize = hiddenSize;
+	this.featureWeights = featureWeights;
+	this.hiddenBiases = hiddenBiases;
+	this.outputWeights = outputWeights;
+	this.outputBias = outputBias;
+    }
+
+    public static synchronized NeuralNetwork getDefault() {
+	/**
+	 * Returns the network named by the system property chess.network, or null if there is none or it cannot be read.
+	 **/
+	if (!defaultLoaded) {
+	    defaultLoaded = true;
+	    String fileName = System.getProperty("chess.network");
+	    if (fileName != null) {
+		try {
+		    defaultNetwork = load(Paths.get(fileName));
+		} catch (IOException e) { // Without the network the handcrafted evaluation still works, so we only log it.
+		    ExceptionLogger.getExceptionLogger().logException(Level.WARNING, "The network " + fileName + " could not be loaded", e);
+		}
+	    }
+	}
+	return defaultNetwork;
+    }
+
+    public static NeuralNetwork load(Path file) throws IOException {
+	try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+	    ByteBuffer buffer = ByteBuffer.allocate((int) channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+	    while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+		// Reads until the whole file is in the buffer.
+	    }
+	    buffer.flip();
+	    if (buffer.remaining() < 2 * Integer.BYTES || buffer.getInt() != MAGIC) {
+		throw new IOException("Not a network file: " + file);
+	    }
+	    int hiddenSize = buffer.getInt();
+	    if (hiddenSize <= 0 || hiddenSize % LANES != 0 ||
+		buffer.remaining() != Short.BYTES * (FEATURE_COUNT * hiddenSize + 3 * hiddenSize) + Integer.BYTES) {
+		throw new IOException("The network file has the wrong size: " + file);
+	    }
+	    short[] featureWeights = readShorts(buffer, FEATURE_COUNT * hiddenSize);
+	    short[] hiddenBiases = readShorts(buffer, hiddenSize);
+	    short[] outputWeights = readShorts(buffer, 2 * hiddenSize);
+	    return new NeuralNetwork(hiddenSize, featureWeights, hiddenBiases, outputWeights, buffer.getInt());
+	}
+    }
+
+    public void save(Path file) throws IOException {
+	int size = 2 * Integer.BYTES + Short.BYTES * (featureWeights.length + hiddenBiases.length + outputWeights.length) + Integer.BYTES;
+	ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+	buffer.putInt(MAGIC).putInt(hiddenSize);
+	for (short[] values : new short[][] { featureWeights, hiddenBiases, outputWeights }) {
+	    for (short value : values) {
+		buffer.putShort(value);
+	    }
+	}
+	buffer.putInt(outputBias).flip();
+	try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						    StandardOpenOption.TRUNCATE_EXISTING)) {
+	    while (buffer.hasRemaining()) {
+		channel.write(buffer);
+	    }
+	}
+    }
+
+    public static NeuralNetwork random(long seed, int hiddenSize) {
+	/**
+	 * Creates a network with small random weights, for benchmarks and for checking the two output paths.
+	 **/
+	final int weightRange = 32;
+	Random random = new Random(seed);
+	short[] featureWeights = new short[FEATURE_COUNT * hiddenSize];
+	for (int i = 0; i < featureWeights.length; i++) {
+	    featureWeights[i] = (short) (random.nextInt(2 * weightRange + 1) - weightRange);
+	}
+	short[] hiddenBiases = new short[hiddenSize];
+	for (int i = 0; i < hiddenSize; i++) {
+	    hiddenBiases[i] = (short) random.nextInt(ACTIVATION_LIMIT);
+	}
+	short[] outputWeights = new short[2 * hiddenSize];
+	for (int i = 0; i < outputWeights.length; i++) {
+	    outputWeights[i] = (short) (random.nextInt(2 * weightRange + 1) - weightRange);
+	}
+	return new NeuralNetwork(hiddenSize, featureWeights, hiddenBiases, outputWeights, 0);
+    }
+
+    private static short[] readShorts(ByteBuffer buffer, int count) {
+	short[] values = new short[count];
+	buffer.asShortBuffer().get(values);
+	buffer.position(buffer.position() + count * Short.BYTES);
+	return values;
+    }
+
+    public int getHiddenSize() {
+	return hiddenSize;
+    }
+
+    public long fingerprint() {
+	/**
+	 * Returns a hash of all the weights, which differs between networks that evaluate differently.
+	 **/
+	long hash = hiddenSize;
+	hash = hash * 31 + Arrays.hashCode(featureWeights);
+	hash = hash * 31 + Arrays.hashCode(hiddenBiases);
+	hash = hash * 31 + Arrays.hashCode(outputWeights);
+	return hash * 31 + outputBias;
+    }
+
+    public int[][] createAccumulators() {
+	/**
+	 * Returns the accumulators of an empty board, index 0 seen from white and index 1 seen from black.
+	 **/
+	int[][] accumulators = new int[2][hiddenSize];
+	for (int i = 0; i < hiddenSize; i++) {
+	    accumulators[0][i] = hiddenBiases[i];
+	    accumulators[1][i] = hiddenBiases[i];
+	}
+	return accumulators;
+    }
+
+    public static int featureIndex(int code, int square, boolean whitePerspective) {
+	/**
+	 * Returns the input feature of the piece on the square as seen by one side: own pieces come before
+	 * the opponents pieces, and black sees the board mirrored so both sides look up the board the same way.
+	 **/
+	boolean ownPiece = PieceCode.isWhite(code) == whitePerspective;
+	int kind = PieceCode.type(code) - 1 + (ownPiece ? 0 : PIECE_KINDS);
+	int relativeSquare = whitePerspective ? square : square ^ MIRROR;
+	return kind * Square.COUNT + relativeSquare;
+    }
+
+    public void addPiece(int[][] accumulators, int code, int square) {
+	addColumn(accumulators[0], featureIndex(code, square, true) * hiddenSize, 1);
+	addColumn(accumulators[1], featureIndex(code, square, false) * hiddenSize, 1);
+    }
+
+    public void removePiece(int[][] accumulators, int code, int square) {
+	addColumn(accumulators[0], featureIndex(code, square, true) * hiddenSize, -1);
+	addColumn(accumulators[1], featureIndex(code, square, false) * hiddenSize, -1);
+    }
+
+    private void addColumn(int[] accumulator, int offset, int sign) {
+	for (int i = 0; i < hiddenSize; i++) {
+	    accumulator[i] += sign * featureWeights[offset + i];
+	}
+    }
+
+    public int evaluate(int[] ownAccumulator, int[] otherAccumulator) {
+	/**
+	 * Returns the score in centipawns for the side whose accumulator is given first.
+	 **/
+	return scale(outputSumBlocked(ownAccumulator, otherAccumulator));
+    }
+
+    public int evaluateScalar(int[] ownAccumulator, int[] otherAccumulator) {
+	return scale(outputSumScalar(ownAccumulator, otherAccumulator));
+    }
+
+    private int scale(long sum) {
+	return (int) ((sum + outputBias) * OUTPUT_SCALE / (ACTIVATION_LIMIT * OUTPUT_QUANTISATION));
+    }
+
+    long outputSumScalar(int[] ownAccumulator, int[] otherAccumulator) {
+	/**
+	 * The reference version of the output layer, one element at a time.
+	 **/
+	long sum = 0;
+	for (int i = 0; i < hiddenSize; i++) {
+	    int own = ownAccumulator[i];
+	    if (own < 0) {
+		own = 0;
+	    }
+	    else if (own > ACTIVATION_LIMIT) {
+		own = ACTIVATION_LIMIT;
+	    }
+	    int other = otherAccumulator[i];
+	    if (other < 0) {
+		other = 0;
+	    }
+	    else if (other > ACTIVATION_LIMIT) {
+		other = ACTIVATION_LIMIT;
+	    }
+	    sum += own * outputWeights[i] + other * outputWeights[hiddenSize + i];
+	}
+	return sum;
+    }
+
+    long outputSumBlocked(int[] ownAccumulator, int[] otherAccumulator) {
+	/**
+	 * The same output layer written for the JIT's loop vectoriser: branch free clipping and LANES independent
+	 * partial sums, so the compiler can turn each block into SIMD instructions.
+	 * Integer addition gives the same result in any order, so the sum is exactly that of outputSumScalar.
+	 **/
+	long[] partialSums = new long[LANES];
+	for (int block = 0; block < hiddenSize; block += LANES) {
+	    for (int lane = 0; lane < LANES; lane++) {
+		int i = block + lane;
+		int own = Math.min(Math.max(ownAccumulator[i], 0), ACTIVATION_LIMIT);
+		int other = Math.min(Math.max(otherAccumulator[i], 0), ACTIVATION_LIMIT);
+		partialSums[lane] += own * outputWeights[i] + other * outputWeights[hiddenSize + i];
+	    }
+	}
+	long sum = 0;
+	for (long partialSum : partialSums) {
+	    sum += partialSum;
+	}
+	return sum;
+    }
+}
@@ -0,0 +1,61 @@
+package se.liu.chessGame.engine;
+
+/**
+ * Remembers the pawn structure scores of the Evaluator, keyed by a hash of the pawns alone. Pawns move far less often
+ * than the other pieces, so most positions of a search share their pawns with one evaluated before.
+ * The table has a fixed number of slots and a new entry simply replaces whatever was stored in its slot.
+ * It counts its probes and hits, so its size can be chosen from the hit rate.
+ */
+
+public class PawnHashTable
+{
+    public static final int DEFAULT_SIZE_BITS = 14;
+
+    private final long[] keys;
+    private final long[] scores;
+    private final boolean[] filled;
+    private final int mask;
+    private long probes = 0;
+    private long hits = 0;
+
+    public PawnHashTable(final int sizeBits) {
+	this.keys = new long[1 << sizeBits];
+	this.scores = new long[1 << sizeBits];
+	this.filled = new boolean[1 << sizeBits];
+	this.mask = (1 << sizeBits) - 1;
+    }
+
+    public long pawnStructure(long pawnKey, long whitePawns, long blackPawns) {
+	/**
+	 * Returns the packed scores of Evaluator.pawnStructure for the pawns, from the table if they are in it.
+	 **/
+	int slot = (int) pawnKey & mask;
+	probes++;
+	if (filled[slot] && keys[slot] == pawnKey) {
+	    hits++;
+	    return scores[slot];
+	}
+	long structure = Evaluator.pawnStructure(whitePawns, blackPawns);
+	keys[slot] = pawnKey;
+	scores[slot] = structure;
+	filled[slot] = true;
+	return structure;
+    }
+
+    public long getProbes() {
+	return probes;
+    }
+
+    public long getHits() {
+	return hits;
+    }
+
+    public double getHitRate() {
+	return probes > 0 ? (double) hits / probes : 0;
+    }
+
+    public void resetCounters() {
+	probes = 0;
+	hits = 0;
+    }
+}
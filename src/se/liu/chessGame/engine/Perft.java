@@ -0,0 +1,89 @@
+package se.liu.chessGame.engine;
+
+/**
+ * Counts the leaf nodes of the move tree to a fixed depth, which is the standard way to verify a move generator.
+ * The main method checks the generator against known counts from the start position and against the slower
+ * trial-move generator on a set of positions with checks, pins and promotions, and reports the speed of both.
+ * Known counts are only used up to depth 4 from the start position, deeper counts include castling and en passant,
+ * which the game does not have.
+ */
+
+public final class Perft
+{
+    private static final long[] START_POSITION_COUNTS = { 20, 400, 8902, 197281 };
+    private static final String[] TEST_POSITIONS = {
+	    "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - - 0 1",
+	    "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w - - 0 1",
+	    "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+	    "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w - - 0 1",
+	    "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w - - 0 1",
+	    "4k3/8/8/8/8/8/8/4K2R b - - 0 1",
+	    "8/8/8/2k5/2pP4/8/B7/4K3 b - - 0 1",
+	    "n1n5/PPPk4/8/8/8/8/4Kppp/5N1N b - - 0 1"
+    };
+    private static final int VERIFY_DEPTH = 4;
+
+    private Perft() {}
+
+    public static long perft(SearchBoard board, int depth, boolean byTrial) {
+	/**
+	 * Returns the number of move sequences of the given length from the position on the board.
+	 **/
+	int[] moves = new int[SearchBoard.MAX_MOVES];
+	int count = byTrial ? board.generateMovesByTrial(moves) : board.generateLegalMoves(moves);
+	if (depth <= 1) {
+	    return count;
+	}
+	long nodes = 0;
+	for (int i = 0; i < count; i++) {
+	    board.makeMove(moves[i]);
+	    nodes += perft(board, depth - 1, byTrial);
+	    board.unmakeMove(moves[i]);
+	}
+	return nodes;
+    }
+
+    public static boolean verify() {
+	/**
+	 * Runs all checks and prints the results. Returns true if every count matched.
+	 **/
+	boolean allCorrect = true;
+	SearchBoard start = new SearchBoard(Position.startPosition());
+	for (int depth = 1; depth <= START_POSITION_COUNTS.length; depth++) {
+	    long nodes = perft(start, depth, false);
+	    boolean correct = nodes == START_POSITION_COUNTS[depth - 1];
+	    allCorrect &= correct;
+	    System.out.printf("start position depth %d: %d %s%n", depth, nodes, correct ? "ok" : "expected " + START_POSITION_COUNTS[depth - 1]);
+	}
+	long legalNodes = 0;
+	long trialNodes = 0;
+	long legalNanos = 0;
+	long trialNanos = 0;
+	for (String fen : TEST_POSITIONS) {
+	    SearchBoard board = new SearchBoard(Position.fromFen(fen));
+	    long startTime = System.nanoTime();
+	    long legal = perft(board, VERIFY_DEPTH, false);
+	    legalNanos += System.nanoTime() - startTime;
+	    startTime = System.nanoTime();
+	    long trial = perft(board, VERIFY_DEPTH, true);
+	    trialNanos += System.nanoTime() - startTime;
+	    legalNodes += legal;
+	    trialNodes += trial;
+	    boolean correct = legal == trial;
+	    allCorrect &= correct;
+	    System.out.printf("%s depth %d: %d %s%n", fen, VERIFY_DEPTH, legal, correct ? "ok" : "trial moves give " + trial);
+	}
+	final double nanosPerSecond = 1.0e9;
+	System.out.printf("pin and check aware: %d nodes in %d ms, %.0f nodes/s%n", legalNodes, legalNanos / 1000000,
+			  legalNodes * nanosPerSecond / legalNanos);
+	System.out.printf("trial moves:         %d nodes in %d ms, %.0f nodes/s%n", trialNodes, trialNanos / 1000000,
+			  trialNodes * nanosPerSecond / trialNanos);
+	System.out.printf("speedup: %.2fx%n", (double) trialNanos / legalNanos);
+	return allCorrect;
+    }
+
+    public static void main(String[] args) {
+	boolean allCorrect = verify();
+	System.exit(allCorrect ? 0 : 1);
+    }
+}
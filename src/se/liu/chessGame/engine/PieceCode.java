@@ -0,0 +1,94 @@
+package se.liu.chessGame.engine;
+
+import se.liu.chessGame.BoardPiece;
+
+/**
+ * The engine stores pieces as small integers instead of ChessPiece objects.
+ * The lowest three bits hold the type of the piece and the BLACK bit tells the colour, EMPTY is an empty square.
+ */
+
+public final class PieceCode
+{
+    public static final int EMPTY = 0;
+    public static final int PAWN = 1;
+    public static final int KNIGHT = 2;
+    public static final int BISHOP = 3;
+    public static final int ROOK = 4;
+    public static final int QUEEN = 5;
+    public static final int KING = 6;
+    public static final int BLACK = 8;
+    public static final int TYPE_MASK = 7;
+    public static final int CODE_COUNT = 16;
+
+    private PieceCode() {}
+
+    public static int of(int type, boolean isWhite) {
+	return isWhite ? type : type | BLACK;
+    }
+
+    public static int type(int code) {
+	return code & TYPE_MASK;
+    }
+
+    public static boolean isWhite(int code) {
+	return code != EMPTY && (code & BLACK) == 0;
+    }
+
+    public static boolean isBlack(int code) {
+	return (code & BLACK) != 0;
+    }
+
+    public static int fromBoardPiece(BoardPiece piece) {
+	switch (piece) {
+	    case PAWN:
+		return PAWN;
+	    case KNIGHT:
+		return KNIGHT;
+	    case BISHOP:
+		return BISHOP;
+	    case ROOK:
+		return ROOK;
+	    case QUEEN:
+		return QUEEN;
+	    case KING:
+		return KING;
+	}
+	return EMPTY;
+    }
+
+    public static BoardPiece toBoardPiece(int code) {
+	switch (type(code)) {
+	    case PAWN:
+		return BoardPiece.PAWN;
+	    case KNIGHT:
+		return BoardPiece.KNIGHT;
+	    case BISHOP:
+		return BoardPiece.BISHOP;
+	    case ROOK:
+		return BoardPiece.ROOK;
+	    case QUEEN:
+		return BoardPiece.QUEEN;
+	    case KING:
+		return BoardPiece.KING;
+	}
+	return null;
+    }
+
+    public static char toLetter(int code) {
+	/**
+	 * Returns the letter used for the piece in move and position notation, upper case for white.
+	 **/
+	final String letters = " pnbrqk";
+	char letter = letters.charAt(type(code));
+	return isWhite(code) ? Character.toUpperCase(letter) : letter;
+    }
+
+    public static int fromLetter(char letter) {
+	final String letters = " pnbrqk";
+	int type = letters.indexOf(Character.toLowerCase(letter));
+	if (type <= 0) {
+	    return EMPTY;
+	}
+	return of(type, Character.isUpperCase(letter));
+    }
+}
@@ -0,0 +1,136 @@
+package se.liu.chessGame.engine;
+
+import java.util.Arrays;
+
+/**
+ * An immutable snapshot of a position: one byte with the PieceCode of every square followed by one byte
+ * telling which player is to move.
+ * A Position never changes after it has been created, so it can be handed to any thread without locking.
+ * Playing a move on it copies the array and returns a new Position.
+ */
+
+public final class Position
+{
+    private static final int SIDE_INDEX = Square.COUNT;
+    private static final int SIZE = Square.COUNT + 1;
+
+    private final byte[] data;
+
+    public Position(final int[] squares, final boolean whiteToMove) {
+	this.data = new byte[SIZE];
+	for (int square = 0; square < Square.COUNT; square++) {
+	    data[square] = (byte) squares[square];
+	}
+	data[SIDE_INDEX] = (byte) (whiteToMove ? 1 : 0);
+    }
+
+    private Position(final byte[] data) {
+	this.data = data;
+    }
+
+    public static Position fromFen(String fen) {
+	/**
+	 * Reads the piece placement and the side to move of a FEN string.
+	 * Castling and en passant fields are accepted but ignored, since the game has neither.
+	 **/
+	String[] fields = fen.trim().split("\\s+");
+	String[] rows = fields[0].split("/");
+	if (rows.length != Square.BOARD_LENGTH) {
+	    throw new IllegalArgumentException("A FEN needs " + Square.BOARD_LENGTH + " rows: " + fen);
+	}
+	int[] squares = new int[Square.COUNT];
+	for (int y = 0; y < Square.BOARD_LENGTH; y++) {
+	    int x = 0;
+	    for (char c : rows[y].toCharArray()) {
+		if (Character.isDigit(c)) {
+		    x += c - '0';
+		}
+		else {
+		    int code = PieceCode.fromLetter(c);
+		    if (code == PieceCode.EMPTY || x >= Square.BOARD_LENGTH) {
+			throw new IllegalArgumentException("Bad FEN row " + rows[y] + ": " + fen);
+		    }
+		    squares[Square.of(y, x)] = code;
+		    x++;
+		}
+	    }
+	    if (x != Square.BOARD_LENGTH) {
+		throw new IllegalArgumentException("Bad FEN row " + rows[y] + ": " + fen);
+	    }
+	}
+	boolean whiteToMove = fields.length < 2 || fields[1].equals("w");
+	return new Position(squares, whiteToMove);
+    }
+
+    public static Position startPosition() {
+	return fromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - - 0 1");
+    }
+
+    public String toFen() {
+	StringBuilder fen = new StringBuilder();
+	for (int y = 0; y < Square.BOARD_LENGTH; y++) {
+	    int empty = 0;
+	    for (int x = 0; x < Square.BOARD_LENGTH; x++) {
+		int code = getPieceAt(y, x);
+		if (code == PieceCode.EMPTY) {
+		    empty++;
+		}
+		else {
+		    if (empty > 0) {
+			fen.append(empty);
+			empty = 0;
+		    }
+		    fen.append(PieceCode.toLetter(code));
+		}
+	    }
+	    if (empty > 0) {
+		fen.append(empty);
+	    }
+	    if (y < Square.BOARD_LENGTH - 1) {
+		fen.append('/');
+	    }
+	}
+	fen.append(isWhiteToMove() ? " w" : " b").append(" - - 0 1");
+	return fen.toString();
+    }
+
+    public int getPieceAt(int square) {
+	return data[square];
+    }
+
+    public int getPieceAt(int y, int x) {
+	return data[Square.of(y, x)];
+    }
+
+    public boolean isWhiteToMove() {
+	return data[SIDE_INDEX] != 0;
+    }
+
+    public Position play(int move) {
+	/**
+	 * Returns the position after the move. The move is not checked, it must be legal in this position.
+	 **/
+	byte[] next = data.clone();
+	int from = Move.from(move);
+	int to = Move.to(move);
+	next[to] = Move.promotion(move) != PieceCode.EMPTY ?
+		   (byte) PieceCode.of(Move.promotion(move), isWhiteToMove()) : data[from];
+	next[from] = PieceCode.EMPTY;
+	next[SIDE_INDEX] = (byte) (isWhiteToMove() ? 0 : 1);
+	return new Position(next);
+    }
+
+    @Override public boolean equals(final Object o) {
+	if (this == o) {
+	    return true;
+	}
+	if (o == null || getClass() != o.getClass()) {
+	    return false;
+	}
+	return Arrays.equals(data, ((Position) o).data);
+    }
+
+    @Override public int hashCode() {
+	return Arrays.hashCode(data);
+    }
+}
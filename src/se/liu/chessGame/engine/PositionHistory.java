@@ -0,0 +1,90 @@
+package se.liu.chessGame.engine;
+
+/**
+ * The Zobrist hashes of the positions of a game together with the halfmove clock, the number of moves since the
+ * last capture or pawn move. The hashes are kept in a ring buffer of primitive longs that is never reallocated.
+ * A position can only repeat a position from after the last capture or pawn move, so the repetition scan only looks
+ * back as many moves as the halfmove clock, and only at every second position, where the same player is to move.
+ * The ChessBoard uses it for threefold repetition and the fifty-move rule, and the SearchBoard pushes and pops
+ * a hash with every move so the search can score a repeated position as a draw.
+ */
+
+public class PositionHistory
+{
+    public static final int FIFTY_MOVE_PLIES = 100;
+
+    private static final int CAPACITY = 256;
+    private static final int INDEX_MASK = CAPACITY - 1;
+
+    private final long[] hashes = new long[CAPACITY];
+    private final int[] halfmoveClocks = new int[CAPACITY];
+    private int size = 0;
+
+    public PositionHistory copy() {
+	PositionHistory copy = new PositionHistory();
+	System.arraycopy(hashes, 0, copy.hashes, 0, CAPACITY);
+	System.arraycopy(halfmoveClocks, 0, copy.halfmoveClocks, 0, CAPACITY);
+	copy.size = size;
+	return copy;
+    }
+
+    public void clear() {
+	size = 0;
+    }
+
+    public void push(long hash, boolean irreversible) {
+	/**
+	 * Adds the position reached by a move. An irreversible move, a capture or a pawn move, resets the halfmove clock.
+	 **/
+	int halfmoveClock = irreversible || size == 0 ? 0 : getHalfmoveClock() + 1;
+	hashes[size & INDEX_MASK] = hash;
+	halfmoveClocks[size & INDEX_MASK] = halfmoveClock;
+	size++;
+    }
+
+    public void pop() {
+	size--;
+    }
+
+    public boolean isEmpty() {
+	return size == 0;
+    }
+
+    public long getLastHash() {
+	return hashes[(size - 1) & INDEX_MASK];
+    }
+
+    public int getHalfmoveClock() {
+	return size == 0 ? 0 : halfmoveClocks[(size - 1) & INDEX_MASK];
+    }
+
+    private int countRepetitions(int enough) {
+	/**
+	 * Returns how many times the last position has occurred before, but stops counting at enough.
+	 **/
+	if (size == 0) {
+	    return 0;
+	}
+	long hash = getLastHash();
+	int limit = Math.min(Math.min(getHalfmoveClock(), size - 1), CAPACITY - 1);
+	int repetitions = 0;
+	for (int back = 2; back <= limit; back += 2) {
+	    if (hashes[(size - 1 - back) & INDEX_MASK] == hash && ++repetitions == enough) {
+		break;
+	    }
+	}
+	return repetitions;
+    }
+
+    public boolean isRepetition() {
+	return countRepetitions(1) > 0;
+    }
+
+    public boolean isThreefoldRepetition() {
+	return countRepetitions(2) >= 2;
+    }
+
+    public boolean isFiftyMoveRule() {
+	return getHalfmoveClock() >= FIFTY_MOVE_PLIES;
+    }
+}
@@ -0,0 +1,669 @@
+package se.liu.chessGame.engine;
+
+import java.util.Arrays;
+
+/**
+ * A compact, mutable board that belongs to one search.
+ * It is filled from an immutable Position and has no connection to the ChessBoard the players use,
+ * so a search can play moves on it and take them back without anyone else seeing it.
+ * Next to the PieceCode of every square the board keeps a bitboard per piece code and per side,
+ * which lets the Attacks tables answer attack and mobility questions with a few mask operations.
+ * The legal moves are generated directly from the checking and pinned pieces of the position, without trying them.
+ * The Evaluator sums are updated whenever a piece is put on or taken off a square, including promotions.
+ * If a NeuralNetwork is used, its accumulators are updated in the same places and it replaces the Evaluator.
+ * The Zobrist hash of the position is kept up to date the same way, and every move adds it to a PositionHistory,
+ * which can be started with the earlier positions of the game so repetitions of those are found as well.
+ * A second hash of only the pawns is kept for the pawn structure. A search can give the board a PawnHashTable and an
+ * EvaluationCache, which evaluate then looks in first; without them it computes everything each time.
+ * Starting the program with -Dchess.evaluationCheck=true compares them with a full evaluation after every move.
+ * The rules are the same as for the ChessPieces: pawns may move two squares from their start row and promote to
+ * any piece, there is no castling and no en passant.
+ */
+
+public class SearchBoard
+{
+    public static final int MAX_MOVES = 256;
+    public static final int MAX_GAME_PLY = 1024;
+
+    private static final int[] PROMOTION_TYPES = { PieceCode.QUEEN, PieceCode.ROOK, PieceCode.BISHOP, PieceCode.KNIGHT };
+    private static final int WHITE_PAWN_ROW = 6;
+    private static final int BLACK_PAWN_ROW = 1;
+    private static final long LIGHT_SQUARES = 0xAA55AA55AA55AA55L;
+    private static final long PROMOTION_ROWS = 0xFF000000000000FFL;
+    private static final int[] EXCHANGE_VALUES = { 0, 100, 320, 330, 500, 900, 20000 };
+    private static final int MAX_EXCHANGES = 32;
+    private static final boolean EVALUATION_CHECK = Boolean.getBoolean("chess.evaluationCheck");
+    private static final int WHITE = 0;
+    private static final int BLACK = 1;
+
+    private final int[] squares = new int[Square.COUNT];
+    private final long[] pieceBitboards = new long[PieceCode.CODE_COUNT];
+    private final long[] sideBitboards = new long[2];
+    private boolean whiteToMove;
+    private final int[] kingSquares = { Square.NONE, Square.NONE };
+    private final int[] capturedStack = new int[MAX_GAME_PLY];
+    private int ply = 0;
+    private int middlegameScore = 0;
+    private int endgameScore = 0;
+    private int phase = 0;
+    private long hash;
+    private long pawnHash = 0;
+    private PawnHashTable pawnTable = null;
+    private EvaluationCache evaluationCache = null;
+    private PositionHistory history = new PositionHistory();
+    private final NeuralNetwork network;
+    private final int[][] accumulators;
+
+    public SearchBoard(final int[] squares, final boolean whiteToMove, final NeuralNetwork network) {
+	this.whiteToMove = whiteToMove;
+	this.network = network;
+	this.accumulators = network != null ? network.createAccumulators() : null;
+	this.hash = whiteToMove ? 0 : Zobrist.side();
+	for (int square = 0; square < Square.COUNT; square++) {
+	    if (squares[square] != PieceCode.EMPTY) {
+		putPiece(square, squares[square]);
+	    }
+	}
+	history.push(hash, true);
+    }
+
+    public SearchBoard(final Position position, final NeuralNetwork network) {
+	this.whiteToMove = position.isWhiteToMove();
+	this.network = network;
+	this.accumulators = network != null ? network.createAccumulators() : null;
+	this.hash = position.isWhiteToMove() ? 0 : Zobrist.side();
+	for (int square = 0; square < Square.COUNT; square++) {
+	    if (position.getPieceAt(square) != PieceCode.EMPTY) {
+		putPiece(square, position.getPieceAt(square));
+	    }
+	}
+	history.push(hash, true);
+    }
+
+    public SearchBoard(final Position position) {
+	this(position, NeuralNetwork.getDefault());
+    }
+
+    public void setPosition(Position position) {
+	/**
+	 * Replaces the position on the board and starts a new history, so one board and its Searcher can be used
+	 * for many positions without allocating new tables for each.
+	 **/
+	long pieces = getOccupied();
+	while (pieces != 0) {
+	    removePiece(Long.numberOfTrailingZeros(pieces));
+	    pieces &= pieces - 1;
+	}
+	kingSquares[WHITE] = Square.NONE;
+	kingSquares[BLACK] = Square.NONE;
+	ply = 0;
+	whiteToMove = position.isWhiteToMove();
+	hash = whiteToMove ? 0 : Zobrist.side();
+	for (int square = 0; square < Square.COUNT; square++) {
+	    if (position.getPieceAt(square) != PieceCode.EMPTY) {
+		putPiece(square, position.getPieceAt(square));
+	    }
+	}
+	history = new PositionHistory();
+	history.push(hash, true);
+    }
+
+    public SearchBoard copy() {
+	SearchBoard copy = new SearchBoard(squares, whiteToMove, network);
+	copy.history = history.copy();
+	return copy;
+    }
+
+    public void setGameHistory(PositionHistory gameHistory) {
+	/**
+	 * Starts the history of the board with the positions of the game, which must end with the current position.
+	 **/
+	if (gameHistory.isEmpty() || gameHistory.getLastHash() != hash) {
+	    throw new IllegalArgumentException("The game history does not end with the position " + toPosition().toFen());
+	}
+	history = gameHistory.copy();
+    }
+
+    public boolean isRepetitionOrFiftyMoves() {
+	/**
+	 * Checks if the position has occurred before or if the fifty-move rule applies, either of which makes it a draw
+	 * for the search: if repeating was the best for both players the first time, it will be again.
+	 **/
+	return history.isRepetition() || history.isFiftyMoveRule();
+    }
+
+    public Position toPosition() {
+	return new Position(squares, whiteToMove);
+    }
+
+    public int getPieceAt(int square) {
+	return squares[square];
+    }
+
+    public boolean isWhiteToMove() {
+	return whiteToMove;
+    }
+
+    public int getKingSquare(boolean isWhite) {
+	return kingSquares[isWhite ? WHITE : BLACK];
+    }
+
+    public long getPieces(int code) {
+	return pieceBitboards[code];
+    }
+
+    public long getPieces(boolean isWhite) {
+	return sideBitboards[isWhite ? WHITE : BLACK];
+    }
+
+    public long getOccupied() {
+	return sideBitboards[WHITE] | sideBitboards[BLACK];
+    }
+
+    public long getHash() {
+	return hash;
+    }
+
+    public long getPawnHash() {
+	return pawnHash;
+    }
+
+    public void setEvaluationCaches(PawnHashTable pawnTable, EvaluationCache evaluationCache) {
+	/**
+	 * Lets evaluate keep its results in the given tables, or compute everything each time if they are null.
+	 * The tables must not be used by another board at the same time.
+	 **/
+	this.pawnTable = pawnTable;
+	this.evaluationCache = evaluationCache;
+    }
+
+    private void putPiece(int square, int code) {
+	long bit = Attacks.bit(square);
+	squares[square] = code;
+	middlegameScore += Evaluator.middlegame(code, square);
+	endgameScore += Evaluator.endgame(code, square);
+	phase += Evaluator.phase(code);
+	hash ^= Zobrist.piece(code, square);
+	if (PieceCode.type(code) == PieceCode.PAWN) {
+	    pawnHash ^= Zobrist.piece(code, square);
+	}
+	if (network != null) {
+	    network.addPiece(accumulators, code, square);
+	}
+	pieceBitboards[code] |= bit;
+	sideBitboards[PieceCode.isWhite(code) ? WHITE : BLACK] |= bit;
+	if (PieceCode.type(code) == PieceCode.KING) {
+	    kingSquares[PieceCode.isWhite(code) ? WHITE : BLACK] = square;
+	}
+    }
+
+    private void removePiece(int square) {
+	long bit = Attacks.bit(square);
+	int code = squares[square];
+	squares[square] = PieceCode.EMPTY;
+	middlegameScore -= Evaluator.middlegame(code, square);
+	endgameScore -= Evaluator.endgame(code, square);
+	phase -= Evaluator.phase(code);
+	hash ^= Zobrist.piece(code, square);
+	if (PieceCode.type(code) == PieceCode.PAWN) {
+	    pawnHash ^= Zobrist.piece(code, square);
+	}
+	if (network != null) {
+	    network.removePiece(accumulators, code, square);
+	}
+	pieceBitboards[code] &= ~bit;
+	sideBitboards[PieceCode.isWhite(code) ? WHITE : BLACK] &= ~bit;
+    }
+
+    public void makeMove(int move) {
+	/**
+	 * Plays the move on the board. The move must have been generated for the current position.
+	 **/
+	int from = Move.from(move);
+	int to = Move.to(move);
+	int moving = squares[from];
+	int captured = squares[to];
+	boolean irreversible = captured != PieceCode.EMPTY || PieceCode.type(moving) == PieceCode.PAWN;
+	capturedStack[ply++] = captured;
+	if (captured != PieceCode.EMPTY) {
+	    removePiece(to);
+	}
+	removePiece(from);
+	if (Move.promotion(move) != PieceCode.EMPTY) {
+	    moving = PieceCode.of(Move.promotion(move), whiteToMove);
+	}
+	putPiece(to, moving);
+	whiteToMove = !whiteToMove;
+	hash ^= Zobrist.side();
+	history.push(hash, irreversible);
+	if (EVALUATION_CHECK) {
+	    checkEvaluation(move);
+	}
+    }
+
+    public void unmakeMove(int move) {
+	/**
+	 * Takes back the last move played with makeMove.
+	 **/
+	history.pop();
+	whiteToMove = !whiteToMove;
+	hash ^= Zobrist.side();
+	int from = Move.from(move);
+	int to = Move.to(move);
+	int moving = squares[to];
+	if (Move.promotion(move) != PieceCode.EMPTY) {
+	    moving = PieceCode.of(PieceCode.PAWN, whiteToMove);
+	}
+	removePiece(to);
+	putPiece(from, moving);
+	int captured = capturedStack[--ply];
+	if (captured != PieceCode.EMPTY) {
+	    putPiece(to, captured);
+	}
+	if (EVALUATION_CHECK) {
+	    checkEvaluation(move);
+	}
+    }
+
+    public int evaluate() {
+	/**
+	 * Returns the static evaluation of the position in centipawns, seen from the player to move.
+	 **/
+	if (network != null) {
+	    return whiteToMove ? network.evaluate(accumulators[0], accumulators[1]) : network.evaluate(accumulators[1], accumulators[0]);
+	}
+	int score = evaluationCache != null ? evaluationCache.probe(hash) : EvaluationCache.NONE;
+	if (score == EvaluationCache.NONE) {
+	    long whitePawns = pieceBitboards[PieceCode.of(PieceCode.PAWN, true)];
+	    long blackPawns = pieceBitboards[PieceCode.of(PieceCode.PAWN, false)];
+	    long structure = pawnTable != null ? pawnTable.pawnStructure(pawnHash, whitePawns, blackPawns) :
+			     Evaluator.pawnStructure(whitePawns, blackPawns);
+	    score = Evaluator.blend(middlegameScore + Evaluator.middlegamePart(structure),
+				    endgameScore + Evaluator.endgamePart(structure), phase);
+	    if (evaluationCache != null) {
+		evaluationCache.store(hash, score);
+	    }
+	}
+	return whiteToMove ? score : -score;
+    }
+
+    public NeuralNetwork getNetwork() {
+	return network;
+    }
+
+    public int[] getAccumulator(boolean whitePerspective) {
+	return accumulators[whitePerspective ? 0 : 1];
+    }
+
+    private void checkEvaluation(int move) {
+	if (network != null) {
+	    int[][] fresh = network.createAccumulators();
+	    for (int square = 0; square < Square.COUNT; square++) {
+		if (squares[square] != PieceCode.EMPTY) {
+		    network.addPiece(fresh, squares[square], square);
+		}
+	    }
+	    if (!Arrays.equals(fresh[0], accumulators[0]) || !Arrays.equals(fresh[1], accumulators[1])) {
+		throw new IllegalStateException("Incremental accumulators differ after " + Move.toUci(move) + " in " + toPosition().toFen());
+	    }
+	}
+	int fromScratch = Evaluator.evaluateFromScratch(this);
+	int incremental = Evaluator.blend(middlegameScore, endgameScore, phase);
+	if (fromScratch != incremental) {
+	    throw new IllegalStateException("Incremental evaluation " + incremental + " differs from " + fromScratch +
+					    " after " + Move.toUci(move) + " in " + toPosition().toFen());
+	}
+	if (hash != Zobrist.of(toPosition())) {
+	    throw new IllegalStateException("Incremental hash differs after " + Move.toUci(move) + " in " + toPosition().toFen());
+	}
+    }
+
+    public boolean isInsufficientMaterial() {
+	/**
+	 * Checks if neither player can ever checkmate: no pawns, rooks or queens and at most one knight or bishop,
+	 * or exactly two bishops that stand on squares of the same colour.
+	 **/
+	long heavyOrPawns = 0;
+	for (boolean isWhite : new boolean[] { true, false }) {
+	    heavyOrPawns |= pieceBitboards[PieceCode.of(PieceCode.PAWN, isWhite)] |
+			    pieceBitboards[PieceCode.of(PieceCode.ROOK, isWhite)] |
+			    pieceBitboards[PieceCode.of(PieceCode.QUEEN, isWhite)];
+	}
+	if (heavyOrPawns != 0) {
+	    return false;
+	}
+	long knights = pieceBitboards[PieceCode.of(PieceCode.KNIGHT, true)] | pieceBitboards[PieceCode.of(PieceCode.KNIGHT, false)];
+	long bishops = pieceBitboards[PieceCode.of(PieceCode.BISHOP, true)] | pieceBitboards[PieceCode.of(PieceCode.BISHOP, false)];
+	int minorCount = Long.bitCount(knights | bishops);
+	final int maxBishops = 2;
+	return minorCount <= 1 || (knights == 0 && Long.bitCount(bishops) == maxBishops &&
+				   (Long.bitCount(bishops & LIGHT_SQUARES) != 1));
+    }
+
+    public boolean isInCheck() {
+	int king = getKingSquare(whiteToMove);
+	return king != Square.NONE && isSquareAttacked(king, !whiteToMove);
+    }
+
+    public boolean isSquareAttacked(int square, boolean byWhite) {
+	return attackersOf(square, byWhite, getOccupied()) != 0;
+    }
+
+    public long attackersOf(int square, boolean byWhite, long occupied) {
+	/**
+	 * Returns the pieces of the given side that attack the square when the given squares are occupied.
+	 * Every kind of piece is looked up from the square itself, a pawn attacks the square if a pawn of the
+	 * other colour on the square would attack it.
+	 **/
+	long queens = pieceBitboards[PieceCode.of(PieceCode.QUEEN, byWhite)];
+	return (Attacks.pawn(square, !byWhite) & pieceBitboards[PieceCode.of(PieceCode.PAWN, byWhite)]) |
+	       (Attacks.knight(square) & pieceBitboards[PieceCode.of(PieceCode.KNIGHT, byWhite)]) |
+	       (Attacks.king(square) & pieceBitboards[PieceCode.of(PieceCode.KING, byWhite)]) |
+	       (Attacks.bishop(square, occupied) & (pieceBitboards[PieceCode.of(PieceCode.BISHOP, byWhite)] | queens)) |
+	       (Attacks.rook(square, occupied) & (pieceBitboards[PieceCode.of(PieceCode.ROOK, byWhite)] | queens));
+    }
+
+    public boolean isTactical(int move) {
+	return squares[Move.to(move)] != PieceCode.EMPTY || Move.promotion(move) != PieceCode.EMPTY;
+    }
+
+    public int staticExchange(int move) {
+	/**
+	 * Returns the material the player to move wins with the move if both players then keep capturing on the
+	 * destination square with their least valuable piece, each stopping when that is better for them.
+	 * Pieces behind the capturers on the same line join in as the squares in front of them are emptied.
+	 **/
+	int from = Move.from(move);
+	int to = Move.to(move);
+	int[] gain = new int[MAX_EXCHANGES];
+	int depth = 0;
+	int pieceOnSquare = PieceCode.type(squares[from]);
+	gain[0] = EXCHANGE_VALUES[PieceCode.type(squares[to])];
+	if (Move.promotion(move) != PieceCode.EMPTY) {
+	    pieceOnSquare = Move.promotion(move);
+	    gain[0] += EXCHANGE_VALUES[pieceOnSquare] - EXCHANGE_VALUES[PieceCode.PAWN];
+	}
+	long occupied = getOccupied();
+	long fromBit = Attacks.bit(from);
+	boolean side = whiteToMove;
+	while (fromBit != 0 && depth < MAX_EXCHANGES - 1) {
+	    depth++;
+	    side = !side;
+	    gain[depth] = EXCHANGE_VALUES[pieceOnSquare] - gain[depth - 1];
+	    if (Math.max(-gain[depth - 1], gain[depth]) < 0) {
+		break;
+	    }
+	    occupied &= ~fromBit;
+	    long attackers = attackersOf(to, side, occupied) & occupied;
+	    fromBit = 0;
+	    for (int type = PieceCode.PAWN; type <= PieceCode.KING && fromBit == 0; type++) {
+		long candidates = attackers & pieceBitboards[PieceCode.of(type, side)];
+		if (candidates != 0) {
+		    fromBit = candidates & -candidates;
+		    pieceOnSquare = type;
+		}
+	    }
+	}
+	while (--depth > 0) {
+	    gain[depth - 1] = -Math.max(-gain[depth - 1], gain[depth]);
+	}
+	return gain[0];
+    }
+
+    public int generateLegalMoves(int[] moves) {
+	/**
+	 * Fills the array with the legal moves of the player to move and returns how many there are.
+	 **/
+	return generateLegalMoves(moves, -1L, -1L);
+    }
+
+    public int generateTacticalMoves(int[] moves) {
+	/**
+	 * Fills the array with the legal captures and promotions of the player to move and returns how many there are.
+	 **/
+	return generateLegalMoves(moves, getPieces(!whiteToMove), PROMOTION_ROWS);
+    }
+
+    public int generateQuietMoves(int[] moves) {
+	/**
+	 * Fills the array with the legal moves that neither capture nor promote and returns how many there are.
+	 * Together with generateTacticalMoves this gives every legal move exactly once.
+	 **/
+	return generateLegalMoves(moves, ~getOccupied(), ~PROMOTION_ROWS);
+    }
+
+    private int generateLegalMoves(int[] moves, long targetMask, long pushMask) {
+	/**
+	 * The pieces giving check and the pieces pinned to the own king are found once, and every piece is only given
+	 * the destinations that keep the king safe, so no move has to be tried on the board.
+	 * Only destinations in the target mask are used, and for pawns moving straight ahead those in the push mask.
+	 **/
+	int king = getKingSquare(whiteToMove);
+	if (king == Square.NONE) {
+	    return generatePseudoLegalMoves(moves, 0, targetMask, pushMask, 0, true);
+	}
+	long own = getPieces(whiteToMove);
+	long occupied = getOccupied();
+	long checkers = attackersOf(king, !whiteToMove, occupied);
+	int count = 0;
+	long kingTargets = Attacks.king(king) & ~own & targetMask;
+	long occupiedWithoutKing = occupied & ~Attacks.bit(king);
+	while (kingTargets != 0) {
+	    int to = Long.numberOfTrailingZeros(kingTargets);
+	    kingTargets &= kingTargets - 1;
+	    if (attackersOf(to, !whiteToMove, occupiedWithoutKing) == 0) {
+		moves[count++] = Move.of(king, to);
+	    }
+	}
+	if (Long.bitCount(checkers) > 1) {
+	    return count;
+	}
+	long checkMask = -1L;
+	if (checkers != 0) {
+	    checkMask = checkers | Attacks.between(king, Long.numberOfTrailingZeros(checkers));
+	}
+	return generatePseudoLegalMoves(moves, count, checkMask & targetMask, checkMask & pushMask, pinnedPieces(king), false);
+    }
+
+    public boolean isLegalMove(int move) {
+	/**
+	 * Checks a move that was found in another position, like a killer move or a move from the transposition table,
+	 * without generating all moves of this position.
+	 **/
+	int from = Move.from(move);
+	int to = Move.to(move);
+	int moving = squares[from];
+	int captured = squares[to];
+	if (move == Move.NONE || moving == PieceCode.EMPTY || PieceCode.isWhite(moving) != whiteToMove ||
+	    (captured != PieceCode.EMPTY && PieceCode.isWhite(captured) == whiteToMove)) {
+	    return false;
+	}
+	long toBit = Attacks.bit(to);
+	long occupied = getOccupied();
+	long reachable;
+	switch (PieceCode.type(moving)) {
+	    case PieceCode.PAWN:
+		if ((Move.promotion(move) != PieceCode.EMPTY) != ((toBit & PROMOTION_ROWS) != 0)) {
+		    return false;
+		}
+		int step = whiteToMove ? -Square.BOARD_LENGTH : Square.BOARD_LENGTH;
+		int startRow = whiteToMove ? WHITE_PAWN_ROW : BLACK_PAWN_ROW;
+		if (captured != PieceCode.EMPTY) {
+		    reachable = Attacks.pawn(from, whiteToMove);
+		}
+		else if (to == from + step ||
+			 (to == from + 2 * step && Square.y(from) == startRow && squares[from + step] == PieceCode.EMPTY)) {
+		    reachable = toBit;
+		}
+		else {
+		    reachable = 0;
+		}
+		break;
+	    case PieceCode.KNIGHT:
+		reachable = Attacks.knight(from);
+		break;
+	    case PieceCode.BISHOP:
+		reachable = Attacks.bishop(from, occupied);
+		break;
+	    case PieceCode.ROOK:
+		reachable = Attacks.rook(from, occupied);
+		break;
+	    case PieceCode.QUEEN:
+		reachable = Attacks.queen(from, occupied);
+		break;
+	    default:
+		reachable = Attacks.king(from);
+	}
+	if ((reachable & toBit) == 0 || (PieceCode.type(moving) != PieceCode.PAWN && Move.promotion(move) != PieceCode.EMPTY)) {
+	    return false;
+	}
+	boolean movingWhite = whiteToMove;
+	makeMove(move);
+	int king = getKingSquare(movingWhite);
+	boolean legal = king == Square.NONE || !isSquareAttacked(king, !movingWhite);
+	unmakeMove(move);
+	return legal;
+    }
+
+    private long pinnedPieces(int king) {
+	/**
+	 * Returns the own pieces that are the only piece between an enemy slider and the own king.
+	 **/
+	long enemies = getPieces(!whiteToMove);
+	long queens = pieceBitboards[PieceCode.of(PieceCode.QUEEN, !whiteToMove)];
+	long snipers = (Attacks.rook(king, enemies) & (pieceBitboards[PieceCode.of(PieceCode.ROOK, !whiteToMove)] | queens)) |
+		       (Attacks.bishop(king, enemies) & (pieceBitboards[PieceCode.of(PieceCode.BISHOP, !whiteToMove)] | queens));
+	long occupied = getOccupied();
+	long pinned = 0;
+	while (snipers != 0) {
+	    int sniper = Long.numberOfTrailingZeros(snipers);
+	    snipers &= snipers - 1;
+	    long blockers = Attacks.between(king, sniper) & occupied;
+	    if (Long.bitCount(blockers) == 1) {
+		pinned |= blockers & getPieces(whiteToMove);
+	    }
+	}
+	return pinned;
+    }
+
+    public int generateMovesByTrial(int[] moves) {
+	/**
+	 * Generates the legal moves by trying every move on the board and keeping those that do not leave the own king
+	 * checked. Much slower than generateLegalMoves, it is only kept to verify it.
+	 **/
+	int count = generatePseudoLegalMoves(moves, 0, -1L, -1L, 0, true);
+	int legalCount = 0;
+	boolean movingWhite = whiteToMove;
+	for (int i = 0; i < count; i++) {
+	    makeMove(moves[i]);
+	    int king = getKingSquare(movingWhite);
+	    if (king == Square.NONE || !isSquareAttacked(king, !movingWhite)) {
+		moves[legalCount++] = moves[i];
+	    }
+	    unmakeMove(moves[i]);
+	}
+	return legalCount;
+    }
+
+    private int generatePseudoLegalMoves(int[] moves, int count, long targetMask, long pushMask, long pinned, boolean includeKing) {
+	/**
+	 * Adds the moves of the pieces from index count on. Only destinations in the target mask are used, except for
+	 * pawns moving straight ahead which use the push mask, and a pinned piece may only move along the line through its king.
+	 * The king moves are only added if includeKing is set, and then without any check of their safety.
+	 **/
+	long own = getPieces(whiteToMove);
+	long occupied = getOccupied();
+	int king = getKingSquare(whiteToMove);
+	count = addPawnMoves(moves, count, targetMask, pushMask, pinned, king);
+	long pieces = own & ~pieceBitboards[PieceCode.of(PieceCode.PAWN, whiteToMove)];
+	if (!includeKing) {
+	    pieces &= ~pieceBitboards[PieceCode.of(PieceCode.KING, whiteToMove)];
+	}
+	while (pieces != 0) {
+	    int from = Long.numberOfTrailingZeros(pieces);
+	    pieces &= pieces - 1;
+	    long targets;
+	    switch (PieceCode.type(squares[from])) {
+		case PieceCode.KNIGHT:
+		    targets = Attacks.knight(from);
+		    break;
+		case PieceCode.BISHOP:
+		    targets = Attacks.bishop(from, occupied);
+		    break;
+		case PieceCode.ROOK:
+		    targets = Attacks.rook(from, occupied);
+		    break;
+		case PieceCode.QUEEN:
+		    targets = Attacks.queen(from, occupied);
+		    break;
+		default:
+		    targets = Attacks.king(from);
+	    }
+	    targets &= ~own & targetMask;
+	    if ((pinned & Attacks.bit(from)) != 0) {
+		targets &= Attacks.line(king, from);
+	    }
+	    count = addMoves(from, targets, moves, count);
+	}
+	return count;
+    }
+
+    private static int addMoves(int from, long targets, int[] moves, int count) {
+	while (targets != 0) {
+	    moves[count++] = Move.of(from, Long.numberOfTrailingZeros(targets));
+	    targets &= targets - 1;
+	}
+	return count;
+    }
+
+    private int addPawnMoves(int[] moves, int count, long targetMask, long pushMask, long pinned, int king) {
+	long pawns = pieceBitboards[PieceCode.of(PieceCode.PAWN, whiteToMove)];
+	long enemies = getPieces(!whiteToMove);
+	int step = whiteToMove ? -Square.BOARD_LENGTH : Square.BOARD_LENGTH;
+	int startRow = whiteToMove ? WHITE_PAWN_ROW : BLACK_PAWN_ROW;
+	while (pawns != 0) {
+	    int from = Long.numberOfTrailingZeros(pawns);
+	    pawns &= pawns - 1;
+	    int to = from + step;
+	    if (to < 0 || to >= Square.COUNT) {
+		continue;
+	    }
+	    long allowed = targetMask;
+	    long allowedPushes = pushMask;
+	    if ((pinned & Attacks.bit(from)) != 0) {
+		allowed &= Attacks.line(king, from);
+		allowedPushes &= Attacks.line(king, from);
+	    }
+	    if (squares[to] == PieceCode.EMPTY) {
+		if ((allowedPushes & Attacks.bit(to)) != 0) {
+		    count = addPawnMove(from, to, moves, count);
+		}
+		if (Square.y(from) == startRow && squares[to + step] == PieceCode.EMPTY && (allowedPushes & Attacks.bit(to + step)) != 0) {
+		    moves[count++] = Move.of(from, to + step);
+		}
+	    }
+	    long captures = Attacks.pawn(from, whiteToMove) & enemies & allowed;
+	    while (captures != 0) {
+		count = addPawnMove(from, Long.numberOfTrailingZeros(captures), moves, count);
+		captures &= captures - 1;
+	    }
+	}
+	return count;
+    }
+
+    private static int addPawnMove(int from, int to, int[] moves, int count) {
+	/**
+	 * Adds the pawn move, or one move for every piece the pawn can be promoted to if it reaches the back row.
+	 **/
+	int toY = Square.y(to);
+	if (toY == 0 || toY == Square.BOARD_LENGTH - 1) {
+	    for (int promotion : PROMOTION_TYPES) {
+		moves[count++] = Move.of(from, to, promotion);
+	    }
+	}
+	else {
+	    moves[count++] = Move.of(from, to);
+	}
+	return count;
+    }
+}
@@ -0,0 +1,449 @@
+package se.liu.chessGame.engine;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Searches a SearchBoard with iterative deepening alpha-beta and reports every completed depth.
+ * At the end of the main search a quiescence search keeps playing captures and promotions until the position is quiet,
+ * so no score is taken in the middle of an exchange. Captures that the static exchange evaluation shows to lose
+ * material are not searched there.
+ * The moves of the main search come from a MovePicker per ply. The best move, depth and score of every node are kept
+ * in a TranspositionTable, and a node below the root whose stored score from a deep enough search already fails high
+ * or low is not searched again. A stored score inside the window is not used, so the lines stay whole.
+ * Quiet moves that caused a cutoff are remembered as killer moves of their ply and in a history table, so they are
+ * tried early in the nodes that follow. The board evaluates through a PawnHashTable and an EvaluationCache of the
+ * Searcher, whose hit rates can be read after a search.
+ * A position that repeats an earlier one, in the search or in the game before it, is scored as a draw.
+ * With several lines the root is searched once per line at every depth, each time without the first moves of the lines
+ * already found, so every line gets an exact score while all of them share the tables.
+ * The search only knows its own SearchBoard and can be stopped from any thread with stop,
+ * which makes it return within a few nodes. It also stops by itself when a node or time limit is set and reached,
+ * but never before the first depth is completed, so there is always a move to play. A TimeManager also decides
+ * between the depths whether the next one is worth starting. The time manager of a running search can still be set,
+ * which ends a search that was started without a limit, such as the search while pondering.
+ */
+
+public class Searcher
+{
+    public static final int MATE_SCORE = 100000;
+    public static final int INFINITE_SCORE = MATE_SCORE + 1;
+    public static final int MAX_PLY = 128;
+
+    private static final int HISTORY_LIMIT = 1 << 20;
+    private static final long LIMIT_CHECK_INTERVAL = 1024;
+
+    private final SearchBoard board;
+    private final long analysisId;
+    private final int[][] moveLists = new int[MAX_PLY][SearchBoard.MAX_MOVES];
+    private final int[][] pvTable = new int[MAX_PLY][MAX_PLY];
+    private final int[] pvLength = new int[MAX_PLY];
+    private final int[][] moveScores = new int[MAX_PLY][SearchBoard.MAX_MOVES];
+    private final TranspositionTable transpositionTable;
+    private final PawnHashTable pawnTable = new PawnHashTable(PawnHashTable.DEFAULT_SIZE_BITS);
+    private final EvaluationCache evaluationCache = new EvaluationCache(EvaluationCache.DEFAULT_SIZE_BITS);
+    private final MovePicker[] movePickers = new MovePicker[MAX_PLY];
+    private final int[][] killers = new int[MAX_PLY][2];
+    private final int[][] history = new int[2][MovePicker.HISTORY_SIZE];
+    private boolean exchangePruning = true;
+    private boolean moveOrdering = true;
+    private int lineCount = 1;
+    private final int[] excludedRootMoves = new int[SearchBoard.MAX_MOVES];
+    private int excludedCount = 0;
+    private volatile boolean stopped = false;
+    private long nodes = 0;
+    private long nodeLimit = Long.MAX_VALUE;
+    private volatile long timeLimitMillis = Long.MAX_VALUE;
+    private volatile TimeManager timeManager = null;
+    private volatile long startTime = 0;
+    private volatile long deadline = Long.MAX_VALUE;
+    private long nextLimitCheck = 0;
+    private boolean limitsActive = false;
+    private boolean limitReached = false;
+
+    public Searcher(final SearchBoard board, final long analysisId) {
+	this(board, analysisId, new TranspositionTable(TranspositionTable.DEFAULT_SIZE_BITS));
+    }
+
+    public Searcher(final SearchBoard board, final long analysisId, final TranspositionTable transpositionTable) {
+	/**
+	 * Creates a Searcher that keeps its hash moves in the given table, which may be shared with the Searchers before
+	 * and after it, but never with one that searches at the same time.
+	 **/
+	this.board = board;
+	this.analysisId = analysisId;
+	this.transpositionTable = transpositionTable;
+	board.setEvaluationCaches(pawnTable, evaluationCache);
+	for (int ply = 0; ply < MAX_PLY; ply++) {
+	    movePickers[ply] = new MovePicker(board, history);
+	}
+    }
+
+    public void stop() {
+	stopped = true;
+    }
+
+    public boolean isStopped() {
+	return stopped;
+    }
+
+    public void clearStop() {
+	/**
+	 * Makes a stopped Searcher able to search again. Must only be called while no search is running,
+	 * since a stop that arrives before it would otherwise be lost.
+	 **/
+	stopped = false;
+    }
+
+    public void setExchangePruning(final boolean exchangePruning) {
+	this.exchangePruning = exchangePruning;
+    }
+
+    public void setMoveOrdering(final boolean moveOrdering) {
+	/**
+	 * Turns the move ordering off, so the moves are searched in the order they are generated.
+	 * Only meant for measuring what the ordering gains.
+	 **/
+	this.moveOrdering = moveOrdering;
+    }
+
+    public void setLineCount(final int lineCount) {
+	/**
+	 * Sets how many of the best moves the search finds a line and a score for.
+	 **/
+	this.lineCount = Math.max(1, lineCount);
+    }
+
+    public void clear() {
+	/**
+	 * Forgets the hash moves, killer moves and history scores of earlier searches, so the next search gives the
+	 * same result as one by a new Searcher.
+	 **/
+	transpositionTable.clear();
+	for (int[] plyKillers : killers) {
+	    Arrays.fill(plyKillers, Move.NONE);
+	}
+	for (int[] sideHistory : history) {
+	    Arrays.fill(sideHistory, 0);
+	}
+    }
+
+    public void setNodeLimit(final long nodeLimit) {
+	this.nodeLimit = nodeLimit;
+    }
+
+    public void setTimeLimit(final long timeLimitMillis) {
+	this.timeLimitMillis = timeLimitMillis;
+	this.timeManager = null;
+    }
+
+    public void setTimeManager(final TimeManager timeManager) {
+	/**
+	 * Lets the time manager limit the searches, also the one that is running, counted from the moment it started.
+	 * A search that has already used more than the maximum time stops at its next check.
+	 **/
+	this.timeManager = timeManager;
+	timeLimitMillis = timeManager.getMaximumMillis();
+	deadline = startTime + timeLimitMillis;
+    }
+
+    public long getNodes() {
+	return nodes;
+    }
+
+    public PawnHashTable getPawnTable() {
+	return pawnTable;
+    }
+
+    public EvaluationCache getEvaluationCache() {
+	return evaluationCache;
+    }
+
+    public AnalysisResult search(int maxDepth, Consumer<AnalysisResult> resultListener) {
+	/**
+	 * Searches one depth deeper at a time until maxDepth is reached, a forced mate is found or the search is stopped.
+	 * Returns the result of the deepest completed depth, or null if not even the first depth was completed.
+	 * The Searcher can search again after its board has been given a new position, but not after stop until
+	 * clearStop is called.
+	 **/
+	startTime = System.currentTimeMillis();
+	nodes = 0;
+	nextLimitCheck = 0;
+	deadline = timeLimitMillis == Long.MAX_VALUE ? Long.MAX_VALUE : startTime + timeLimitMillis;
+	limitsActive = false;
+	limitReached = false;
+	AnalysisResult lastResult = null;
+	long iterationStart = startTime;
+	int lines = Math.max(1, Math.min(lineCount, board.generateLegalMoves(moveLists[0])));
+	for (int depth = 1; depth <= maxDepth && !stopped && !limitReached; depth++) {
+	    AnalysisResult bestLine = searchLines(depth, lines, resultListener);
+	    if (bestLine == null) {
+		break;
+	    }
+	    lastResult = bestLine;
+	    limitsActive = true;
+	    if (pvLength[0] == 0 || (lines == 1 && lastResult.isMateScore())) {
+		break;
+	    }
+	    long now = System.currentTimeMillis();
+	    TimeManager manager = timeManager;
+	    if (manager != null && !manager.canStartIteration(now - startTime, now - iterationStart)) {
+		break;
+	    }
+	    iterationStart = now;
+	}
+	return lastResult;
+    }
+
+    private AnalysisResult searchLines(int depth, int lines, Consumer<AnalysisResult> resultListener) {
+	/**
+	 * Searches one depth for every line and reports each line when it is done. Returns the best line,
+	 * or null if the search was stopped before it was done.
+	 **/
+	AnalysisResult bestLine = null;
+	for (excludedCount = 0; excludedCount < lines; excludedCount++) {
+	    int score = alphaBeta(depth, -INFINITE_SCORE, INFINITE_SCORE, 0);
+	    if (stopped || limitReached) {
+		break;
+	    }
+	    AnalysisResult line = new AnalysisResult(analysisId, board.isWhiteToMove(), depth, score,
+						     Arrays.copyOf(pvTable[0], pvLength[0]), nodes,
+						     System.currentTimeMillis() - startTime, excludedCount + 1);
+	    resultListener.accept(line);
+	    if (bestLine == null) {
+		bestLine = line;
+	    }
+	    excludedRootMoves[excludedCount] = pvTable[0][0];
+	}
+	excludedCount = 0;
+	if (bestLine != null) {
+	    System.arraycopy(bestLine.getPrincipalVariation(), 0, pvTable[0], 0, bestLine.getPrincipalVariation().length);
+	    pvLength[0] = bestLine.getPrincipalVariation().length;
+	}
+	return bestLine;
+    }
+
+    private boolean isExcludedRootMove(int move) {
+	for (int i = 0; i < excludedCount; i++) {
+	    if (excludedRootMoves[i] == move) {
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    private int alphaBeta(int depth, int alpha, int beta, int ply) {
+	pvLength[ply] = 0;
+	nodes++;
+	if (stopped || Thread.currentThread().isInterrupted()) {
+	    stopped = true;
+	    return 0;
+	}
+	if (limitReached || isLimitReached()) {
+	    /**
+	     * Unlike stop, a limit only ends the current search, so the next one starts with limitReached cleared.
+	     **/
+	    limitReached = true;
+	    return 0;
+	}
+	if (ply > 0 && board.isRepetitionOrFiftyMoves()) {
+	    return 0;
+	}
+	if (depth <= 0 || ply >= MAX_PLY - 1) {
+	    nodes--;
+	    return quiescence(alpha, beta, ply);
+	}
+	long hash = board.getHash();
+	long entry = transpositionTable.probe(hash);
+	if (ply > 0 && entry != TranspositionTable.NONE && TranspositionTable.depth(entry) >= depth) {
+	    int stored = scoreFromTable(TranspositionTable.score(entry), ply);
+	    int bound = TranspositionTable.bound(entry);
+	    if (stored >= beta && bound != TranspositionTable.UPPER_BOUND ||
+		stored <= alpha && bound != TranspositionTable.LOWER_BOUND) {
+		return stored;
+	    }
+	}
+	int originalAlpha = alpha;
+	int count = 0;
+	if (moveOrdering) {
+	    movePickers[ply].reset(TranspositionTable.move(entry), killers[ply][0], killers[ply][1]);
+	}
+	else {
+	    count = board.generateLegalMoves(moveLists[ply]);
+	}
+	int searched = 0;
+	int picked = 0;
+	int bestMove = Move.NONE;
+	for (int move = nextMove(ply, picked++, count); move != Move.NONE; move = nextMove(ply, picked++, count)) {
+	    if (ply == 0 && isExcludedRootMove(move)) {
+		continue;
+	    }
+	    board.makeMove(move);
+	    int score = -alphaBeta(depth - 1, -beta, -alpha, ply + 1);
+	    board.unmakeMove(move);
+	    searched++;
+	    if (stopped || limitReached) {
+		return 0;
+	    }
+	    if (score > alpha) {
+		alpha = score;
+		bestMove = move;
+		pvTable[ply][0] = move;
+		System.arraycopy(pvTable[ply + 1], 0, pvTable[ply], 1, pvLength[ply + 1]);
+		pvLength[ply] = pvLength[ply + 1] + 1;
+		if (alpha >= beta) {
+		    if (!board.isTactical(move)) {
+			rememberCutoff(move, depth, ply);
+		    }
+		    break;
+		}
+	    }
+	}
+	if (searched == 0) {
+	    return board.isInCheck() ? -MATE_SCORE + ply : 0;
+	}
+	if (ply > 0 || excludedCount == 0) {
+	    int bound = alpha >= beta ? TranspositionTable.LOWER_BOUND :
+			alpha > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER_BOUND;
+	    transpositionTable.store(hash, bestMove != Move.NONE ? bestMove : TranspositionTable.move(entry), depth,
+				     scoreToTable(alpha, ply), bound);
+	}
+	return alpha;
+    }
+
+    private static int scoreToTable(int score, int ply) {
+	/**
+	 * Stores a mate score as the distance to mate from the node instead of from the root, so it is right wherever
+	 * the position comes up again.
+	 **/
+	if (score > MATE_SCORE - MAX_PLY) {
+	    return score + ply;
+	}
+	if (score < -MATE_SCORE + MAX_PLY) {
+	    return score - ply;
+	}
+	return score;
+    }
+
+    private static int scoreFromTable(int score, int ply) {
+	if (score > MATE_SCORE - MAX_PLY) {
+	    return score - ply;
+	}
+	if (score < -MATE_SCORE + MAX_PLY) {
+	    return score + ply;
+	}
+	return score;
+    }
+
+    private boolean isLimitReached() {
+	/**
+	 * Compares the nodes and the time with the limits, once every thousand nodes or so.
+	 **/
+	if (!limitsActive || nodes < nextLimitCheck) {
+	    return false;
+	}
+	nextLimitCheck = nodes + LIMIT_CHECK_INTERVAL;
+	return nodes >= nodeLimit || System.currentTimeMillis() >= deadline;
+    }
+
+    private int nextMove(int ply, int picked, int count) {
+	if (moveOrdering) {
+	    return movePickers[ply].next();
+	}
+	return picked < count ? moveLists[ply][picked] : Move.NONE;
+    }
+
+    private void rememberCutoff(int move, int depth, int ply) {
+	/**
+	 * Makes the quiet move the first killer move of the ply and raises its history score, more for deeper searches.
+	 * The history scores are halved when one of them grows too large, so old results count less than new ones.
+	 **/
+	if (killers[ply][0] != move) {
+	    killers[ply][1] = killers[ply][0];
+	    killers[ply][0] = move;
+	}
+	int[] sideHistory = history[board.isWhiteToMove() ? 0 : 1];
+	sideHistory[MovePicker.historyIndex(move)] += depth * depth;
+	if (sideHistory[MovePicker.historyIndex(move)] > HISTORY_LIMIT) {
+	    for (int[] scores : history) {
+		for (int i = 0; i < scores.length; i++) {
+		    scores[i] /= 2;
+		}
+	    }
+	}
+    }
+
+    private int quiescence(int alpha, int beta, int ply) {
+	/**
+	 * Searches only captures and promotions. The player to move may also stand pat on the static evaluation,
+	 * unless the king is checked, in which case every legal move is searched.
+	 **/
+	pvLength[ply] = 0;
+	nodes++;
+	if (stopped || limitReached) {
+	    return 0;
+	}
+	if (ply >= MAX_PLY - 1) {
+	    return board.evaluate();
+	}
+	boolean inCheck = board.isInCheck();
+	int[] moves = moveLists[ply];
+	int count;
+	if (inCheck) {
+	    count = board.generateLegalMoves(moves);
+	    if (count == 0) {
+		return -MATE_SCORE + ply;
+	    }
+	}
+	else {
+	    int standPat = board.evaluate();
+	    if (standPat >= beta) {
+		return beta;
+	    }
+	    alpha = Math.max(alpha, standPat);
+	    count = selectCaptures(moves, board.generateTacticalMoves(moves), moveScores[ply]);
+	}
+	for (int i = 0; i < count; i++) {
+	    board.makeMove(moves[i]);
+	    int score = -quiescence(-beta, -alpha, ply + 1);
+	    board.unmakeMove(moves[i]);
+	    if (stopped || limitReached) {
+		return 0;
+	    }
+	    if (score > alpha) {
+		alpha = score;
+		pvTable[ply][0] = moves[i];
+		System.arraycopy(pvTable[ply + 1], 0, pvTable[ply], 1, pvLength[ply + 1]);
+		pvLength[ply] = pvLength[ply + 1] + 1;
+		if (alpha >= beta) {
+		    break;
+		}
+	    }
+	}
+	return alpha;
+    }
+
+    private int selectCaptures(int[] moves, int count, int[] scores) {
+	/**
+	 * Scores the captures by their static exchange value, drops those that lose material unless they promote,
+	 * and sorts the rest with the best exchange first. Returns how many moves are left.
+	 **/
+	int kept = 0;
+	for (int i = 0; i < count; i++) {
+	    int exchange = board.staticExchange(moves[i]);
+	    if (exchangePruning && exchange < 0 && Move.promotion(moves[i]) == PieceCode.EMPTY) {
+		continue;
+	    }
+	    int move = moves[i];
+	    int position = kept++;
+	    while (position > 0 && scores[position - 1] < exchange) {
+		moves[position] = moves[position - 1];
+		scores[position] = scores[position - 1];
+		position--;
+	    }
+	    moves[position] = move;
+	    scores[position] = exchange;
+	}
+	return kept;
+    }
+}
@@ -0,0 +1,48 @@
+package se.liu.chessGame.engine;
+
+/**
+ * Helper methods for the square numbering used by the engine.
+ * A square is numbered y * 8 + x with the same y and x as on the ChessBoard,
+ * so square 0 is the top left corner of black's back row (a8) and square 63 is h1.
+ */
+
+public final class Square
+{
+    public static final int BOARD_LENGTH = 8;
+    public static final int COUNT = BOARD_LENGTH * BOARD_LENGTH;
+    public static final int NONE = -1;
+
+    private Square() {}
+
+    public static int of(int y, int x) {
+	return y * BOARD_LENGTH + x;
+    }
+
+    public static int y(int square) {
+	return square >>> 3;
+    }
+
+    public static int x(int square) {
+	return square & (BOARD_LENGTH - 1);
+    }
+
+    public static boolean isOnBoard(int y, int x) {
+	return y >= 0 && y < BOARD_LENGTH && x >= 0 && x < BOARD_LENGTH;
+    }
+
+    public static String name(int square) {
+	return "" + (char) ('a' + x(square)) + (char) ('0' + BOARD_LENGTH - y(square));
+    }
+
+    public static int parse(String name) {
+	/**
+	 * Returns the square of a name like "e4", or NONE if the name is not a square.
+	 **/
+	if (name.length() != 2) {
+	    return NONE;
+	}
+	int x = name.charAt(0) - 'a';
+	int y = BOARD_LENGTH - (name.charAt(1) - '0');
+	return isOnBoard(y, x) ? of(y, x) : NONE;
+    }
+}
@@ -0,0 +1,63 @@
+package se.liu.chessGame.engine;
+
+/**
+ * Decides how long the engine may think about one move when it plays on a clock.
+ * The remaining time is split over the moves still to come, and the increment and delay are added since they come
+ * back with every move. That gives the optimum time, which the search aims at, and a larger maximum, at which it is
+ * stopped in the middle of an iteration. A new iteration of the iterative deepening is only started if the optimum is
+ * not used up and the iteration is expected to end before the maximum, judged by the time the last one took, since an
+ * iteration that is stopped halfway was searched for nothing.
+ * The maximum never takes more than a part of the remaining time, less a margin for passing the move to the clock,
+ * so the engine does not lose on time.
+ */
+
+public class TimeManager
+{
+    public static final int DEFAULT_MOVES_TO_GO = 30;
+    public static final long MOVE_OVERHEAD_MILLIS = 50;
+
+    private static final int MAXIMUM_FACTOR = 5;
+    private static final int MAXIMUM_SHARE = 3;
+    private static final int ITERATION_GROWTH = 2;
+
+    private final long optimumMillis;
+    private final long maximumMillis;
+
+    private TimeManager(final long optimumMillis, final long maximumMillis) {
+	this.optimumMillis = optimumMillis;
+	this.maximumMillis = maximumMillis;
+    }
+
+    public static TimeManager fixed(long millis) {
+	/**
+	 * Thinks for about the given time on every move, and never longer.
+	 **/
+	return new TimeManager(millis, millis);
+    }
+
+    public static TimeManager forClock(long remainingMillis, long incrementMillis, long delayMillis, int movesToGo) {
+	/**
+	 * Splits the remaining time of the player to move over movesToGo moves. The time used within the delay is not
+	 * taken from the clock, so the whole delay can be used on top of the maximum share of the remaining time.
+	 **/
+	long usable = Math.max(0, remainingMillis - MOVE_OVERHEAD_MILLIS);
+	long optimum = usable / Math.max(1, movesToGo) + incrementMillis + delayMillis;
+	long maximum = Math.max(1, Math.min(optimum * MAXIMUM_FACTOR, usable / MAXIMUM_SHARE + delayMillis));
+	return new TimeManager(Math.min(optimum, maximum), maximum);
+    }
+
+    public long getOptimumMillis() {
+	return optimumMillis;
+    }
+
+    public long getMaximumMillis() {
+	return maximumMillis;
+    }
+
+    public boolean canStartIteration(long elapsedMillis, long lastIterationMillis) {
+	/**
+	 * Checks if the next iteration is worth starting after elapsedMillis, when the last one took lastIterationMillis.
+	 **/
+	return elapsedMillis < optimumMillis && elapsedMillis + lastIterationMillis * ITERATION_GROWTH <= maximumMillis;
+    }
+}
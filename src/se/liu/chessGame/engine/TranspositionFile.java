@@ -0,0 +1,172 @@
+package se.liu.chessGame.engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps a TranspositionTable in a memory-mapped file, so the moves and scores of earlier sessions are still there
+ * when the program starts again and the analysis of a position seen before reaches its depth much sooner.
+ * The file starts with a header holding a magic number, the format version, the size of the table, a signature of the
+ * Zobrist keys and the evaluation, and a CRC32 checksum of the entries. A file that does not match, or whose checksum is wrong, is
+ * emptied and started over. The checksum is only written when the file is closed, and the header is marked as open
+ * until then, so the file of a program that crashed is also started over.
+ * The first process to open the file locks it and writes to it. Any other process that opens it while it is locked
+ * gets a table of its own on the heap that also reads the entries of the file, but never writes to it.
+ */
+
+public class TranspositionFile implements Closeable
+{
+    private static final long MAGIC = 0x4348455353545431L;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+    private static final int VERSION_OFFSET = 8;
+    private static final int SIZE_BITS_OFFSET = 12;
+    private static final int SIGNATURE_OFFSET = 16;
+    private static final int CHECKSUM_OFFSET = 24;
+    private static final int STATE_OFFSET = 32;
+    private static final int STATE_CLOSED = 0;
+    private static final int STATE_OPEN = 1;
+
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final MappedByteBuffer map;
+    private final TranspositionTable table;
+    private final boolean restored;
+
+    private TranspositionFile(final FileChannel channel, final FileLock lock, final MappedByteBuffer map,
+			      final TranspositionTable table, final boolean restored)
+    {
+	this.channel = channel;
+	this.lock = lock;
+	this.map = map;
+	this.table = table;
+	this.restored = restored;
+    }
+
+    public static TranspositionFile open(Path path, int sizeBits) throws IOException {
+	/**
+	 * Opens the file, creating it if it does not exist, for a table of 2 to the power of sizeBits slots.
+	 **/
+	long fileSize = HEADER_SIZE + (2L * Long.BYTES << sizeBits);
+	FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+					       StandardOpenOption.WRITE);
+	try {
+	    FileLock lock;
+	    try {
+		lock = channel.tryLock();
+	    } catch (OverlappingFileLockException e) {
+		lock = null;
+	    }
+	    if (lock == null) {
+		return openShared(channel, sizeBits, fileSize);
+	    }
+	    if (channel.size() != fileSize) {
+		channel.truncate(0);
+	    }
+	    MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+	    boolean restored = matches(map, sizeBits) && map.getInt(STATE_OFFSET) == STATE_CLOSED &&
+			       map.getLong(CHECKSUM_OFFSET) == checksum(map);
+	    TranspositionTable table = new TranspositionTable(entries(map), null);
+	    if (!restored) {
+		table.clear();
+		map.putLong(0, MAGIC);
+		map.putInt(VERSION_OFFSET, VERSION);
+		map.putInt(SIZE_BITS_OFFSET, sizeBits);
+		map.putLong(SIGNATURE_OFFSET, signature());
+	    }
+	    map.putInt(STATE_OFFSET, STATE_OPEN);
+	    map.force();
+	    return new TranspositionFile(channel, lock, map, table, restored);
+	} catch (IOException | RuntimeException e) {
+	    channel.close();
+	    throw e;
+	}
+    }
+
+    private static TranspositionFile openShared(FileChannel channel, int sizeBits, long fileSize) throws IOException {
+	/**
+	 * Opens the file of another process read-only. Its checksum can not be checked while it is being written, so
+	 * only the header has to match. An entry that is being written while it is read does not match its key.
+	 **/
+	MappedByteBuffer map = null;
+	if (channel.size() == fileSize) {
+	    map = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+	    if (!matches(map, sizeBits)) {
+		map = null;
+	    }
+	}
+	TranspositionTable table = new TranspositionTable(LongBuffer.wrap(new long[2 << sizeBits]),
+							  map != null ? entries(map) : null);
+	return new TranspositionFile(channel, null, map, table, map != null);
+    }
+
+    public TranspositionTable getTable() {
+	return table;
+    }
+
+    public boolean isRestored() {
+	/**
+	 * Tells if the table starts with the entries of the file, rather than empty because the file was new or did not match.
+	 **/
+	return restored;
+    }
+
+    public boolean isShared() {
+	/**
+	 * Tells if another process writes the file, so the table of this one only reads it.
+	 **/
+	return lock == null;
+    }
+
+    @Override public void close() throws IOException {
+	/**
+	 * Writes the checksum and marks the file as closed. The table must not be used by any search any more.
+	 **/
+	try {
+	    if (lock != null) {
+		map.force();
+		map.putLong(CHECKSUM_OFFSET, checksum(map));
+		map.putInt(STATE_OFFSET, STATE_CLOSED);
+		map.force();
+		lock.release();
+	    }
+	} finally {
+	    channel.close();
+	}
+    }
+
+    private static boolean matches(ByteBuffer map, int sizeBits) {
+	return map.getLong(0) == MAGIC && map.getInt(VERSION_OFFSET) == VERSION && map.getInt(SIZE_BITS_OFFSET) == sizeBits &&
+	       map.getLong(SIGNATURE_OFFSET) == signature();
+    }
+
+    private static long signature() {
+	/**
+	 * Changes when the Zobrist keys change, since the hashes in an older file would then mean other positions, and
+	 * when the evaluation changes, since the searches cut nodes on the stored scores. The network, if one is used,
+	 * is part of the evaluation too.
+	 **/
+	NeuralNetwork network = NeuralNetwork.getDefault();
+	long evaluation = Evaluator.fingerprint() * 31 + (network != null ? network.fingerprint() : 0);
+	return Zobrist.of(Position.startPosition()) ^ Zobrist.side() ^ evaluation;
+    }
+
+    private static LongBuffer entries(ByteBuffer map) {
+	return map.duplicate().position(HEADER_SIZE).slice().asLongBuffer();
+    }
+
+    private static long checksum(ByteBuffer map) {
+	CRC32 crc = new CRC32();
+	crc.update(map.duplicate().position(HEADER_SIZE));
+	return crc.getValue();
+    }
+}
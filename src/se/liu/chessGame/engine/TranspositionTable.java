@@ -0,0 +1,106 @@
+package se.liu.chessGame.engine;
+
+import java.nio.LongBuffer;
+
+/**
+ * Remembers what the search found in each position, keyed by the Zobrist hash of the position: the best move, the
+ * depth searched and the score with the kind of bound it is. When the search comes back to a position, at the next
+ * depth or through another move order, it tries that move first, and a score from a deep enough search that already
+ * falls outside the window of the node saves searching it again.
+ * The table has a fixed number of slots and a new entry simply replaces whatever was stored in its slot.
+ * Every slot is two longs, the data packed into one and the hash xor the data in the other, so a slot that was
+ * half written by another thread or process is seen as belonging to another position. The entries can live on the heap
+ * as well as in a memory-mapped TranspositionFile.
+ * A table can also look in a second, shared table that it never writes to, when its own slot holds nothing.
+ */
+
+public class TranspositionTable
+{
+    public static final int DEFAULT_SIZE_BITS = 20;
+    public static final int EXACT = 0;
+    public static final int LOWER_BOUND = 1;
+    public static final int UPPER_BOUND = 2;
+    public static final long NONE = 0;
+
+    private static final int MOVE_MASK = 0xFFFF;
+    private static final int DEPTH_SHIFT = 16;
+    private static final int DEPTH_MASK = 0xFF;
+    private static final int BOUND_SHIFT = 24;
+    private static final int BOUND_MASK = 3;
+    private static final int SCORE_SHIFT = 32;
+
+    private final LongBuffer entries;
+    private final LongBuffer sharedEntries;
+    private final int mask;
+
+    public TranspositionTable(final int sizeBits) {
+	this(LongBuffer.wrap(new long[2 << sizeBits]), null);
+    }
+
+    TranspositionTable(final LongBuffer entries, final LongBuffer sharedEntries) {
+	/**
+	 * Uses the given entries, two longs per slot for a power of two of slots. The shared entries, if given,
+	 * must be of the same size.
+	 **/
+	this.entries = entries;
+	this.sharedEntries = sharedEntries;
+	this.mask = entries.capacity() / 2 - 1;
+    }
+
+    public void clear() {
+	/**
+	 * Forgets the entries of this table. The shared table, if there is one, is left as it is.
+	 **/
+	for (int i = 0; i < entries.capacity(); i++) {
+	    entries.put(i, 0);
+	}
+    }
+
+    public void store(long key, int move, int depth, int score, int bound) {
+	long data = move | (long) depth << DEPTH_SHIFT | (long) bound << BOUND_SHIFT | (long) score << SCORE_SHIFT;
+	int slot = 2 * ((int) key & mask);
+	entries.put(slot, key ^ data);
+	entries.put(slot + 1, data);
+    }
+
+    public long probe(long key) {
+	/**
+	 * Returns the entry stored for the position, or NONE if the slot holds another position or nothing.
+	 * The parts of the entry are read with move, depth, score and bound.
+	 **/
+	int slot = 2 * ((int) key & mask);
+	long entry = entryOf(entries, slot, key);
+	if (entry == NONE && sharedEntries != null) {
+	    entry = entryOf(sharedEntries, slot, key);
+	}
+	return entry;
+    }
+
+    public int probeMove(long key) {
+	/**
+	 * Returns the move stored for the position, or Move.NONE if there is none.
+	 **/
+	return move(probe(key));
+    }
+
+    public static int move(long entry) {
+	return (int) entry & MOVE_MASK;
+    }
+
+    public static int depth(long entry) {
+	return (int) (entry >>> DEPTH_SHIFT) & DEPTH_MASK;
+    }
+
+    public static int score(long entry) {
+	return (int) (entry >> SCORE_SHIFT);
+    }
+
+    public static int bound(long entry) {
+	return (int) (entry >>> BOUND_SHIFT) & BOUND_MASK;
+    }
+
+    private static long entryOf(LongBuffer buffer, int slot, long key) {
+	long data = buffer.get(slot + 1);
+	return (buffer.get(slot) ^ data) == key ? data : NONE;
+    }
+}
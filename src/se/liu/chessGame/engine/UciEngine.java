@@ -0,0 +1,310 @@
+package se.liu.chessGame.engine;
+
+import se.liu.chessGame.ExceptionLogger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+
+/**
+ * Speaks the Universal Chess Interface over a pair of streams, so the engine can be run by chess programs and match
+ * tools without the Swing frame. The commands are read on the calling thread while a search runs on its own thread,
+ * which lets stop and isready be answered during a search.
+ * Every completed depth is reported as an info line with the score, the nodes, the speed and the principal variation,
+ * and the search always ends with a bestmove line.
+ * One SearchBoard and one Searcher are kept for the whole session, so the hash moves, killer moves and history scores
+ * of one move help the search of the next. They are only forgotten on ucinewgame.
+ * The game has no castling and no en passant, so the castling and en passant fields of a FEN are ignored.
+ */
+
+public class UciEngine
+{
+    private static final String ENGINE_NAME = "TDDD78 Chess";
+    private static final String ENGINE_AUTHOR = "TDDD78 chess project";
+    private static final int MAX_LINES = 64;
+
+    private final BufferedReader input;
+    private final PrintStream output;
+    private final ExecutorService executor;
+    private Position position = Position.startPosition();
+    private PositionHistory history = new PositionHistory();
+    private final SearchBoard searchBoard = new SearchBoard(Position.startPosition());
+    private final Searcher searcher = new Searcher(searchBoard, 0);
+    private int lineCount = 1;
+    private Future<?> currentSearch = null;
+    private CountDownLatch stopSignal = null;
+
+    public UciEngine(final InputStream input, final PrintStream output) {
+	this.input = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+	this.output = output;
+	this.executor = Executors.newSingleThreadExecutor(runnable -> {
+	    Thread thread = new Thread(runnable, "uci-search");
+	    thread.setDaemon(true);
+	    return thread;
+	});
+	history.push(Zobrist.of(position), true);
+    }
+
+    public void run() throws IOException {
+	/**
+	 * Handles commands until quit is received or the input ends.
+	 **/
+	String line;
+	while ((line = input.readLine()) != null) {
+	    String[] tokens = line.trim().split("\\s+");
+	    if (tokens[0].equals("quit")) {
+		break;
+	    }
+	    handleCommand(tokens);
+	}
+	stopSearch();
+	executor.shutdownNow();
+    }
+
+    private void handleCommand(String[] tokens) {
+	switch (tokens[0]) {
+	    case "uci":
+		send("id name " + ENGINE_NAME);
+		send("id author " + ENGINE_AUTHOR);
+		send("option name MultiPV type spin default 1 min 1 max " + MAX_LINES);
+		send("uciok");
+		break;
+	    case "isready":
+		send("readyok");
+		break;
+	    case "ucinewgame":
+		stopSearch();
+		searcher.clear();
+		setPosition(Position.startPosition());
+		break;
+	    case "position":
+		stopSearch();
+		handlePosition(tokens);
+		break;
+	    case "go":
+		stopSearch();
+		handleGo(tokens);
+		break;
+	    case "stop":
+		stopSearch();
+		break;
+	    case "setoption":
+		handleSetOption(tokens);
+		break;
+	    case "":
+	    case "debug":
+	    case "register":
+		break;
+	    default:
+		send("info string Unknown command " + tokens[0]);
+	}
+    }
+
+    private void handleSetOption(String[] tokens) {
+	/**
+	 * Handles "setoption name MultiPV value <lines>", the only option. The value is used from the next go on.
+	 **/
+	if (tokens.length == 5 && tokens[1].equals("name") && tokens[2].equalsIgnoreCase("MultiPV") && tokens[3].equals("value")) {
+	    try {
+		lineCount = Math.max(1, Math.min(MAX_LINES, Integer.parseInt(tokens[4])));
+	    } catch (NumberFormatException e) {
+		send("info string Bad MultiPV value " + tokens[4]);
+	    }
+	}
+	else {
+	    send("info string Unknown option " + String.join(" ", Arrays.copyOfRange(tokens, 1, tokens.length)));
+	}
+    }
+
+    private void handlePosition(String[] tokens) {
+	/**
+	 * Sets up "position startpos" or "position fen <fen>", followed by "moves" and the moves played since then.
+	 **/
+	int movesIndex = Arrays.asList(tokens).indexOf("moves");
+	int setupEnd = movesIndex >= 0 ? movesIndex : tokens.length;
+	try {
+	    if (tokens.length > 1 && tokens[1].equals("fen")) {
+		setPosition(Position.fromFen(String.join(" ", Arrays.copyOfRange(tokens, 2, setupEnd))));
+	    }
+	    else {
+		setPosition(Position.startPosition());
+	    }
+	} catch (IllegalArgumentException e) {
+	    send("info string " + e.getMessage());
+	    return;
+	}
+	if (movesIndex < 0) {
+	    return;
+	}
+	for (int i = movesIndex + 1; i < tokens.length; i++) {
+	    int move = parseMove(tokens[i]);
+	    if (move == Move.NONE) {
+		send("info string Illegal move " + tokens[i] + " in " + position.toFen());
+		return;
+	    }
+	    boolean irreversible = position.getPieceAt(Move.to(move)) != PieceCode.EMPTY ||
+				   PieceCode.type(position.getPieceAt(Move.from(move))) == PieceCode.PAWN;
+	    position = position.play(move);
+	    history.push(Zobrist.of(position), irreversible);
+	}
+    }
+
+    private void setPosition(Position newPosition) {
+	position = newPosition;
+	history = new PositionHistory();
+	history.push(Zobrist.of(position), true);
+    }
+
+    private int parseMove(String text) {
+	/**
+	 * Returns the legal move of the current position written as text, or Move.NONE if there is no such move.
+	 **/
+	int[] moves = new int[SearchBoard.MAX_MOVES];
+	int count = new SearchBoard(position, null).generateLegalMoves(moves);
+	for (int i = 0; i < count; i++) {
+	    if (Move.toUci(moves[i]).equals(text)) {
+		return moves[i];
+	    }
+	}
+	return Move.NONE;
+    }
+
+    private void handleGo(String[] tokens) {
+	/**
+	 * Starts a search limited by depth, nodes, movetime or the clock of the player to move,
+	 * or an infinite search that only ends with stop.
+	 **/
+	int depth = AnalysisService.UNLIMITED_DEPTH;
+	long nodes = Long.MAX_VALUE;
+	long moveTime = Long.MAX_VALUE;
+	long time = Long.MAX_VALUE;
+	long increment = 0;
+	int movesToGo = TimeManager.DEFAULT_MOVES_TO_GO;
+	boolean infinite = false;
+	boolean whiteToMove = position.isWhiteToMove();
+	try {
+	    for (int i = 1; i < tokens.length; i++) {
+		switch (tokens[i]) {
+		    case "depth":
+			depth = Math.min(Integer.parseInt(tokens[++i]), AnalysisService.UNLIMITED_DEPTH);
+			break;
+		    case "nodes":
+			nodes = Long.parseLong(tokens[++i]);
+			break;
+		    case "movetime":
+			moveTime = Long.parseLong(tokens[++i]);
+			break;
+		    case "wtime":
+		    case "btime":
+			if (tokens[i].equals(whiteToMove ? "wtime" : "btime")) {
+			    time = Long.parseLong(tokens[i + 1]);
+			}
+			i++;
+			break;
+		    case "winc":
+		    case "binc":
+			if (tokens[i].equals(whiteToMove ? "winc" : "binc")) {
+			    increment = Long.parseLong(tokens[i + 1]);
+			}
+			i++;
+			break;
+		    case "movestogo":
+			movesToGo = Math.max(1, Integer.parseInt(tokens[++i]));
+			break;
+		    case "infinite":
+			infinite = true;
+			break;
+		    default:
+			break;
+		}
+	    }
+	} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+	    send("info string Bad go command: " + e.getMessage());
+	    return;
+	}
+	searchBoard.setPosition(position);
+	searchBoard.setGameHistory(history);
+	searcher.clearStop();
+	searcher.setNodeLimit(nodes);
+	searcher.setLineCount(lineCount);
+	if (moveTime != Long.MAX_VALUE) {
+	    searcher.setTimeLimit(Math.max(1, moveTime - TimeManager.MOVE_OVERHEAD_MILLIS));
+	}
+	else if (time != Long.MAX_VALUE && !infinite) {
+	    searcher.setTimeManager(TimeManager.forClock(time, increment, 0, movesToGo));
+	}
+	else {
+	    searcher.setTimeLimit(Long.MAX_VALUE);
+	}
+	final int maxDepth = depth;
+	final boolean waitForStop = infinite;
+	final CountDownLatch signal = new CountDownLatch(1);
+	stopSignal = signal;
+	currentSearch = executor.submit(() -> {
+	    int bestMove = Move.NONE;
+	    try {
+		AnalysisResult result = searcher.search(maxDepth, this::sendInfo);
+		bestMove = result != null ? result.getBestMove() : Move.NONE;
+		if (waitForStop) {
+		    signal.await();
+		}
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+	    } catch (RuntimeException e) {
+		ExceptionLogger.getExceptionLogger().logException(Level.SEVERE, "The UCI search failed", e);
+	    }
+	    if (bestMove == Move.NONE) {
+		int[] moves = new int[SearchBoard.MAX_MOVES];
+		if (new SearchBoard(position, null).generateLegalMoves(moves) > 0) {
+		    bestMove = moves[0];
+		}
+	    }
+	    send("bestmove " + (bestMove == Move.NONE ? "0000" : Move.toUci(bestMove)));
+	});
+    }
+
+    private void stopSearch() {
+	/**
+	 * Stops the running search and waits until it has sent its bestmove.
+	 **/
+	if (currentSearch == null) {
+	    return;
+	}
+	searcher.stop();
+	stopSignal.countDown();
+	try {
+	    currentSearch.get();
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	} catch (ExecutionException e) {
+	    ExceptionLogger.getExceptionLogger().logException(Level.SEVERE, "The UCI search failed", e);
+	}
+	currentSearch = null;
+	stopSignal = null;
+    }
+
+    private void sendInfo(AnalysisResult result) {
+	String score = result.isMateScore() ? "mate " + result.getMateInMoves() : "cp " + result.getScore();
+	String info = "info depth " + result.getDepth() + " multipv " + result.getLineNumber() + " score " + score +
+		      " nodes " + result.getNodes() + " nps " + result.getNodesPerSecond() + " time " + result.getElapsedMillis();
+	if (result.getPrincipalVariation().length > 0) {
+	    info += " pv " + result.getPrincipalVariationText();
+	}
+	send(info);
+    }
+
+    private synchronized void send(String line) {
+	output.println(line);
+	output.flush();
+    }
+}
@@ -0,0 +1,49 @@
+package se.liu.chessGame.engine;
+
+import java.util.Random;
+
+/**
+ * Random 64 bit keys for hashing positions. The hash of a position is the exclusive or of the key of every piece on
+ * its square and the side key if black is to move, so moving a piece only changes the hash by two or three keys.
+ * The keys come from a fixed seed so a hash means the same thing on every run.
+ */
+
+public final class Zobrist
+{
+    private static final long KEY_SEED = 19920425L;
+    private static final long[][] PIECE_KEYS = new long[PieceCode.CODE_COUNT][Square.COUNT];
+    private static final long SIDE_KEY;
+
+    static {
+	Random random = new Random(KEY_SEED);
+	for (int code = 0; code < PieceCode.CODE_COUNT; code++) {
+	    for (int square = 0; square < Square.COUNT; square++) {
+		PIECE_KEYS[code][square] = random.nextLong();
+	    }
+	}
+	SIDE_KEY = random.nextLong();
+    }
+
+    private Zobrist() {}
+
+    public static long piece(int code, int square) {
+	return PIECE_KEYS[code][square];
+    }
+
+    public static long side() {
+	return SIDE_KEY;
+    }
+
+    public static long of(Position position) {
+	/**
+	 * Computes the hash of a position from scratch.
+	 **/
+	long hash = position.isWhiteToMove() ? 0 : SIDE_KEY;
+	for (int square = 0; square < Square.COUNT; square++) {
+	    if (position.getPieceAt(square) != PieceCode.EMPTY) {
+		hash ^= PIECE_KEYS[position.getPieceAt(square)][square];
+	    }
+	}
+	return hash;
+    }
+}
@@ -0,0 +1,252 @@
+package se.liu.chessGame.match;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import se.liu.chessGame.ExceptionLogger;
+import se.liu.chessGame.GameAdjudicator;
+import se.liu.chessGame.GameStatus;
+import se.liu.chessGame.engine.Move;
+import se.liu.chessGame.engine.PieceCode;
+import se.liu.chessGame.engine.Position;
+import se.liu.chessGame.engine.PositionHistory;
+import se.liu.chessGame.engine.SearchBoard;
+import se.liu.chessGame.engine.Zobrist;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Plays two engines against each other over the Universal Chess Interface to find out if a change made the engine
+ * stronger or weaker. Every opening of the suite is played twice with the colours swapped, and as many games as there
+ * are cores run at the same time, each worker with its own pair of engine processes.
+ * The games are judged by GameAdjudicator, the same rules as in the window. After every game a sequential probability
+ * ratio test decides if the result is already clear, and then the match stops early.
+ * By default both engines are this build started with --uci, so only the engines that differ need to be given.
+ */
+
+public class MatchRunner
+{
+    private static final String DEFAULT_LIMITS = "movetime 100";
+    private static final int DEFAULT_GAMES = 1000;
+    private static final double DEFAULT_ELO0 = 0;
+    private static final double DEFAULT_ELO1 = 5;
+    private static final double ERROR_RATE = 0.05;
+    private static final int MAX_GAME_PLIES = 600;
+
+    private final List<String> firstEngine;
+    private final List<String> secondEngine;
+    private final List<String> openings;
+    private final int maxGames;
+    private final int concurrency;
+    private final String limits;
+    private final Sprt sprt;
+
+    private final AtomicInteger nextGame = new AtomicInteger(0);
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+    private int wins = 0;
+    private int draws = 0;
+    private int losses = 0;
+    private long firstNodes = 0;
+    private long firstMillis = 0;
+    private long secondNodes = 0;
+    private long secondMillis = 0;
+
+    public MatchRunner(final List<String> firstEngine, final List<String> secondEngine, final List<String> openings,
+		       final int maxGames, final int concurrency, final String limits, final Sprt sprt)
+    {
+	this.firstEngine = firstEngine;
+	this.secondEngine = secondEngine;
+	this.openings = openings;
+	this.maxGames = maxGames;
+	this.concurrency = concurrency;
+	this.limits = limits;
+	this.sprt = sprt;
+    }
+
+    public static void addOptions(Options options) {
+	options.addOption(null, "match", false, "play two engines against each other and test which one is stronger");
+	options.addOption(null, "engine1", true, "command that starts the first engine, this build by default");
+	options.addOption(null, "engine2", true, "command that starts the second engine, this build by default");
+	options.addOption(null, "openings", true, "file with one FEN per line to start the games from");
+	options.addOption(null, "games", true, "the largest number of games to play, " + DEFAULT_GAMES + " by default");
+	options.addOption(null, "concurrency", true, "number of games played at the same time, the number of cores by default");
+	options.addOption(null, "limits", true, "arguments of the go command for every move, \"" + DEFAULT_LIMITS + "\" by default");
+	options.addOption(null, "elo0", true, "Elo difference of hypothesis H0, " + DEFAULT_ELO0 + " by default");
+	options.addOption(null, "elo1", true, "Elo difference of hypothesis H1, " + DEFAULT_ELO1 + " by default");
+    }
+
+    public static MatchRunner fromCommandLine(CommandLine commandLine) throws IOException {
+	/**
+	 * Creates the runner from the options added by addOptions. Throws NumberFormatException for a badly written number.
+	 **/
+	List<String> thisBuild = Arrays.asList(Paths.get(System.getProperty("java.home"), "bin", "java").toString(), "-cp",
+					       System.getProperty("java.class.path"), "se.liu.chessGame.ChessViewer", "--uci");
+	List<String> firstEngine = commandLine.hasOption("engine1") ? splitCommand(commandLine.getOptionValue("engine1")) : thisBuild;
+	List<String> secondEngine = commandLine.hasOption("engine2") ? splitCommand(commandLine.getOptionValue("engine2")) : thisBuild;
+	List<String> openings = commandLine.hasOption("openings") ?
+				Files.readAllLines(new File(commandLine.getOptionValue("openings")).toPath(), StandardCharsets.UTF_8) :
+				readDefaultOpenings();
+	openings.removeIf(line -> line.isBlank() || line.startsWith("#"));
+	int maxGames = Integer.parseInt(commandLine.getOptionValue("games", String.valueOf(DEFAULT_GAMES)));
+	int concurrency = Integer.parseInt(commandLine.getOptionValue("concurrency",
+								      String.valueOf(Runtime.getRuntime().availableProcessors())));
+	double elo0 = Double.parseDouble(commandLine.getOptionValue("elo0", String.valueOf(DEFAULT_ELO0)));
+	double elo1 = Double.parseDouble(commandLine.getOptionValue("elo1", String.valueOf(DEFAULT_ELO1)));
+	return new MatchRunner(firstEngine, secondEngine, openings, maxGames, Math.max(1, concurrency),
+			       commandLine.getOptionValue("limits", DEFAULT_LIMITS), new Sprt(elo0, elo1, ERROR_RATE, ERROR_RATE));
+    }
+
+    private static List<String> splitCommand(String command) {
+	return new ArrayList<>(Arrays.asList(command.trim().split("\\s+")));
+    }
+
+    private static List<String> readDefaultOpenings() throws IOException {
+	InputStream stream = ClassLoader.getSystemResourceAsStream("gameData/openings.txt");
+	if (stream == null) {
+	    throw new IOException("Resource not found");
+	}
+	List<String> openings = new ArrayList<>();
+	try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+	    String line;
+	    while ((line = reader.readLine()) != null) {
+		openings.add(line.trim());
+	    }
+	}
+	return openings;
+    }
+
+    public void run() throws InterruptedException {
+	/**
+	 * Plays the match on all workers and prints the result when it is decided or all games are played.
+	 **/
+	long startTime = System.nanoTime();
+	ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+	for (int worker = 0; worker < concurrency; worker++) {
+	    workers.submit(this::playGames);
+	}
+	workers.shutdown();
+	workers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+	double seconds = (System.nanoTime() - startTime) / 1.0e9;
+	synchronized (this) {
+	    int games = wins + draws + losses;
+	    System.out.printf("games %d (+%d =%d -%d) in %.1f s, %.2f games/s%n", games, wins, draws, losses, seconds,
+			      games / seconds);
+	    if (games > 0) {
+		double[] elo = Sprt.eloWithBounds(wins, draws, losses);
+		System.out.printf("Elo difference %.1f [%.1f, %.1f]%n", elo[0], elo[1], elo[2]);
+	    }
+	    System.out.printf("LLR %.2f [%.2f, %.2f] %s%n", sprt.logLikelihoodRatio(wins, draws, losses), sprt.getLowerBound(),
+			      sprt.getUpperBound(), sprt.decide(wins, draws, losses));
+	    System.out.printf("engine 1: %d nps, engine 2: %d nps%n", nodesPerSecond(firstNodes, firstMillis),
+			      nodesPerSecond(secondNodes, secondMillis));
+	}
+    }
+
+    private static long nodesPerSecond(long nodes, long millis) {
+	return millis > 0 ? nodes * 1000 / millis : 0;
+    }
+
+    private void playGames() {
+	/**
+	 * The loop of one worker. Game number n uses opening n / 2, and the first engine plays white in the even games.
+	 **/
+	try (UciClient first = new UciClient(firstEngine); UciClient second = new UciClient(secondEngine)) {
+	    int game;
+	    while (!finished.get() && (game = nextGame.getAndIncrement()) < maxGames) {
+		String opening = openings.get(game / 2 % openings.size());
+		boolean firstIsWhite = game % 2 == 0;
+		long firstNodesBefore = first.getTotalNodes();
+		long firstMillisBefore = first.getTotalMillis();
+		long secondNodesBefore = second.getTotalNodes();
+		long secondMillisBefore = second.getTotalMillis();
+		double whiteScore = playGame(opening, firstIsWhite ? first : second, firstIsWhite ? second : first);
+		recordResult(firstIsWhite ? whiteScore : 1 - whiteScore, first.getTotalNodes() - firstNodesBefore,
+			     first.getTotalMillis() - firstMillisBefore, second.getTotalNodes() - secondNodesBefore,
+			     second.getTotalMillis() - secondMillisBefore);
+	    }
+	} catch (IOException | RuntimeException e) {
+	    ExceptionLogger.getExceptionLogger().logException(Level.SEVERE, "A match worker stopped", e);
+	}
+    }
+
+    private double playGame(String startFen, UciClient white, UciClient black) throws IOException {
+	/**
+	 * Plays one game and returns the score of white: 1 for a win, 0.5 for a draw and 0 for a loss.
+	 * An engine that answers with an illegal move loses the game. A game that is still running after
+	 * MAX_GAME_PLIES plies is called a draw.
+	 **/
+	white.newGame();
+	black.newGame();
+	Position position = Position.fromFen(startFen);
+	PositionHistory history = new PositionHistory();
+	history.push(Zobrist.of(position), true);
+	List<String> moves = new ArrayList<>();
+	int[] legalMoves = new int[SearchBoard.MAX_MOVES];
+	while (moves.size() < MAX_GAME_PLIES) {
+	    boolean whiteToMove = position.isWhiteToMove();
+	    String answer = (whiteToMove ? white : black).bestMove(startFen, moves, limits);
+	    int count = new SearchBoard(position, null).generateLegalMoves(legalMoves);
+	    int move = Move.NONE;
+	    for (int i = 0; i < count; i++) {
+		if (Move.toUci(legalMoves[i]).equals(answer)) {
+		    move = legalMoves[i];
+		}
+	    }
+	    if (move == Move.NONE) {
+		return whiteToMove ? 0 : 1;
+	    }
+	    boolean irreversible = position.getPieceAt(Move.to(move)) != PieceCode.EMPTY ||
+				   PieceCode.type(position.getPieceAt(Move.from(move))) == PieceCode.PAWN;
+	    position = position.play(move);
+	    history.push(Zobrist.of(position), irreversible);
+	    moves.add(answer);
+	    GameStatus status = GameAdjudicator.adjudicate(position, history);
+	    if (status == GameStatus.WON) {
+		return whiteToMove ? 1 : 0;
+	    }
+	    if (status == GameStatus.DRAW) {
+		return 0.5;
+	    }
+	}
+	return 0.5;
+    }
+
+    private synchronized void recordResult(double firstScore, long addedFirstNodes, long addedFirstMillis,
+					   long addedSecondNodes, long addedSecondMillis)
+    {
+	if (finished.get()) {
+	    return;
+	}
+	if (firstScore > 0.5) {
+	    wins++;
+	}
+	else if (firstScore < 0.5) {
+	    losses++;
+	}
+	else {
+	    draws++;
+	}
+	firstNodes += addedFirstNodes;
+	firstMillis += addedFirstMillis;
+	secondNodes += addedSecondNodes;
+	secondMillis += addedSecondMillis;
+	if (sprt.decide(wins, draws, losses) != Sprt.Decision.CONTINUE) {
+	    finished.set(true);
+	}
+    }
+}
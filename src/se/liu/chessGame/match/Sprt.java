@@ -0,0 +1,100 @@
+package se.liu.chessGame.match;
+
+/**
+ * A sequential probability ratio test on the results of a match, which tells after every game whether there is
+ * already enough evidence to stop. Hypothesis H0 is that the first engine is elo0 stronger than the second,
+ * H1 that it is elo1 stronger. The log-likelihood ratio uses the normal approximation of the mean score,
+ * so draws are counted by their effect on the variance instead of being modelled separately.
+ * The test stops with H1 when the ratio passes the upper bound and with H0 when it passes the lower bound,
+ * which limits the chance of a wrong answer to alpha and beta.
+ */
+
+public class Sprt
+{
+    private static final double ELO_SCALE = 400.0;
+    private static final double CONFIDENCE_Z = 1.96;
+
+    private final double elo0;
+    private final double elo1;
+    private final double lowerBound;
+    private final double upperBound;
+
+    public enum Decision
+    {
+	CONTINUE, ACCEPT_H0, ACCEPT_H1
+    }
+
+    public Sprt(final double elo0, final double elo1, final double alpha, final double beta) {
+	this.elo0 = elo0;
+	this.elo1 = elo1;
+	this.lowerBound = Math.log(beta / (1 - alpha));
+	this.upperBound = Math.log((1 - beta) / alpha);
+    }
+
+    public double getLowerBound() {
+	return lowerBound;
+    }
+
+    public double getUpperBound() {
+	return upperBound;
+    }
+
+    public double logLikelihoodRatio(int wins, int draws, int losses) {
+	/**
+	 * Returns 0 before the first game and while every game has had the same result, since the variance of the score
+	 * is zero then and can not be estimated. Wins and draws alone, or losses and draws alone, are enough.
+	 **/
+	int games = wins + draws + losses;
+	if (games == 0) {
+	    return 0;
+	}
+	double score = score(wins, draws, losses);
+	double variance = variance(wins, draws, losses);
+	if (variance <= 0) {
+	    return 0;
+	}
+	double score0 = expectedScore(elo0);
+	double score1 = expectedScore(elo1);
+	return games * (score1 - score0) * (2 * score - score0 - score1) / (2 * variance);
+    }
+
+    public Decision decide(int wins, int draws, int losses) {
+	double ratio = logLikelihoodRatio(wins, draws, losses);
+	if (ratio >= upperBound) {
+	    return Decision.ACCEPT_H1;
+	}
+	if (ratio <= lowerBound) {
+	    return Decision.ACCEPT_H0;
+	}
+	return Decision.CONTINUE;
+    }
+
+    public static double score(int wins, int draws, int losses) {
+	return (wins + draws / 2.0) / (wins + draws + losses);
+    }
+
+    public static double[] eloWithBounds(int wins, int draws, int losses) {
+	/**
+	 * Returns the Elo difference the score corresponds to, and the lower and upper ends of its 95 % confidence interval.
+	 **/
+	int games = wins + draws + losses;
+	double score = score(wins, draws, losses);
+	double margin = CONFIDENCE_Z * Math.sqrt(variance(wins, draws, losses) / games);
+	return new double[] { elo(score), elo(score - margin), elo(score + margin) };
+    }
+
+    private static double variance(int wins, int draws, int losses) {
+	int games = wins + draws + losses;
+	double score = score(wins, draws, losses);
+	return (wins + draws / 4.0) / games - score * score;
+    }
+
+    private static double expectedScore(double elo) {
+	return 1 / (1 + Math.pow(10, -elo / ELO_SCALE));
+    }
+
+    private static double elo(double score) {
+	double clamped = Math.min(Math.max(score, 1.0e-6), 1 - 1.0e-6);
+	return -ELO_SCALE * Math.log10(1 / clamped - 1);
+    }
+}
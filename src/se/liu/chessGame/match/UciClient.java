@@ -0,0 +1,106 @@
+package se.liu.chessGame.match;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs an engine as a separate process and talks to it over the Universal Chess Interface.
+ * The engine is asked for one move at a time with the whole game sent as a start position and a list of moves.
+ * The nodes and the time of the last info line before every bestmove are added up, so the average speed of the
+ * engine over a match can be reported.
+ */
+
+public class UciClient implements AutoCloseable
+{
+    private final Process process;
+    private final BufferedReader fromEngine;
+    private final PrintStream toEngine;
+    private long totalNodes = 0;
+    private long totalMillis = 0;
+
+    public UciClient(final List<String> command) throws IOException {
+	this.process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+	this.fromEngine = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+	this.toEngine = new PrintStream(process.getOutputStream(), true, StandardCharsets.UTF_8);
+	send("uci");
+	waitFor("uciok");
+	send("isready");
+	waitFor("readyok");
+    }
+
+    public void newGame() throws IOException {
+	send("ucinewgame");
+	send("isready");
+	waitFor("readyok");
+    }
+
+    public String bestMove(String startFen, List<String> moves, String limits) throws IOException {
+	/**
+	 * Sends the game so far and returns the move the engine chooses in the format of the protocol.
+	 * The limits are the arguments of the go command, for example "movetime 100" or "nodes 20000".
+	 **/
+	String position = "position fen " + startFen;
+	if (!moves.isEmpty()) {
+	    position += " moves " + String.join(" ", moves);
+	}
+	send(position);
+	send("go " + limits);
+	long nodes = 0;
+	long millis = 0;
+	while (true) {
+	    String[] tokens = readLine().trim().split("\\s+");
+	    if (tokens[0].equals("info")) {
+		List<String> info = Arrays.asList(tokens);
+		int nodesIndex = info.indexOf("nodes");
+		int timeIndex = info.indexOf("time");
+		if (nodesIndex > 0 && timeIndex > 0 && nodesIndex + 1 < tokens.length && timeIndex + 1 < tokens.length) {
+		    nodes = Long.parseLong(tokens[nodesIndex + 1]);
+		    millis = Long.parseLong(tokens[timeIndex + 1]);
+		}
+	    }
+	    else if (tokens[0].equals("bestmove") && tokens.length > 1) {
+		totalNodes += nodes;
+		totalMillis += millis;
+		return tokens[1];
+	    }
+	}
+    }
+
+    public long getTotalNodes() {
+	return totalNodes;
+    }
+
+    public long getTotalMillis() {
+	return totalMillis;
+    }
+
+    @Override public void close() {
+	send("quit");
+	process.destroy();
+    }
+
+    private void send(String command) {
+	toEngine.println(command);
+    }
+
+    private void waitFor(String answer) throws IOException {
+	while (!readLine().trim().equals(answer)) {
+	    /**
+	     * Skips everything else the engine prints, like its id lines.
+	     **/
+	}
+    }
+
+    private String readLine() throws IOException {
+	String line = fromEngine.readLine();
+	if (line == null) {
+	    throw new IOException("The engine closed its output");
+	}
+	return line;
+    }
+}
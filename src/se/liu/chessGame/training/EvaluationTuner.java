@@ -0,0 +1,255 @@
+package se.liu.chessGame.training;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import se.liu.chessGame.engine.Evaluator;
+import se.liu.chessGame.engine.Square;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Tunes the material values and piece-square tables of the Evaluator on the positions of a TrainingSet, the way of
+ * Texel's tuning method: the evaluation of a position, passed through a sigmoid, should predict the result of its game,
+ * and the loss is the mean squared error of that prediction. The scale of the sigmoid is fitted to the starting weights
+ * first and then kept.
+ * Every epoch computes the loss and its gradient over all positions in a ForkJoinPool, by splitting the positions in
+ * halves until they are few enough for one task, and then moves every weight with the Adam method. The tuning stops
+ * when the loss has not improved for several epochs, or after the given number of epochs, and the weights with the
+ * lowest loss are written with Evaluator.saveWeights. The engine uses them when the system property chess.weights names
+ * the file. The pawn structure is kept as it is.
+ */
+
+public class EvaluationTuner
+{
+    private static final int DEFAULT_EPOCHS = 500;
+    private static final String DEFAULT_WEIGHTS = "weights.bin";
+    private static final int TASK_POSITIONS = 8192;
+    private static final double LEARNING_RATE = 1.0;
+    private static final double MOMENTUM_DECAY = 0.9;
+    private static final double SQUARE_DECAY = 0.999;
+    private static final double EPSILON = 1.0e-8;
+    private static final int PATIENCE = 10;
+    private static final double MIN_IMPROVEMENT = 1.0e-9;
+    private static final double MIN_SCALE = 0.1;
+    private static final double MAX_SCALE = 4.0;
+    private static final int SCALE_STEPS = 25;
+    private static final double LOSS_PER_PAWN = Math.log(10) / 400;
+    private static final double WIN = 2.0;
+
+    private final Path directory;
+    private final Path weightsFile;
+    private final int epochs;
+    private final int threadCount;
+    private TrainingSet set = null;
+    private double[] weights = null;
+    private double scale = 1.0;
+
+    public EvaluationTuner(final Path directory, final Path weightsFile, final int epochs, final int threadCount) {
+	this.directory = directory;
+	this.weightsFile = weightsFile;
+	this.epochs = epochs;
+	this.threadCount = threadCount;
+    }
+
+    public static void addOptions(Options options) {
+	options.addOption(null, "tune", true, "tune the evaluation on the training positions in this directory");
+	options.addOption(null, "weights", true, "file the tuned weights are written to, " + DEFAULT_WEIGHTS + " by default");
+	options.addOption(null, "epochs", true, "most epochs to tune for, " + DEFAULT_EPOCHS + " by default");
+    }
+
+    public static EvaluationTuner fromCommandLine(CommandLine commandLine) {
+	/**
+	 * Creates the tuner from its own options and the threads option of the match and batch modes.
+	 * Throws NumberFormatException for a badly written number.
+	 **/
+	Path directory = Paths.get(commandLine.getOptionValue("tune"));
+	Path weightsFile = Paths.get(commandLine.getOptionValue("weights", DEFAULT_WEIGHTS));
+	int epochs = Integer.parseInt(commandLine.getOptionValue("epochs", String.valueOf(DEFAULT_EPOCHS)));
+	int threadCount = Integer.parseInt(commandLine.getOptionValue("threads",
+								      String.valueOf(Runtime.getRuntime().availableProcessors())));
+	return new EvaluationTuner(directory, weightsFile, Math.max(1, epochs), Math.max(1, threadCount));
+    }
+
+    public void run() throws IOException, InterruptedException {
+	ForkJoinPool pool = new ForkJoinPool(threadCount);
+	try {
+	    long startTime = System.currentTimeMillis();
+	    set = TrainingSet.load(directory, pool);
+	    if (set.size() == 0) {
+		throw new IOException("No training positions in " + directory);
+	    }
+	    System.out.printf("loaded %d positions in %.1f s, skipped %d invalid records%n", set.size(),
+			      (System.currentTimeMillis() - startTime) / 1000.0, set.getSkippedCount());
+	    int[] startWeights = Evaluator.getWeights();
+	    weights = new double[Evaluator.WEIGHT_COUNT];
+	    for (int i = 0; i < weights.length; i++) {
+		weights[i] = startWeights[i];
+	    }
+	    fitScale(pool);
+	    double[] bestWeights = tune(pool);
+	    int[] tunedWeights = new int[Evaluator.WEIGHT_COUNT];
+	    for (int i = 0; i < tunedWeights.length; i++) {
+		tunedWeights[i] = (int) Math.round(bestWeights[i]);
+	    }
+	    Evaluator.saveWeights(weightsFile, tunedWeights);
+	    System.out.printf("wrote %s, use it with -Dchess.weights=%s%n", weightsFile, weightsFile);
+	} finally {
+	    pool.shutdown();
+	}
+    }
+
+    private void fitScale(ForkJoinPool pool) {
+	/**
+	 * Finds the scale with the lowest loss for the starting weights by ternary search, the loss being convex enough
+	 * in the scale for that.
+	 **/
+	double low = MIN_SCALE;
+	double high = MAX_SCALE;
+	for (int step = 0; step < SCALE_STEPS; step++) {
+	    double lowThird = low + (high - low) / 3;
+	    double highThird = high - (high - low) / 3;
+	    scale = lowThird;
+	    double lowLoss = loss(pool, false)[0];
+	    scale = highThird;
+	    double highLoss = loss(pool, false)[0];
+	    if (lowLoss < highLoss) {
+		high = highThird;
+	    }
+	    else {
+		low = lowThird;
+	    }
+	}
+	scale = (low + high) / 2;
+	System.out.printf("scale %.4f, loss %.6f%n", scale, loss(pool, false)[0]);
+    }
+
+    private double[] tune(ForkJoinPool pool) {
+	/**
+	 * Runs the epochs and returns the weights with the lowest loss.
+	 **/
+	double[] momentum = new double[weights.length];
+	double[] squares = new double[weights.length];
+	double[] bestWeights = weights.clone();
+	double bestLoss = Double.MAX_VALUE;
+	int epochsWithoutImprovement = 0;
+	for (int epoch = 1; epoch <= epochs && epochsWithoutImprovement < PATIENCE; epoch++) {
+	    long epochStart = System.currentTimeMillis();
+	    double[] lossAndGradient = loss(pool, true);
+	    double loss = lossAndGradient[weights.length];
+	    if (loss < bestLoss - MIN_IMPROVEMENT) {
+		bestLoss = loss;
+		System.arraycopy(weights, 0, bestWeights, 0, weights.length);
+		epochsWithoutImprovement = 0;
+	    }
+	    else {
+		epochsWithoutImprovement++;
+	    }
+	    double momentumCorrection = 1 - Math.pow(MOMENTUM_DECAY, epoch);
+	    double squareCorrection = 1 - Math.pow(SQUARE_DECAY, epoch);
+	    for (int i = 0; i < weights.length; i++) {
+		double gradient = lossAndGradient[i];
+		momentum[i] = MOMENTUM_DECAY * momentum[i] + (1 - MOMENTUM_DECAY) * gradient;
+		squares[i] = SQUARE_DECAY * squares[i] + (1 - SQUARE_DECAY) * gradient * gradient;
+		weights[i] -= LEARNING_RATE * (momentum[i] / momentumCorrection) / (Math.sqrt(squares[i] / squareCorrection) + EPSILON);
+	    }
+	    System.out.printf("epoch %d, loss %.6f, %d ms%n", epoch, loss, System.currentTimeMillis() - epochStart);
+	}
+	return bestWeights;
+    }
+
+    private double[] loss(ForkJoinPool pool, boolean withGradient) {
+	/**
+	 * Returns the mean loss, after the mean gradient of every weight if withGradient is set.
+	 **/
+	double[] sums = pool.invoke(new LossTask(0, set.size(), withGradient));
+	for (int i = 0; i < sums.length; i++) {
+	    sums[i] /= set.size();
+	}
+	return sums;
+    }
+
+    private final class LossTask extends RecursiveTask<double[]>
+    {
+	private static final long serialVersionUID = 1L;
+
+	private final int from;
+	private final int to;
+	private final boolean withGradient;
+
+	private LossTask(final int from, final int to, final boolean withGradient) {
+	    this.from = from;
+	    this.to = to;
+	    this.withGradient = withGradient;
+	}
+
+	@Override protected double[] compute() {
+	    if (to - from <= TASK_POSITIONS) {
+		return sumPositions();
+	    }
+	    int middle = (from + to) >>> 1;
+	    LossTask first = new LossTask(from, middle, withGradient);
+	    first.fork();
+	    double[] sums = new LossTask(middle, to, withGradient).compute();
+	    double[] firstSums = first.join();
+	    for (int i = 0; i < sums.length; i++) {
+		sums[i] += firstSums[i];
+	    }
+	    return sums;
+	}
+
+	private double[] sumPositions() {
+	    /**
+	     * Sums the loss, and the gradient if needed, of the positions of this task. The value of a piece type has
+	     * the same index among the values as the type's table has among the tables, so it is the weight of the
+	     * square divided by the size of a table.
+	     **/
+	    double[] sums = new double[withGradient ? weights.length + 1 : 1];
+	    for (int position = from; position < to; position++) {
+		int phase = set.getPhase(position);
+		int end = set.getFeatureEnd(position);
+		double middlegameScore = 0;
+		double endgameScore = 0;
+		for (int i = set.getFeatureStart(position); i < end; i++) {
+		    int feature = set.getFeature(i);
+		    int weight = TrainingSet.weightOf(feature);
+		    int value = weight / Square.COUNT;
+		    double middlegame = weights[Evaluator.MIDDLEGAME_TABLE_OFFSET + weight] + weights[Evaluator.MIDDLEGAME_VALUE_OFFSET + value];
+		    double endgame = weights[Evaluator.ENDGAME_TABLE_OFFSET + weight] + weights[Evaluator.ENDGAME_VALUE_OFFSET + value];
+		    if (TrainingSet.isBlack(feature)) {
+			middlegameScore -= middlegame;
+			endgameScore -= endgame;
+		    }
+		    else {
+			middlegameScore += middlegame;
+			endgameScore += endgame;
+		    }
+		}
+		double evaluation = (middlegameScore * phase + endgameScore * (Evaluator.MAX_PHASE - phase)) / Evaluator.MAX_PHASE +
+				    set.getPawnScore(position);
+		double predicted = 1 / (1 + Math.exp(-scale * LOSS_PER_PAWN * evaluation));
+		double error = set.getResult(position) / WIN - predicted;
+		sums[sums.length - 1] += error * error;
+		if (withGradient) {
+		    double slope = -2 * error * predicted * (1 - predicted) * scale * LOSS_PER_PAWN;
+		    double middlegameSlope = slope * phase / Evaluator.MAX_PHASE;
+		    double endgameSlope = slope * (Evaluator.MAX_PHASE - phase) / Evaluator.MAX_PHASE;
+		    for (int i = set.getFeatureStart(position); i < end; i++) {
+			int feature = set.getFeature(i);
+			int weight = TrainingSet.weightOf(feature);
+			int value = weight / Square.COUNT;
+			double sign = TrainingSet.isBlack(feature) ? -1 : 1;
+			sums[Evaluator.MIDDLEGAME_TABLE_OFFSET + weight] += sign * middlegameSlope;
+			sums[Evaluator.MIDDLEGAME_VALUE_OFFSET + value] += sign * middlegameSlope;
+			sums[Evaluator.ENDGAME_TABLE_OFFSET + weight] += sign * endgameSlope;
+			sums[Evaluator.ENDGAME_VALUE_OFFSET + value] += sign * endgameSlope;
+		    }
+		}
+	    }
+	    return sums;
+	}
+    }
+}
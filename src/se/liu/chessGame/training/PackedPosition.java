@@ -0,0 +1,149 @@
+package se.liu.chessGame.training;
+
+import se.liu.chessGame.engine.PieceCode;
+import se.liu.chessGame.engine.Position;
+import se.liu.chessGame.engine.Square;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The fixed-size binary record of one training position, RECORD_SIZE bytes in little-endian order:
+ * the occupied squares as a bitboard, the PieceCode of every occupied piece in square order as four bits each,
+ * the search score seen from white, the result of the game seen from white, the side to move and the ply of the game.
+ * A board can never have more than 32 pieces, so the pieces always fit in their sixteen bytes.
+ * Two records of the same position start with the same bytes, so duplicates can be found by comparing the board part,
+ * or by the Zobrist hash of the position it decodes to.
+ */
+
+public final class PackedPosition
+{
+    public static final int RECORD_SIZE = 32;
+    public static final int BLACK_WIN = 0;
+    public static final int DRAW = 1;
+    public static final int WHITE_WIN = 2;
+
+    private static final int MAX_PIECES = 32;
+    private static final int PIECES_OFFSET = 8;
+    private static final int SCORE_OFFSET = 24;
+    private static final int RESULT_OFFSET = 26;
+    private static final int SIDE_OFFSET = 27;
+    private static final int PLY_OFFSET = 28;
+    private static final int NIBBLE_BITS = 4;
+    private static final int NIBBLE_MASK = 15;
+
+    private PackedPosition() {}
+
+    public static void write(ByteBuffer buffer, int offset, Position position, int score, int result, int ply) {
+	/**
+	 * Writes the record at the offset of the buffer, which must be in little-endian order. The score is clamped to a
+	 * short. Throws IllegalArgumentException for a position with more than 32 pieces.
+	 **/
+	long occupied = 0;
+	int pieceCount = 0;
+	for (int square = 0; square < Square.COUNT; square++) {
+	    if (position.getPieceAt(square) != PieceCode.EMPTY) {
+		occupied |= 1L << square;
+		pieceCount++;
+	    }
+	}
+	if (pieceCount > MAX_PIECES) {
+	    throw new IllegalArgumentException("Too many pieces to pack: " + position.toFen());
+	}
+	buffer.putLong(offset, occupied);
+	for (int i = PIECES_OFFSET; i < SCORE_OFFSET; i++) {
+	    buffer.put(offset + i, (byte) 0);
+	}
+	int index = 0;
+	for (long pieces = occupied; pieces != 0; pieces &= pieces - 1) {
+	    int code = position.getPieceAt(Long.numberOfTrailingZeros(pieces));
+	    int at = offset + PIECES_OFFSET + index / 2;
+	    buffer.put(at, (byte) (buffer.get(at) | code << (index % 2 * NIBBLE_BITS)));
+	    index++;
+	}
+	buffer.putShort(offset + SCORE_OFFSET, (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, score)));
+	buffer.put(offset + RESULT_OFFSET, (byte) result);
+	buffer.put(offset + SIDE_OFFSET, (byte) (position.isWhiteToMove() ? 1 : 0));
+	buffer.putShort(offset + PLY_OFFSET, (short) Math.min(ply, Short.MAX_VALUE));
+	buffer.putShort(offset + PLY_OFFSET + 2, (short) 0);
+    }
+
+    public static void setResult(ByteBuffer buffer, int offset, int result) {
+	buffer.put(offset + RESULT_OFFSET, (byte) result);
+    }
+
+    public static int readPieces(ByteBuffer buffer, int offset, int[] squares) {
+	/**
+	 * Fills the array of Square.COUNT squares with the PieceCode on every square and returns how many pieces there are.
+	 **/
+	long occupied = buffer.getLong(offset);
+	int index = 0;
+	for (int square = 0; square < Square.COUNT; square++) {
+	    if ((occupied & 1L << square) != 0) {
+		squares[square] = readCode(buffer, offset, index);
+		index++;
+	    }
+	    else {
+		squares[square] = PieceCode.EMPTY;
+	    }
+	}
+	return index;
+    }
+
+    public static boolean isValid(ByteBuffer buffer, int offset) {
+	/**
+	 * Returns whether the record can be a position of a game: at most 32 pieces that all have a PieceCode of a real
+	 * piece, one king of each side, and a known result. A record that was reserved but never written is all zeros,
+	 * and so is not valid.
+	 **/
+	long occupied = buffer.getLong(offset);
+	int pieceCount = Long.bitCount(occupied);
+	int result = readResult(buffer, offset);
+	if (pieceCount > MAX_PIECES || result < BLACK_WIN || result > WHITE_WIN) {
+	    return false;
+	}
+	int whiteKings = 0;
+	int blackKings = 0;
+	for (int index = 0; index < pieceCount; index++) {
+	    int code = readCode(buffer, offset, index);
+	    int type = PieceCode.type(code);
+	    if (type < PieceCode.PAWN || type > PieceCode.KING) {
+		return false;
+	    }
+	    if (type == PieceCode.KING) {
+		if (PieceCode.isWhite(code)) {
+		    whiteKings++;
+		}
+		else {
+		    blackKings++;
+		}
+	    }
+	}
+	return whiteKings == 1 && blackKings == 1;
+    }
+
+    private static int readCode(ByteBuffer buffer, int offset, int index) {
+	return buffer.get(offset + PIECES_OFFSET + index / 2) >>> (index % 2 * NIBBLE_BITS) & NIBBLE_MASK;
+    }
+
+    public static Position readPosition(ByteBuffer buffer, int offset) {
+	int[] squares = new int[Square.COUNT];
+	readPieces(buffer, offset, squares);
+	return new Position(squares, isWhiteToMove(buffer, offset));
+    }
+
+    public static int readScore(ByteBuffer buffer, int offset) {
+	return buffer.getShort(offset + SCORE_OFFSET);
+    }
+
+    public static int readResult(ByteBuffer buffer, int offset) {
+	return buffer.get(offset + RESULT_OFFSET);
+    }
+
+    public static boolean isWhiteToMove(ByteBuffer buffer, int offset) {
+	return buffer.get(offset + SIDE_OFFSET) != 0;
+    }
+
+    public static int readPly(ByteBuffer buffer, int offset) {
+	return buffer.getShort(offset + PLY_OFFSET);
+    }
+}
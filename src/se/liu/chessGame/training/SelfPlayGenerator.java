@@ -0,0 +1,284 @@
+package se.liu.chessGame.training;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import se.liu.chessGame.ExceptionLogger;
+import se.liu.chessGame.GameAdjudicator;
+import se.liu.chessGame.GameStatus;
+import se.liu.chessGame.engine.AnalysisResult;
+import se.liu.chessGame.engine.AnalysisService;
+import se.liu.chessGame.engine.Move;
+import se.liu.chessGame.engine.PieceCode;
+import se.liu.chessGame.engine.Position;
+import se.liu.chessGame.engine.PositionHistory;
+import se.liu.chessGame.engine.SearchBoard;
+import se.liu.chessGame.engine.Searcher;
+import se.liu.chessGame.engine.Zobrist;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Plays games of the engine against itself without a window and writes positions from them, with the score of the
+ * search and the result of the game, as PackedPosition records for training the evaluation.
+ * Every game starts from an opening of the suite followed by a few random moves, the same ones for the same game
+ * number, and every move is searched to a fixed number of nodes. Positions in check, positions whose best move is a
+ * capture or promotion and positions with a mate score are not written, since their score says little about the
+ * static evaluation. A game that one side has been winning by far for several moves is called for that side.
+ * Each worker thread plays its own games with its own board and Searcher and keeps one buffer per shard. A position
+ * always goes to the shard its hash points to, so duplicates can be removed one shard at a time, and a worker already
+ * skips the positions it has written recently. Full buffers are handed to a ShardedOutput, which needs no lock.
+ */
+
+public class SelfPlayGenerator
+{
+    private static final int DEFAULT_GAMES = 1000;
+    private static final long DEFAULT_NODES = 5000;
+    private static final int DEFAULT_SHARDS = 16;
+    private static final int BUFFER_RECORDS = 1024;
+    private static final int RANDOM_PLIES = 8;
+    private static final int MAX_GAME_PLIES = 400;
+    private static final int DECISIVE_SCORE = 1000;
+    private static final int DECISIVE_PLIES = 8;
+    private static final int SEEN_SIZE_BITS = 20;
+    private static final long REPORT_INTERVAL_MILLIS = 10000;
+
+    private final Path directory;
+    private final int games;
+    private final long nodeLimit;
+    private final int workerCount;
+    private final int shardCount;
+    private final AtomicInteger nextGame = new AtomicInteger(0);
+    private final AtomicLong positionCount = new AtomicLong(0);
+
+    public SelfPlayGenerator(final Path directory, final int games, final long nodeLimit, final int workerCount,
+			     final int shardCount)
+    {
+	this.directory = directory;
+	this.games = games;
+	this.nodeLimit = nodeLimit;
+	this.workerCount = workerCount;
+	this.shardCount = shardCount;
+    }
+
+    public static void addOptions(Options options) {
+	options.addOption(null, "selfplay", true, "play games against itself and write training positions to this directory");
+	options.addOption(null, "shards", true, "number of files the training positions are spread over, " + DEFAULT_SHARDS +
+						" by default");
+    }
+
+    public static SelfPlayGenerator fromCommandLine(CommandLine commandLine) {
+	/**
+	 * Creates the generator from its own options and the games, nodes and threads options of the match and batch
+	 * modes. Throws NumberFormatException for a badly written number.
+	 **/
+	Path directory = Paths.get(commandLine.getOptionValue("selfplay"));
+	int games = Integer.parseInt(commandLine.getOptionValue("games", String.valueOf(DEFAULT_GAMES)));
+	long nodeLimit = Long.parseLong(commandLine.getOptionValue("nodes", String.valueOf(DEFAULT_NODES)));
+	int workerCount = Integer.parseInt(commandLine.getOptionValue("threads",
+								      String.valueOf(Runtime.getRuntime().availableProcessors())));
+	int shardCount = Integer.parseInt(commandLine.getOptionValue("shards", String.valueOf(DEFAULT_SHARDS)));
+	return new SelfPlayGenerator(directory, games, nodeLimit, Math.max(1, workerCount), Math.max(1, shardCount));
+    }
+
+    public void run() throws IOException, InterruptedException {
+	/**
+	 * Plays all games on the workers, printing the speed every few seconds, and prints the totals at the end.
+	 **/
+	List<String> openings = readOpenings();
+	long startTime = System.currentTimeMillis();
+	try (ShardedOutput output = new ShardedOutput(directory, shardCount)) {
+	    long recordsBefore = output.getRecordCount();
+	    ExecutorService workers = Executors.newFixedThreadPool(workerCount);
+	    for (int worker = 0; worker < workerCount; worker++) {
+		workers.submit(() -> playGames(output, openings));
+	    }
+	    workers.shutdown();
+	    while (!workers.awaitTermination(REPORT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+		long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+		System.err.printf("%d games, %d positions, %.1f positions/s%n", Math.min(nextGame.get(), games),
+				  positionCount.get(), positionCount.get() * 1000.0 / elapsed);
+	    }
+	    long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+	    System.out.printf("played %d games, wrote %d positions in %.1f s, %.1f positions/s, %d positions in %d shards%n",
+			      games, output.getRecordCount() - recordsBefore, elapsed / 1000.0,
+			      positionCount.get() * 1000.0 / elapsed, output.getRecordCount(), shardCount);
+	}
+    }
+
+    private static List<String> readOpenings() throws IOException {
+	InputStream stream = ClassLoader.getSystemResourceAsStream("gameData/openings.txt");
+	if (stream == null) {
+	    throw new IOException("Resource not found");
+	}
+	List<String> openings = new ArrayList<>();
+	try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+	    String line;
+	    while ((line = reader.readLine()) != null) {
+		if (!line.isBlank() && !line.startsWith("#")) {
+		    openings.add(line.trim());
+		}
+	    }
+	}
+	return openings;
+    }
+
+    private void playGames(ShardedOutput output, List<String> openings) {
+	/**
+	 * The loop of one worker. The positions of a game are kept in the game buffer until the result is known,
+	 * and then copied to the buffer of their shard.
+	 **/
+	SearchBoard board = new SearchBoard(Position.startPosition(), null);
+	Searcher searcher = new Searcher(board, 0);
+	searcher.setNodeLimit(nodeLimit);
+	ByteBuffer[] shardBuffers = new ByteBuffer[shardCount];
+	for (int shard = 0; shard < shardCount; shard++) {
+	    shardBuffers[shard] = ByteBuffer.allocate(BUFFER_RECORDS * PackedPosition.RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	}
+	ByteBuffer gameBuffer = ByteBuffer.allocate(MAX_GAME_PLIES * PackedPosition.RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	long[] gameHashes = new long[MAX_GAME_PLIES];
+	PositionSet seen = new PositionSet(SEEN_SIZE_BITS);
+	try {
+	    int game;
+	    while ((game = nextGame.getAndIncrement()) < games) {
+		Position opening = randomOpening(Position.fromFen(openings.get(game % openings.size())), new Random(game));
+		int samples = playGame(board, searcher, opening, gameBuffer, gameHashes, seen);
+		for (int i = 0; i < samples; i++) {
+		    int offset = i * PackedPosition.RECORD_SIZE;
+		    int shard = (int) Long.remainderUnsigned(gameHashes[i], shardCount);
+		    shardBuffers[shard].put(gameBuffer.duplicate().position(offset).limit(offset + PackedPosition.RECORD_SIZE));
+		    if (!shardBuffers[shard].hasRemaining()) {
+			output.write(shard, shardBuffers[shard]);
+		    }
+		}
+		positionCount.addAndGet(samples);
+	    }
+	    for (int shard = 0; shard < shardCount; shard++) {
+		output.write(shard, shardBuffers[shard]);
+	    }
+	} catch (IOException | RuntimeException e) {
+	    ExceptionLogger.getExceptionLogger().logException(Level.SEVERE, "A self-play worker stopped", e);
+	}
+    }
+
+    private static Position randomOpening(Position opening, Random random) {
+	int[] moves = new int[SearchBoard.MAX_MOVES];
+	Position position = opening;
+	for (int ply = 0; ply < RANDOM_PLIES; ply++) {
+	    int count = new SearchBoard(position, null).generateLegalMoves(moves);
+	    if (count == 0) {
+		return opening;
+	    }
+	    position = position.play(moves[random.nextInt(count)]);
+	}
+	return position;
+    }
+
+    private static int playGame(SearchBoard board, Searcher searcher, Position start, ByteBuffer gameBuffer, long[] gameHashes,
+				PositionSet seen)
+    {
+	/**
+	 * Plays one game and writes its sampled positions, with the result of the game, to the game buffer.
+	 * Returns how many there are.
+	 **/
+	Position position = start;
+	PositionHistory history = new PositionHistory();
+	history.push(Zobrist.of(position), true);
+	searcher.clear();
+	int samples = 0;
+	int result = PackedPosition.DRAW;
+	int decisivePlies = 0;
+	for (int ply = 0; ply < MAX_GAME_PLIES; ply++) {
+	    GameStatus status = GameAdjudicator.adjudicate(position, history);
+	    if (status == GameStatus.WON) {
+		result = position.isWhiteToMove() ? PackedPosition.BLACK_WIN : PackedPosition.WHITE_WIN;
+		break;
+	    }
+	    if (status == GameStatus.DRAW) {
+		break;
+	    }
+	    board.setPosition(position);
+	    board.setGameHistory(history);
+	    AnalysisResult analysis = searcher.search(AnalysisService.UNLIMITED_DEPTH, r -> {});
+	    if (analysis == null || analysis.getBestMove() == Move.NONE) {
+		break;
+	    }
+	    int bestMove = analysis.getBestMove();
+	    int whiteScore = analysis.getWhiteScore();
+	    long hash = board.getHash();
+	    if (!analysis.isMateScore() && !board.isInCheck() && !board.isTactical(bestMove) && seen.add(hash)) {
+		PackedPosition.write(gameBuffer, samples * PackedPosition.RECORD_SIZE, position, whiteScore, result, ply);
+		gameHashes[samples++] = hash;
+	    }
+	    decisivePlies = Math.abs(whiteScore) >= DECISIVE_SCORE ? decisivePlies + 1 : 0;
+	    if (decisivePlies >= DECISIVE_PLIES) {
+		result = whiteScore > 0 ? PackedPosition.WHITE_WIN : PackedPosition.BLACK_WIN;
+		break;
+	    }
+	    boolean irreversible = position.getPieceAt(Move.to(bestMove)) != PieceCode.EMPTY ||
+				   PieceCode.type(position.getPieceAt(Move.from(bestMove))) == PieceCode.PAWN;
+	    position = position.play(bestMove);
+	    history.push(Zobrist.of(position), irreversible);
+	}
+	for (int i = 0; i < samples; i++) {
+	    PackedPosition.setResult(gameBuffer, i * PackedPosition.RECORD_SIZE, result);
+	}
+	return samples;
+    }
+
+    private static final class PositionSet
+    {
+	/**
+	 * A set of position hashes in one array with open addressing, emptied when it is half full so its memory
+	 * stays fixed. Hash 0 marks an empty slot, so a position with that hash is never remembered.
+	 **/
+	private final long[] hashes;
+	private final int mask;
+	private int size = 0;
+
+	private PositionSet(final int sizeBits) {
+	    this.hashes = new long[1 << sizeBits];
+	    this.mask = (1 << sizeBits) - 1;
+	}
+
+	private boolean add(long hash) {
+	    /**
+	     * Adds the hash and tells if it was not in the set before.
+	     **/
+	    if (hash == 0) {
+		return true;
+	    }
+	    if (size > hashes.length / 2) {
+		Arrays.fill(hashes, 0);
+		size = 0;
+	    }
+	    int slot = (int) hash & mask;
+	    while (hashes[slot] != 0) {
+		if (hashes[slot] == hash) {
+		    return false;
+		}
+		slot = (slot + 1) & mask;
+	    }
+	    hashes[slot] = hash;
+	    size++;
+	    return true;
+	}
+    }
+}
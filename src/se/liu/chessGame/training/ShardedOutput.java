@@ -0,0 +1,92 @@
+package se.liu.chessGame.training;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Appends PackedPosition records to a fixed number of shard files in a directory.
+ * Every writer fills buffers of its own and hands a full buffer over with write, which reserves its place at the end
+ * of the shard with an atomic counter and writes it there with a positional FileChannel write, so writers never wait
+ * for each other. A shard file that already exists is continued, after cutting off a record that was only partly
+ * written when an earlier run was stopped.
+ * Since the places are reserved before they are written, a run that is killed can also leave holes of zero bytes in
+ * the middle of a shard, where a writer had reserved a place but not yet written it. Readers must therefore skip the
+ * records that PackedPosition.isValid rejects.
+ */
+
+public class ShardedOutput implements Closeable
+{
+    public static final String SHARD_GLOB = "selfplay-*.bin";
+
+    private static final String SHARD_FORMAT = "selfplay-%03d.bin";
+
+    private final FileChannel[] channels;
+    private final AtomicLong[] ends;
+
+    public ShardedOutput(final Path directory, final int shardCount) throws IOException {
+	Files.createDirectories(directory);
+	this.channels = new FileChannel[shardCount];
+	this.ends = new AtomicLong[shardCount];
+	try {
+	    for (int shard = 0; shard < shardCount; shard++) {
+		channels[shard] = FileChannel.open(shardPath(directory, shard), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		long complete = channels[shard].size() / PackedPosition.RECORD_SIZE * PackedPosition.RECORD_SIZE;
+		channels[shard].truncate(complete);
+		ends[shard] = new AtomicLong(complete);
+	    }
+	} catch (IOException e) {
+	    close();
+	    throw e;
+	}
+    }
+
+    public static Path shardPath(Path directory, int shard) {
+	return directory.resolve(String.format(SHARD_FORMAT, shard));
+    }
+
+    public int getShardCount() {
+	return channels.length;
+    }
+
+    public void write(int shard, ByteBuffer buffer) throws IOException {
+	/**
+	 * Writes the records from the start of the buffer up to its position, then clears the buffer for the next ones.
+	 **/
+	buffer.flip();
+	long position = ends[shard].getAndAdd(buffer.remaining());
+	while (buffer.hasRemaining()) {
+	    position += channels[shard].write(buffer, position);
+	}
+	buffer.clear();
+    }
+
+    public long getRecordCount() {
+	long bytes = 0;
+	for (AtomicLong end : ends) {
+	    bytes += end.get();
+	}
+	return bytes / PackedPosition.RECORD_SIZE;
+    }
+
+    @Override public void close() throws IOException {
+	IOException failure = null;
+	for (FileChannel channel : channels) {
+	    try {
+		if (channel != null) {
+		    channel.close();
+		}
+	    } catch (IOException e) {
+		failure = e;
+	    }
+	}
+	if (failure != null) {
+	    throw failure;
+	}
+    }
+}
@@ -0,0 +1,206 @@
+package se.liu.chessGame.training;
+
+import se.liu.chessGame.engine.Evaluator;
+import se.liu.chessGame.engine.PieceCode;
+import se.liu.chessGame.engine.Square;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * The positions of a directory of PackedPosition shards, decoded once into flat arrays for the EvaluationTuner.
+ * A position is the range of the features array from its start to the start of the next position. Every feature is
+ * one piece: its Evaluator.tableWeight seen from white, shifted up by one, with the lowest bit set for a black piece.
+ * Besides its pieces a position keeps its phase, the result of its game as 0, 1 or 2 from black's win to white's,
+ * and the score of its pawn structure, which the tuner does not change.
+ * The shards are first read for the number of pieces of each record, which fixes where every position goes, and then
+ * decoded one shard per task of the given ExecutorService. Records that PackedPosition.isValid rejects, such as the
+ * holes a killed self-play run can leave in a shard, are skipped and counted.
+ */
+
+public class TrainingSet
+{
+    private static final int BLACK_BIT = 1;
+
+    private final int[] featureStarts;
+    private final short[] features;
+    private final byte[] phases;
+    private final byte[] results;
+    private final float[] pawnScores;
+    private final long skippedCount;
+
+    private TrainingSet(final int[] featureStarts, final long skippedCount) {
+	int size = featureStarts.length - 1;
+	this.featureStarts = featureStarts;
+	this.features = new short[featureStarts[size]];
+	this.phases = new byte[size];
+	this.results = new byte[size];
+	this.pawnScores = new float[size];
+	this.skippedCount = skippedCount;
+    }
+
+    public static TrainingSet load(Path directory, ExecutorService executor) throws IOException, InterruptedException {
+	List<ByteBuffer> shards = mapShards(directory);
+	long recordCount = 0;
+	for (ByteBuffer buffer : shards) {
+	    recordCount += buffer.limit() / PackedPosition.RECORD_SIZE;
+	}
+	if (recordCount >= Integer.MAX_VALUE) {
+	    throw new IOException("Too many positions in " + directory);
+	}
+	int[] firstPositions = new int[shards.size() + 1];
+	int[] featureStarts = new int[(int) recordCount + 1];
+	int position = 0;
+	for (int shard = 0; shard < shards.size(); shard++) {
+	    /**
+	     * Every position starts where the one before it ends, so the shards can then be decoded independently.
+	     **/
+	    ByteBuffer buffer = shards.get(shard);
+	    for (int offset = 0; offset < buffer.limit(); offset += PackedPosition.RECORD_SIZE) {
+		if (!PackedPosition.isValid(buffer, offset)) {
+		    continue;
+		}
+		long end = (long) featureStarts[position] + Long.bitCount(buffer.getLong(offset));
+		if (end > Integer.MAX_VALUE) {
+		    throw new IOException("Too many positions in " + directory);
+		}
+		featureStarts[++position] = (int) end;
+	    }
+	    firstPositions[shard + 1] = position;
+	}
+	TrainingSet set = new TrainingSet(Arrays.copyOf(featureStarts, position + 1), recordCount - position);
+	List<Callable<Void>> tasks = new ArrayList<>();
+	for (int shard = 0; shard < shards.size(); shard++) {
+	    ByteBuffer buffer = shards.get(shard);
+	    int firstPosition = firstPositions[shard];
+	    tasks.add(() -> {
+		set.decode(buffer, firstPosition);
+		return null;
+	    });
+	}
+	for (Future<Void> result : executor.invokeAll(tasks)) {
+	    try {
+		result.get();
+	    } catch (ExecutionException e) {
+		throw new IOException("A shard could not be decoded", e.getCause());
+	    }
+	}
+	return set;
+    }
+
+    private static List<ByteBuffer> mapShards(Path directory) throws IOException {
+	List<Path> files = new ArrayList<>();
+	try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, ShardedOutput.SHARD_GLOB)) {
+	    for (Path file : stream) {
+		files.add(file);
+	    }
+	}
+	Collections.sort(files);
+	List<ByteBuffer> shards = new ArrayList<>();
+	for (Path file : files) {
+	    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+		long size = channel.size() / PackedPosition.RECORD_SIZE * PackedPosition.RECORD_SIZE;
+		shards.add(channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN));
+	    }
+	}
+	return shards;
+    }
+
+    private void decode(ByteBuffer buffer, int firstPosition) {
+	int[] squares = new int[Square.COUNT];
+	int position = firstPosition;
+	for (int offset = 0; offset < buffer.limit(); offset += PackedPosition.RECORD_SIZE) {
+	    if (!PackedPosition.isValid(buffer, offset)) {
+		continue;
+	    }
+	    PackedPosition.readPieces(buffer, offset, squares);
+	    int feature = featureStarts[position];
+	    int phase = 0;
+	    long whitePawns = 0;
+	    long blackPawns = 0;
+	    for (int square = 0; square < Square.COUNT; square++) {
+		int code = squares[square];
+		if (code == PieceCode.EMPTY) {
+		    continue;
+		}
+		boolean isWhite = PieceCode.isWhite(code);
+		int type = PieceCode.type(code);
+		int weight = Evaluator.tableWeight(type, isWhite ? square : square ^ (Square.COUNT - Square.BOARD_LENGTH));
+		features[feature++] = (short) (weight << 1 | (isWhite ? 0 : BLACK_BIT));
+		phase += Evaluator.phase(code);
+		if (type == PieceCode.PAWN) {
+		    if (isWhite) {
+			whitePawns |= 1L << square;
+		    }
+		    else {
+			blackPawns |= 1L << square;
+		    }
+		}
+	    }
+	    phase = Math.min(phase, Evaluator.MAX_PHASE);
+	    long structure = Evaluator.pawnStructure(whitePawns, blackPawns);
+	    phases[position] = (byte) phase;
+	    results[position] = (byte) PackedPosition.readResult(buffer, offset);
+	    pawnScores[position] = (float) (Evaluator.middlegamePart(structure) * phase +
+					    Evaluator.endgamePart(structure) * (Evaluator.MAX_PHASE - phase)) / Evaluator.MAX_PHASE;
+	    position++;
+	}
+    }
+
+    public int size() {
+	return phases.length;
+    }
+
+    public long getSkippedCount() {
+	/**
+	 * Returns how many records of the shards were not valid positions and were left out.
+	 **/
+	return skippedCount;
+    }
+
+    public int getFeatureStart(int position) {
+	return featureStarts[position];
+    }
+
+    public int getFeatureEnd(int position) {
+	return featureStarts[position + 1];
+    }
+
+    public static int weightOf(int feature) {
+	return feature >>> 1;
+    }
+
+    public static boolean isBlack(int feature) {
+	return (feature & BLACK_BIT) != 0;
+    }
+
+    public int getFeature(int index) {
+	return features[index];
+    }
+
+    public int getPhase(int position) {
+	return phases[position];
+    }
+
+    public int getResult(int position) {
+	return results[position];
+    }
+
+    public float getPawnScore(int position) {
+	return pawnScores[position];
+    }
+}